@@ -0,0 +1,64 @@
+package com.openclassrooms.starterjwt.dto;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON cost of a page of sessions, with a mapper configured like the one of the application.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SessionDtoSerializationBenchmark {
+    private static final TypeReference<List<SessionDto>> SESSION_LIST = new TypeReference<List<SessionDto>>() {
+    };
+
+    // the default and maximum page sizes of GET /api/session
+    @Param({"100", "500"})
+    public int sessions;
+
+    @Param({"0", "20", "200"})
+    public int participants;
+
+    private ObjectMapper objectMapper;
+    private List<SessionDto> page;
+    private byte[] json;
+
+    @Setup
+    public void setup() throws IOException {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        page = new ArrayList<>(sessions);
+        LocalDateTime now = LocalDateTime.now();
+        for (long id = 1; id <= sessions; id++) {
+            List<Long> users = new ArrayList<>(participants);
+            for (long userId = 1; userId <= participants; userId++) {
+                users.add(userId);
+            }
+            page.add(new SessionDto(id, "Session " + id, new Date(), 1L,
+                    "Gentle morning flow, open to every level", users, participants > 0 ? participants : null, now, now));
+        }
+        json = objectMapper.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return objectMapper.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public List<SessionDto> deserialize() throws IOException {
+        return objectMapper.readValue(json, SESSION_LIST);
+    }
+}
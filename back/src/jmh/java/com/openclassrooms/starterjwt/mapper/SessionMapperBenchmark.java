@@ -0,0 +1,102 @@
+package com.openclassrooms.starterjwt.mapper;
+
+import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.Teacher;
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.services.TeacherService;
+import com.openclassrooms.starterjwt.services.UserService;
+import org.mapstruct.factory.Mappers;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Mapping cost of one session by number of participants. The repositories are stubbed, so {@code toEntity} measures
+ * the mapping and the id checks of {@link UserService#findAllById}, not the query.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SessionMapperBenchmark {
+
+    @Param({"10", "1000", "10000"})
+    public int participants;
+
+    private SessionMapper sessionMapper;
+    private Session session;
+    private List<Long> participantIds;
+    private SessionDto sessionDto;
+
+    @Setup
+    public void setup() {
+        Teacher teacher = Teacher.builder().id(1L).firstName("Margot").lastName("Delahaye").build();
+        List<User> users = new ArrayList<>(participants);
+        for (long id = 1; id <= participants; id++) {
+            users.add(User.builder()
+                          .id(id)
+                          .email("member" + id + "@example.com")
+                          .firstName("Member")
+                          .lastName("N" + id)
+                          .password("hash")
+                          .admin(false)
+                          .build());
+        }
+        participantIds = users.stream().map(User::getId).collect(Collectors.toList());
+
+        // plain stubs rather than mocks, whose own overhead would dwarf the smaller cases
+        UserRepository userRepository = (UserRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{UserRepository.class}, (proxy, method, args) -> users);
+
+        sessionMapper = Mappers.getMapper(SessionMapper.class);
+        sessionMapper.teacherService = new TeacherService(null) {
+            @Override
+            public Teacher findById(Long id) {
+                return teacher;
+            }
+        };
+        sessionMapper.userService = new UserService(userRepository);
+
+        session = Session.builder()
+                         .id(1L)
+                         .name("Crowded class")
+                         .date(new Date())
+                         .description("Morning flow")
+                         .teacher(teacher)
+                         .users(users)
+                         .capacity(participants)
+                         .booked(participants)
+                         .build();
+        sessionDto = sessionMapper.toDto(session);
+    }
+
+    /**
+     * Entity with its participants loaded, as when a session was just saved.
+     */
+    @Benchmark
+    public SessionDto toDto() {
+        return sessionMapper.toDto(session);
+    }
+
+    /**
+     * Participant ids fetched apart from the entity, as on the read endpoints.
+     */
+    @Benchmark
+    public SessionDto toDtoWithParticipantIds() {
+        return sessionMapper.toDto(session, participantIds);
+    }
+
+    @Benchmark
+    public Session toEntity() {
+        return sessionMapper.toEntity(sessionDto);
+    }
+}
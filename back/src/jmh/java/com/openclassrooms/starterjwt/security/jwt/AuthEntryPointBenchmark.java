@@ -0,0 +1,66 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import ch.qos.logback.classic.Level;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.LoggerFactory;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.InsufficientAuthenticationException;
+import org.springframework.security.core.AuthenticationException;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of writing the 401 body, the answer to every request without a valid token. The error log line is disabled so
+ * that only the serialization is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AuthEntryPointBenchmark {
+    private final AuthEntryPointJwt authEntryPoint = new AuthEntryPointJwt();
+
+    private final AuthenticationException authException =
+            new InsufficientAuthenticationException("Full authentication is required to access this resource");
+
+    private MockHttpServletRequest request;
+
+    @Setup
+    public void setup() {
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(AuthEntryPointJwt.class)).setLevel(Level.OFF);
+        request = new MockHttpServletRequest("GET", "/api/session");
+        request.setServletPath("/api/session");
+    }
+
+    @Benchmark
+    public MockHttpServletResponse commence() throws IOException, ServletException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        authEntryPoint.commence(request, response, authException);
+        return response;
+    }
+
+    /**
+     * Previous body writer: a new ObjectMapper per response.
+     */
+    @Benchmark
+    public MockHttpServletResponse commenceWithNewMapper() throws IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+        Map<String, Object> body = new HashMap<>();
+        body.put("status", HttpServletResponse.SC_UNAUTHORIZED);
+        body.put("error", "Unauthorized");
+        body.put("message", authException.getMessage());
+        body.put("path", request.getServletPath());
+        new ObjectMapper().writeValue(response.getOutputStream(), body);
+        return response;
+    }
+}
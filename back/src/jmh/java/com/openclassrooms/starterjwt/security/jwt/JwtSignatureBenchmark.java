@@ -0,0 +1,56 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Signing and full verification cost per signature algorithm, without the verified-token cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtSignatureBenchmark {
+
+    @Param({"HS512", "RS256"})
+    public String algorithm;
+
+    private JwtUtils jwtUtils;
+    private UsernamePasswordAuthenticationToken authentication;
+    private String token;
+
+    @Setup
+    public void setup() {
+        JwtKeys jwtKeys = "RS256".equals(algorithm)
+                ? JwtKeys.rsa(Collections.singletonMap("bench", JwtKeys.generateRsaKeyPair()), "bench")
+                : JwtKeys.hmac("openclassrooms");
+        jwtUtils = new JwtUtils(jwtKeys, 86400000, 10000, new SimpleMeterRegistry());
+        UserDetailsImpl principal = UserDetailsImpl.builder()
+                .id(1L)
+                .username("yoga@studio.com")
+                .firstName("Admin")
+                .lastName("Admin")
+                .admin(true)
+                .build();
+        authentication = new UsernamePasswordAuthenticationToken(principal, null);
+        token = jwtUtils.generateJwtToken(authentication);
+    }
+
+    @Benchmark
+    public String sign() {
+        return jwtUtils.generateJwtToken(authentication);
+    }
+
+    @Benchmark
+    public Claims verify() {
+        return jwtUtils.parseClaims(token);
+    }
+}
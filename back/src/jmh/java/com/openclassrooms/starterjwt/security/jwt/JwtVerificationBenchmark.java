@@ -0,0 +1,56 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of authenticating one request from its bearer token.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtVerificationBenchmark {
+    private static final String SECRET = "openclassrooms";
+
+    private JwtUtils jwtUtils;
+    private String token;
+
+    @Setup
+    public void setup() {
+        jwtUtils = new JwtUtils(JwtKeys.hmac(SECRET), 86400000, 10000, new SimpleMeterRegistry());
+        UserDetailsImpl principal = UserDetailsImpl.builder()
+                .id(1L)
+                .username("yoga@studio.com")
+                .password("hash")
+                .build();
+        token = jwtUtils.generateJwtToken(new UsernamePasswordAuthenticationToken(principal, null));
+    }
+
+    /**
+     * Previous filter path: a fresh parser per call, validate then parse again for the subject.
+     */
+    @Benchmark
+    public String validateThenParse() {
+        Jwts.parser().setSigningKey(SECRET).parseClaimsJws(token);
+        return Jwts.parser().setSigningKey(SECRET).parseClaimsJws(token).getBody().getSubject();
+    }
+
+    @Benchmark
+    public Claims verifyOnceUncached() {
+        return jwtUtils.parseClaims(token);
+    }
+
+    @Benchmark
+    public Claims verifyOnceCached() {
+        return jwtUtils.verifyJwtToken(token);
+    }
+}
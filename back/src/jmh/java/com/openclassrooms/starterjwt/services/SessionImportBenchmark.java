@@ -0,0 +1,103 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.SpringBootSecurityJwtApplication;
+import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.mapper.SessionMapper;
+import com.openclassrooms.starterjwt.models.Teacher;
+import com.openclassrooms.starterjwt.payload.response.ImportReport;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.repository.TeacherRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rows per second imported into the test H2 database. A batch size of 0 is the baseline creating sessions one by
+ * one through JPA; the others go through {@link ImportService} with JDBC batches of that size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(SessionImportBenchmark.ROWS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SessionImportBenchmark {
+    static final int ROWS = 10000;
+
+    @Param({"0", "1", "100", "1000"})
+    public int batchSize;
+
+    private ConfigurableApplicationContext context;
+    private ImportService importService;
+    private SessionService sessionService;
+    private SessionMapper sessionMapper;
+    private SessionRepository sessionRepository;
+    private Long teacherId;
+    private byte[] ndjson;
+
+    @Setup
+    public void setup() {
+        context = new SpringApplicationBuilder(SpringBootSecurityJwtApplication.class)
+                .properties("server.port=0",
+                            "spring.jpa.properties.hibernate.generate_statistics=false",
+                            "oc.app.teacherCatalog.refreshMs=0")
+                .run();
+        importService = context.getBean(ImportService.class);
+        sessionService = context.getBean(SessionService.class);
+        sessionMapper = context.getBean(SessionMapper.class);
+        sessionRepository = context.getBean(SessionRepository.class);
+        teacherId = context.getBean(TeacherRepository.class)
+                           .save(Teacher.builder().firstName("Margot").lastName("Delahaye").build())
+                           .getId();
+
+        StringBuilder rows = new StringBuilder();
+        for (int i = 0; i < ROWS; i++) {
+            rows.append("{\"name\":\"Session ").append(i)
+                .append("\",\"date\":\"2024-01-01T10:00:00Z\",\"teacher_id\":").append(teacherId)
+                .append(",\"description\":\"Imported session\",\"capacity\":20}\n");
+        }
+        ndjson = rows.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @TearDown(Level.Invocation)
+    public void clean() {
+        sessionRepository.deleteAllInBatch();
+    }
+
+    @TearDown
+    public void close() {
+        context.close();
+    }
+
+    @Benchmark
+    public long importSessions() throws IOException {
+        if (batchSize == 0) {
+            return createOneByOne();
+        }
+
+        ImportReport report = importService.importSessions(RowFormat.NDJSON, new ByteArrayInputStream(ndjson), batchSize);
+        return report.getImported();
+    }
+
+    private long createOneByOne() {
+        Date date = Date.from(Instant.parse("2024-01-01T10:00:00Z"));
+        for (int i = 0; i < ROWS; i++) {
+            SessionDto sessionDto = new SessionDto();
+            sessionDto.setName("Session " + i);
+            sessionDto.setDate(date);
+            sessionDto.setTeacher_id(teacherId);
+            sessionDto.setDescription("Imported session");
+            sessionDto.setCapacity(20);
+            sessionService.create(sessionMapper.toEntity(sessionDto));
+        }
+        return ROWS;
+    }
+}
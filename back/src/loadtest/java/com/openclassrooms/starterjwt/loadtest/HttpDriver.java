@@ -0,0 +1,82 @@
+package com.openclassrooms.starterjwt.loadtest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Minimal blocking HTTP client over {@link HttpURLConnection}. Bodies are always read to the end so that the
+ * connection goes back to the keep-alive pool; {@code http.maxConnections} must be at least the number of clients.
+ */
+final class HttpDriver {
+    private final String baseUrl;
+
+    HttpDriver(String baseUrl) {
+        this.baseUrl = baseUrl;
+    }
+
+    Response get(String path, String token, String ifNoneMatch) throws IOException {
+        return this.send("GET", path, token, ifNoneMatch, null);
+    }
+
+    Response post(String path, String token, String json) throws IOException {
+        return this.send("POST", path, token, null, json);
+    }
+
+    private Response send(String method, String path, String token, String ifNoneMatch, String json) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(this.baseUrl + path).openConnection();
+        connection.setRequestMethod(method);
+        connection.setConnectTimeout(5000);
+        connection.setReadTimeout(30000);
+        if (token != null) {
+            connection.setRequestProperty("Authorization", "Bearer " + token);
+        }
+        if (ifNoneMatch != null) {
+            connection.setRequestProperty("If-None-Match", ifNoneMatch);
+        }
+        if (json != null) {
+            byte[] body = json.getBytes(StandardCharsets.UTF_8);
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/json");
+            connection.setFixedLengthStreamingMode(body.length);
+            try (OutputStream output = connection.getOutputStream()) {
+                output.write(body);
+            }
+        }
+
+        int status = connection.getResponseCode();
+        InputStream input = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+        byte[] body = input != null ? readFully(input) : new byte[0];
+        return new Response(status, connection.getHeaderField("ETag"), body);
+    }
+
+    private static byte[] readFully(InputStream input) throws IOException {
+        try (InputStream in = input) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+            }
+            return output.toByteArray();
+        }
+    }
+
+    static final class Response {
+        final int status;
+
+        final String eTag;
+
+        final byte[] body;
+
+        private Response(int status, String eTag, byte[] body) {
+            this.status = status;
+            this.eTag = eTag;
+            this.body = body;
+        }
+    }
+}
@@ -0,0 +1,411 @@
+package com.openclassrooms.starterjwt.loadtest;
+
+import com.openclassrooms.starterjwt.SpringBootSecurityJwtApplication;
+import com.openclassrooms.starterjwt.security.jwt.JwtUtils;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Boots the whole application on an in-memory H2 database in MySQL mode, seeds it, then drives it over HTTP:
+ *
+ * <ul>
+ *     <li>{@code login}: a storm of logins on {@code POST /api/auth/login}, 503 being the expected backpressure once
+ *     the hashing queue is full;</li>
+ *     <li>{@code sessions}: authenticated polling of {@code GET /api/session}, half of the clients revalidating with
+ *     {@code If-None-Match} like a browser would;</li>
+ *     <li>{@code participation}: rounds of users all booking the last seats of one session at the same time, checking
+ *     afterwards that no session was overbooked.</li>
+ * </ul>
+ *
+ * <p>Clients run a closed loop, each waiting for its response before sending the next request, so the latencies are
+ * those of a server kept busy by that many clients rather than under a fixed arrival rate. Settings are read from
+ * {@code loadtest.*} system properties; the process exits with 1 when a scenario saw an unexpected status, a transport
+ * error or an overbooked session.
+ */
+public final class LoadTest {
+    static final String PASSWORD = "load-test!1234";
+
+    private final Settings settings;
+
+    private final ConfigurableApplicationContext context;
+
+    private final HttpDriver http;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private List<Long> userIds;
+
+    private List<Long> raceSessionIds;
+
+    private LoadTest(Settings settings, ConfigurableApplicationContext context) {
+        this.settings = settings;
+        this.context = context;
+        this.http = new HttpDriver("http://localhost:" + context.getEnvironment().getProperty("local.server.port"));
+        this.jdbcTemplate = context.getBean(JdbcTemplate.class);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Settings settings = Settings.fromSystemProperties();
+        // idle keep-alive connections kept per host, one per client so none is reopened between requests
+        System.setProperty("http.maxConnections", String.valueOf(Math.max(settings.clients, settings.racers)));
+
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(SpringBootSecurityJwtApplication.class)
+                .properties("server.port=0",
+                        "server.tomcat.threads.max=" + Math.max(200, settings.racers),
+                        "logging.level.root=WARN",
+                        "spring.main.banner-mode=off",
+                        "spring.jpa.properties.hibernate.generate_statistics=false")
+                .run(args);
+
+        List<ScenarioResult> results;
+        try {
+            results = new LoadTest(settings, context).run();
+        } finally {
+            context.close();
+        }
+
+        boolean failed = results.stream().anyMatch(result -> result.getFailure() != null);
+        System.exit(failed ? 1 : 0);
+    }
+
+    private List<ScenarioResult> run() throws Exception {
+        System.out.println(this.settings);
+        this.seed();
+
+        List<ScenarioResult> results = new ArrayList<>();
+        if (this.settings.scenarios.contains("login")) {
+            results.add(this.login());
+        }
+        if (this.settings.scenarios.contains("sessions")) {
+            results.add(this.sessions());
+        }
+        if (this.settings.scenarios.contains("participation")) {
+            results.add(this.participation());
+        }
+
+        System.out.println();
+        results.forEach(result -> System.out.println(result.summary()));
+        this.write(results);
+        return results;
+    }
+
+    /**
+     * Users all share one password so that it is hashed once, at the configured BCrypt strength. Regular sessions get a
+     * few participants each; the sessions raced for start empty.
+     */
+    private void seed() {
+        long start = System.nanoTime();
+        String hash = this.context.getBean(PasswordEncoder.class).encode(PASSWORD);
+
+        List<Object[]> users = new ArrayList<>();
+        for (int i = 0; i < this.settings.users; i++) {
+            users.add(new Object[]{email(i), "Load" + i, "User" + i, hash});
+        }
+        this.jdbcTemplate.batchUpdate(
+                "insert into USERS (email, last_name, first_name, password, admin) values (?, ?, ?, ?, false)", users);
+        this.userIds = this.jdbcTemplate.queryForList("select id from USERS order by id", Long.class);
+
+        List<Object[]> teachers = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            teachers.add(new Object[]{"Teacher" + i, "Load"});
+        }
+        this.jdbcTemplate.batchUpdate("insert into TEACHERS (last_name, first_name) values (?, ?)", teachers);
+        List<Long> teacherIds = this.jdbcTemplate.queryForList("select id from TEACHERS order by id", Long.class);
+
+        Instant now = Instant.now().truncatedTo(ChronoUnit.HOURS);
+        List<Object[]> sessions = new ArrayList<>();
+        for (int i = 0; i < this.settings.sessions + this.settings.rounds; i++) {
+            boolean race = i >= this.settings.sessions;
+            sessions.add(new Object[]{(race ? "Race " : "Session ") + i, "Seeded by the load test",
+                    Timestamp.from(now.plus(i, ChronoUnit.HOURS)), teacherIds.get(i % teacherIds.size()),
+                    race ? this.settings.capacity : null});
+        }
+        this.jdbcTemplate.batchUpdate(
+                "insert into SESSIONS (name, description, date, teacher_id, capacity) values (?, ?, ?, ?, ?)", sessions);
+        List<Long> sessionIds = this.jdbcTemplate.queryForList("select id from SESSIONS order by id", Long.class);
+        this.raceSessionIds = sessionIds.subList(this.settings.sessions, sessionIds.size());
+
+        List<Object[]> participations = new ArrayList<>();
+        for (int i = 0; i < this.settings.sessions; i++) {
+            for (int j = 0; j < Math.min(this.settings.participants, this.userIds.size()); j++) {
+                participations.add(new Object[]{sessionIds.get(i),
+                        this.userIds.get((i * 31 + j) % this.userIds.size())});
+            }
+        }
+        this.jdbcTemplate.batchUpdate("insert into PARTICIPATE (session_id, user_id) values (?, ?)", participations);
+        this.jdbcTemplate.update(
+                "update SESSIONS s set booked = (select count(*) from PARTICIPATE p where p.session_id = s.id)");
+
+        System.out.printf(Locale.ROOT, "Seeded %d users, %d sessions and %d participations in %d ms%n",
+                this.userIds.size(), sessionIds.size(), participations.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private ScenarioResult login() throws Exception {
+        return this.closedLoop("login", client -> {
+            int user = ThreadLocalRandom.current().nextInt(this.settings.users);
+            return this.http.post("/api/auth/login", null,
+                    "{\"email\":\"" + email(user) + "\",\"password\":\"" + PASSWORD + "\"}").status;
+        }, 200, 503);
+    }
+
+    private ScenarioResult sessions() throws Exception {
+        String[] tokens = new String[this.settings.clients];
+        String[] eTags = new String[this.settings.clients];
+        for (int i = 0; i < tokens.length; i++) {
+            tokens[i] = this.token(i % this.userIds.size());
+        }
+
+        return this.closedLoop("sessions", client -> {
+            // even clients keep the validators of their last page, odd ones always fetch in full
+            String ifNoneMatch = client % 2 == 0 ? eTags[client] : null;
+            HttpDriver.Response response = this.http.get("/api/session?limit=100", tokens[client], ifNoneMatch);
+            if (response.eTag != null) {
+                eTags[client] = response.eTag;
+            }
+            return response.status;
+        }, 200, 304);
+    }
+
+    /**
+     * Each round releases {@code racers} users at once on a session with {@code capacity} seats: exactly that many must
+     * get a 200, the others a 400, and the seat counter must match the participations left in the database.
+     */
+    private ScenarioResult participation() throws Exception {
+        ScenarioResult result = new ScenarioResult("participation");
+        if (this.settings.racers > this.userIds.size()) {
+            result.fail("more racers (" + this.settings.racers + ") than users (" + this.userIds.size() + ")");
+            return result;
+        }
+
+        String[] tokens = new String[this.settings.racers];
+        for (int i = 0; i < tokens.length; i++) {
+            tokens[i] = this.token(i);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(this.settings.racers);
+        List<String> failures = new ArrayList<>();
+        long elapsed = 0;
+        try {
+            for (int round = 0; round < this.settings.rounds; round++) {
+                long sessionId = this.raceSessionIds.get(round);
+                CountDownLatch ready = new CountDownLatch(this.settings.racers);
+                CountDownLatch go = new CountDownLatch(1);
+                List<Future<ScenarioResult>> racers = new ArrayList<>();
+                for (int i = 0; i < this.settings.racers; i++) {
+                    int racer = i;
+                    racers.add(executor.submit(() -> {
+                        ScenarioResult own = new ScenarioResult("participation");
+                        ready.countDown();
+                        go.await();
+                        this.timed(own, racer, client -> this.http.post("/api/session/" + sessionId
+                                + "/participate/" + this.userIds.get(client), tokens[client], null).status);
+                        return own;
+                    }));
+                }
+
+                ready.await();
+                long start = System.nanoTime();
+                go.countDown();
+                ScenarioResult roundResult = new ScenarioResult("participation");
+                for (Future<ScenarioResult> racer : racers) {
+                    roundResult.merge(racer.get());
+                }
+                elapsed += System.nanoTime() - start;
+                result.merge(roundResult);
+
+                int expected = Math.min(this.settings.capacity, this.settings.racers);
+                if (roundResult.count(200) != expected
+                        || roundResult.count(400) != this.settings.racers - expected) {
+                    failures.add("round " + round + " expected " + expected + " bookings, got " + roundResult.summary());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        result.setElapsedNanos(elapsed);
+
+        for (long sessionId : this.raceSessionIds) {
+            Integer booked = this.jdbcTemplate.queryForObject(
+                    "select booked from SESSIONS where id = ?", Integer.class, sessionId);
+            Integer participants = this.jdbcTemplate.queryForObject(
+                    "select count(*) from PARTICIPATE where session_id = ?", Integer.class, sessionId);
+            if (booked == null || booked > this.settings.capacity || !booked.equals(participants)) {
+                failures.add("session " + sessionId + " has " + booked + " seats booked for " + participants
+                        + " participants, capacity " + this.settings.capacity);
+            }
+        }
+        if (!failures.isEmpty()) {
+            result.fail(String.join("; ", failures));
+        }
+        return result;
+    }
+
+    /**
+     * Runs {@code clients} threads sending requests back to back for the warmup, whose results are dropped, then for
+     * the measured duration.
+     */
+    private ScenarioResult closedLoop(String name, Request request, Integer... expectedStatuses) throws Exception {
+        List<Integer> expected = Arrays.asList(expectedStatuses);
+        long measureFrom = System.nanoTime() + TimeUnit.SECONDS.toNanos(this.settings.warmup);
+        long measureTo = measureFrom + TimeUnit.SECONDS.toNanos(this.settings.duration);
+
+        ExecutorService executor = Executors.newFixedThreadPool(this.settings.clients);
+        List<Callable<ScenarioResult>> clients = new ArrayList<>();
+        for (int i = 0; i < this.settings.clients; i++) {
+            int client = i;
+            clients.add(() -> {
+                ScenarioResult own = new ScenarioResult(name);
+                ScenarioResult warmup = new ScenarioResult(name);
+                while (System.nanoTime() < measureTo) {
+                    this.timed(System.nanoTime() < measureFrom ? warmup : own, client, request);
+                }
+                return own;
+            });
+        }
+
+        System.out.printf(Locale.ROOT, "Running %s: %d clients, %ds warmup, %ds measured%n",
+                name, this.settings.clients, this.settings.warmup, this.settings.duration);
+        ScenarioResult result = new ScenarioResult(name);
+        try {
+            for (Future<ScenarioResult> client : executor.invokeAll(clients)) {
+                result.merge(client.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        result.setElapsedNanos(TimeUnit.SECONDS.toNanos(this.settings.duration));
+
+        long unexpected = result.requests() - expected.stream().mapToLong(result::count).sum();
+        if (unexpected > 0) {
+            result.fail(unexpected + " responses were not one of " + expected);
+        }
+        return result;
+    }
+
+    private void timed(ScenarioResult result, int client, Request request) {
+        long start = System.nanoTime();
+        int status;
+        try {
+            status = request.send(client);
+        } catch (IOException e) {
+            status = ScenarioResult.IO_ERROR;
+        }
+        result.record(status, System.nanoTime() - start);
+    }
+
+    private String token(int user) {
+        UserDetailsImpl principal = UserDetailsImpl.builder()
+                .id(this.userIds.get(user))
+                .username(email(user))
+                .firstName("User" + user)
+                .lastName("Load" + user)
+                .admin(false)
+                .build();
+        return this.context.getBean(JwtUtils.class).generateJwtToken(
+                new UsernamePasswordAuthenticationToken(principal, null, Collections.emptyList()));
+    }
+
+    private void write(List<ScenarioResult> results) throws IOException {
+        Path path = Paths.get(this.settings.result);
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        String json = "{\"settings\":" + this.settings.toJson() + ",\"scenarios\":["
+                + results.stream().map(ScenarioResult::toJson).collect(Collectors.joining(",")) + "]}";
+        Files.write(path, json.getBytes(StandardCharsets.UTF_8));
+        System.out.println("Results written to " + path.toAbsolutePath());
+    }
+
+    private static String email(int user) {
+        return "load" + user + "@studio.test";
+    }
+
+    @FunctionalInterface
+    private interface Request {
+        /**
+         * @return the HTTP status of the response
+         */
+        int send(int client) throws IOException;
+    }
+
+    static final class Settings {
+        int clients;
+
+        int warmup;
+
+        int duration;
+
+        int users;
+
+        int sessions;
+
+        int participants;
+
+        int rounds;
+
+        int racers;
+
+        int capacity;
+
+        List<String> scenarios;
+
+        String result;
+
+        static Settings fromSystemProperties() {
+            Settings settings = new Settings();
+            settings.clients = Integer.getInteger("loadtest.clients", 32);
+            settings.warmup = Integer.getInteger("loadtest.warmup", 5);
+            settings.duration = Integer.getInteger("loadtest.duration", 20);
+            settings.users = Integer.getInteger("loadtest.users", 2000);
+            settings.sessions = Integer.getInteger("loadtest.sessions", 500);
+            settings.participants = Integer.getInteger("loadtest.participants", 20);
+            settings.rounds = Integer.getInteger("loadtest.rounds", 20);
+            settings.racers = Integer.getInteger("loadtest.racers", 200);
+            settings.capacity = Integer.getInteger("loadtest.capacity", 50);
+            settings.scenarios = Arrays.asList(
+                    System.getProperty("loadtest.scenarios", "login,sessions,participation").split("\\s*,\\s*"));
+            settings.result = System.getProperty("loadtest.result", "target/loadtest-result.json");
+            return settings;
+        }
+
+        String toJson() {
+            return String.format(Locale.ROOT,
+                    "{\"clients\":%d,\"warmup\":%d,\"duration\":%d,\"users\":%d,\"sessions\":%d,\"participants\":%d,"
+                            + "\"rounds\":%d,\"racers\":%d,\"capacity\":%d,\"scenarios\":\"%s\"}",
+                    this.clients, this.warmup, this.duration, this.users, this.sessions, this.participants,
+                    this.rounds, this.racers, this.capacity, String.join(",", this.scenarios));
+        }
+
+        @Override
+        public String toString() {
+            return "Load test " + this.toJson();
+        }
+    }
+}
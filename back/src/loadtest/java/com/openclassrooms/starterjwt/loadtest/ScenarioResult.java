@@ -0,0 +1,93 @@
+package com.openclassrooms.starterjwt.loadtest;
+
+import org.HdrHistogram.Histogram;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Latencies and outcomes of one scenario. Each client records into its own instance, merged at the end.
+ */
+final class ScenarioResult {
+    // transport failures, timeouts included
+    static final int IO_ERROR = -1;
+
+    final String name;
+
+    private final Histogram latencies = new Histogram(3);
+
+    private final Map<Integer, Long> statuses = new TreeMap<>();
+
+    private long elapsedNanos;
+
+    private String failure;
+
+    ScenarioResult(String name) {
+        this.name = name;
+    }
+
+    void record(int status, long latencyNanos) {
+        this.latencies.recordValue(latencyNanos);
+        this.statuses.merge(status, 1L, Long::sum);
+    }
+
+    void merge(ScenarioResult other) {
+        this.latencies.add(other.latencies);
+        other.statuses.forEach((status, count) -> this.statuses.merge(status, count, Long::sum));
+    }
+
+    void setElapsedNanos(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Marks the scenario as failed, e.g. when an invariant of the data no longer holds after the run.
+     */
+    void fail(String failure) {
+        this.failure = failure;
+    }
+
+    String getFailure() {
+        return failure;
+    }
+
+    long count(int status) {
+        return this.statuses.getOrDefault(status, 0L);
+    }
+
+    long requests() {
+        return this.latencies.getTotalCount();
+    }
+
+    double throughput() {
+        return this.elapsedNanos > 0 ? this.requests() * 1e9 / this.elapsedNanos : 0;
+    }
+
+    double percentileMillis(double percentile) {
+        return this.latencies.getValueAtPercentile(percentile) / 1e6;
+    }
+
+    double maxMillis() {
+        return this.latencies.getMaxValue() / 1e6;
+    }
+
+    String summary() {
+        return String.format(Locale.ROOT, "%-14s %9d req %9.1f req/s   p50 %8.2f ms   p99 %8.2f ms   p99.9 %8.2f ms   max %8.2f ms   %s%s",
+                this.name, this.requests(), this.throughput(), this.percentileMillis(50), this.percentileMillis(99),
+                this.percentileMillis(99.9), this.maxMillis(), this.statuses,
+                this.failure != null ? "   FAILED: " + this.failure : "");
+    }
+
+    String toJson() {
+        StringBuilder statusJson = new StringBuilder();
+        this.statuses.forEach((status, count) -> statusJson.append(statusJson.length() > 0 ? "," : "")
+                .append('"').append(status == IO_ERROR ? "io_error" : String.valueOf(status)).append("\":").append(count));
+        return String.format(Locale.ROOT,
+                "{\"scenario\":\"%s\",\"requests\":%d,\"seconds\":%.3f,\"throughput\":%.2f,"
+                        + "\"p50Ms\":%.3f,\"p99Ms\":%.3f,\"p999Ms\":%.3f,\"maxMs\":%.3f,\"statuses\":{%s},\"failure\":%s}",
+                this.name, this.requests(), this.elapsedNanos / 1e9, this.throughput(), this.percentileMillis(50),
+                this.percentileMillis(99), this.percentileMillis(99.9), this.maxMillis(), statusJson,
+                this.failure != null ? "\"" + this.failure.replace("\"", "'") + "\"" : "null");
+    }
+}
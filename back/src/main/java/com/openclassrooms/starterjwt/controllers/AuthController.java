@@ -1,14 +1,27 @@
 package com.openclassrooms.starterjwt.controllers;
 
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
 import javax.validation.Valid;
 
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -20,69 +33,138 @@ import com.openclassrooms.starterjwt.payload.request.SignupRequest;
 import com.openclassrooms.starterjwt.payload.response.JwtResponse;
 import com.openclassrooms.starterjwt.payload.response.MessageResponse;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.security.jwt.JwtKeys;
 import com.openclassrooms.starterjwt.security.jwt.JwtUtils;
+import com.openclassrooms.starterjwt.security.services.PasswordHashingExecutor;
 import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import com.openclassrooms.starterjwt.security.services.UserDetailsServiceImpl;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
 @RestController
 @RequestMapping("/api/auth")
 public class AuthController {
-    private final AuthenticationManager authenticationManager;
+    static final int RETRY_AFTER_SECONDS = 1;
+
+    private final UserDetailsServiceImpl userDetailsService;
     private final JwtUtils jwtUtils;
     private final PasswordEncoder passwordEncoder;
     private final UserRepository userRepository;
+    private final PasswordHashingExecutor passwordHashingExecutor;
+    private final Executor taskExecutor;
+    private final JwtKeys jwtKeys;
 
-    AuthController(AuthenticationManager authenticationManager,
+    // compared against when the email is unknown, so that both failures take as long; hashed once, at startup
+    private final String unknownUserPassword;
+
+    AuthController(UserDetailsServiceImpl userDetailsService,
             PasswordEncoder passwordEncoder,
             JwtUtils jwtUtils,
-            UserRepository userRepository) {
-        this.authenticationManager = authenticationManager;
+            UserRepository userRepository,
+            PasswordHashingExecutor passwordHashingExecutor,
+            @Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME) Executor taskExecutor,
+            JwtKeys jwtKeys) {
+        this.userDetailsService = userDetailsService;
         this.jwtUtils = jwtUtils;
         this.passwordEncoder = passwordEncoder;
         this.userRepository = userRepository;
+        this.passwordHashingExecutor = passwordHashingExecutor;
+        this.taskExecutor = taskExecutor;
+        this.jwtKeys = jwtKeys;
+        this.unknownUserPassword = passwordEncoder.encode("unknown-user-password");
     }
 
     @PostMapping("/login")
-    public ResponseEntity<?> authenticateUser(@Valid @RequestBody LoginRequest loginRequest) {
+    public CompletableFuture<ResponseEntity<?>> authenticateUser(@Valid @RequestBody LoginRequest loginRequest) {
+        // the user is read on the request thread, only the BCrypt check goes to the hashing pool
+        UserDetailsImpl userDetails = loadUser(loginRequest.getEmail());
+        String encodedPassword = userDetails != null ? userDetails.getPassword() : unknownUserPassword;
+        try {
+            return passwordHashingExecutor
+                    .submit(() -> passwordEncoder.matches(loginRequest.getPassword(), encodedPassword))
+                    .thenApply(matches -> {
+                        if (userDetails == null || !matches) {
+                            throw new BadCredentialsException("Bad credentials");
+                        }
+                        return toJwtResponse(new UsernamePasswordAuthenticationToken(
+                                userDetails, null, userDetails.getAuthorities()));
+                    });
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(tooBusy());
+        }
+    }
 
-        Authentication authentication = authenticationManager.authenticate(
-                new UsernamePasswordAuthenticationToken(loginRequest.getEmail(), loginRequest.getPassword()));
+    private UserDetailsImpl loadUser(String email) {
+        try {
+            return (UserDetailsImpl) userDetailsService.loadUserByUsername(email);
+        } catch (UsernameNotFoundException e) {
+            return null;
+        }
+    }
 
-        SecurityContextHolder.getContext().setAuthentication(authentication);
+    private ResponseEntity<?> toJwtResponse(Authentication authentication) {
         String jwt = jwtUtils.generateJwtToken(authentication);
+        // the principal was loaded before the password check and already carries every attribute needed here
         UserDetailsImpl userDetails = (UserDetailsImpl) authentication.getPrincipal();
 
-        boolean isAdmin = false;
-        User user = this.userRepository.findByEmail(userDetails.getUsername()).orElse(null);
-        if (user != null) {
-            isAdmin = user.isAdmin();
-        }
-
         return ResponseEntity.ok(new JwtResponse(jwt,
                 userDetails.getId(),
                 userDetails.getUsername(),
                 userDetails.getFirstName(),
                 userDetails.getLastName(),
-                isAdmin));
+                Boolean.TRUE.equals(userDetails.getAdmin())));
     }
 
     @PostMapping("/register")
-    public ResponseEntity<?> registerUser(@Valid @RequestBody SignupRequest signUpRequest) {
+    public CompletableFuture<ResponseEntity<?>> registerUser(@Valid @RequestBody SignupRequest signUpRequest) {
         if (userRepository.existsByEmail(signUpRequest.getEmail())) {
-            return ResponseEntity
-                    .badRequest()
-                    .body(new MessageResponse("Error: Email is already taken!"));
+            return CompletableFuture.completedFuture(emailTaken());
+        }
+
+        try {
+            // the hashing pool only hashes, the insert runs on the application task executor
+            return passwordHashingExecutor
+                    .submit(() -> passwordEncoder.encode(signUpRequest.getPassword()))
+                    .thenApplyAsync(encodedPassword -> {
+                        // Create new user's account
+                        User user = new User(signUpRequest.getEmail(),
+                                signUpRequest.getLastName(),
+                                signUpRequest.getFirstName(),
+                                encodedPassword,
+                                false);
+
+                        try {
+                            userRepository.save(user);
+                        } catch (DataIntegrityViolationException e) {
+                            // registered concurrently since the check above
+                            return emailTaken();
+                        }
+
+                        return ResponseEntity.ok(new MessageResponse("User registered successfully!"));
+                    }, taskExecutor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(tooBusy());
         }
+    }
 
-        // Create new user's account
-        User user = new User(signUpRequest.getEmail(),
-                signUpRequest.getLastName(),
-                signUpRequest.getFirstName(),
-                passwordEncoder.encode(signUpRequest.getPassword()),
-                false);
+    /**
+     * Public keys other services can use to verify our tokens on their own.
+     */
+    @GetMapping("/jwks")
+    public ResponseEntity<?> jwks() {
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(5, TimeUnit.MINUTES).cachePublic())
+                .body(Collections.singletonMap("keys", jwtKeys.toJwks()));
+    }
 
-        userRepository.save(user);
+    private ResponseEntity<?> emailTaken() {
+        return ResponseEntity
+                .badRequest()
+                .body(new MessageResponse("Error: Email is already taken!"));
+    }
 
-        return ResponseEntity.ok(new MessageResponse("User registered successfully!"));
+    private ResponseEntity<?> tooBusy() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(RETRY_AFTER_SECONDS))
+                .body(new MessageResponse("Error: Too many authentication requests, please retry later."));
     }
 }
@@ -0,0 +1,60 @@
+package com.openclassrooms.starterjwt.controllers;
+
+import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.services.RowFormat;
+import com.openclassrooms.starterjwt.services.ExportService;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Admin exports written straight to the response as they are read, instead of being built in memory.
+ */
+@CrossOrigin(origins = "*", maxAge = 3600)
+@RestController
+@RequestMapping("/api/admin/export")
+@PreAuthorize("hasRole('ADMIN')")
+public class ExportController {
+    private final ExportService exportService;
+
+    public ExportController(ExportService exportService) {
+        this.exportService = exportService;
+    }
+
+    @GetMapping("/sessions")
+    public void exportSessions(@RequestParam(value = "format", defaultValue = "ndjson") String format,
+                               HttpServletResponse response) throws IOException {
+        RowFormat exportFormat = this.startAttachment(format, "sessions", response);
+
+        this.exportService.exportSessions(exportFormat, response.getOutputStream());
+    }
+
+    @GetMapping("/rosters")
+    public void exportRosters(@RequestParam(value = "format", defaultValue = "ndjson") String format,
+                              HttpServletResponse response) throws IOException {
+        RowFormat exportFormat = this.startAttachment(format, "rosters", response);
+
+        this.exportService.exportRosters(exportFormat, response.getOutputStream());
+    }
+
+    private RowFormat startAttachment(String format, String name, HttpServletResponse response) {
+        RowFormat exportFormat;
+        try {
+            exportFormat = RowFormat.parse(format);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException();
+        }
+
+        response.setContentType(exportFormat.getContentType());
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename(name + "." + exportFormat.getExtension())
+                .build()
+                .toString());
+        return exportFormat;
+    }
+}
@@ -0,0 +1,48 @@
+package com.openclassrooms.starterjwt.controllers;
+
+import com.openclassrooms.starterjwt.payload.response.ImportReport;
+import com.openclassrooms.starterjwt.services.ImportService;
+import com.openclassrooms.starterjwt.services.RowFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Admin bulk imports, read from the request body as a stream.
+ */
+@CrossOrigin(origins = "*", maxAge = 3600)
+@RestController
+@RequestMapping("/api/admin/import")
+@PreAuthorize("hasRole('ADMIN')")
+public class ImportController {
+    private static final int MAX_BATCH_SIZE = 10000;
+
+    private final ImportService importService;
+
+    public ImportController(ImportService importService) {
+        this.importService = importService;
+    }
+
+    @PostMapping("/sessions")
+    public ResponseEntity<?> importSessions(@RequestParam(value = "format", defaultValue = "ndjson") String format,
+                                            @RequestParam(value = "batchSize", required = false) Integer batchSize,
+                                            InputStream body) throws IOException {
+        RowFormat rowFormat;
+        try {
+            rowFormat = RowFormat.parse(format);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (batchSize != null && (batchSize < 1 || batchSize > MAX_BATCH_SIZE)) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        ImportReport report = batchSize != null
+                ? this.importService.importSessions(rowFormat, body, batchSize)
+                : this.importService.importSessions(rowFormat, body);
+        return ResponseEntity.ok().body(report);
+    }
+}
@@ -4,19 +4,40 @@ package com.openclassrooms.starterjwt.controllers;
 import com.openclassrooms.starterjwt.dto.SessionDto;
 import com.openclassrooms.starterjwt.mapper.SessionMapper;
 import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.payload.request.EnrollmentRequest;
+import com.openclassrooms.starterjwt.payload.response.EnrollmentResult;
+import com.openclassrooms.starterjwt.services.ResourceVersion;
+import com.openclassrooms.starterjwt.services.SessionCursor;
+import com.openclassrooms.starterjwt.services.SessionSearchResult;
 import com.openclassrooms.starterjwt.services.SessionService;
 import lombok.extern.log4j.Log4j2;
+import org.springframework.data.domain.Slice;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import javax.validation.Valid;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
-@CrossOrigin(origins = "*", maxAge = 3600)
+@CrossOrigin(origins = "*", maxAge = 3600, exposedHeaders = {SessionController.NEXT_CURSOR_HEADER, SessionController.TOTAL_COUNT_HEADER, HttpHeaders.ETAG})
 @RestController
 @RequestMapping("/api/session")
 @Log4j2
 public class SessionController {
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+
+    static final int DEFAULT_PAGE_SIZE = 100;
+
+    static final int MAX_PAGE_SIZE = 500;
+
     private final SessionMapper sessionMapper;
     private final SessionService sessionService;
 
@@ -28,25 +49,87 @@ public class SessionController {
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<?> findById(@PathVariable("id") String id) {
+    public ResponseEntity<?> findById(@PathVariable("id") String id, WebRequest request) {
         try {
+            ResourceVersion version = this.sessionService.getVersion(Long.valueOf(id));
+            if (version != null && request.checkNotModified(version.getETag(), version.getLastModified())) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
+            }
+
             Session session = this.sessionService.getById(Long.valueOf(id));
 
             if (session == null) {
                 return ResponseEntity.notFound().build();
             }
 
-            return ResponseEntity.ok().body(this.sessionMapper.toDto(session));
+            List<Long> participants = this.sessionService.getParticipantIds(session.getId());
+            return ResponseEntity.ok()
+                    .cacheControl(ResourceVersion.REVALIDATE)
+                    .body(this.sessionMapper.toDto(session, participants));
         } catch (NumberFormatException e) {
             return ResponseEntity.badRequest().build();
         }
     }
 
     @GetMapping()
-    public ResponseEntity<?> findAll() {
-        List<Session> sessions = this.sessionService.findAll();
+    public ResponseEntity<?> findAll(@RequestParam(value = "limit", required = false) Integer limit,
+                                     @RequestParam(value = "cursor", required = false) String cursor,
+                                     @RequestParam(value = "from", required = false)
+                                     @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME, fallbackPatterns = "yyyy-MM-dd") Date from,
+                                     @RequestParam(value = "to", required = false)
+                                     @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME, fallbackPatterns = "yyyy-MM-dd") Date to,
+                                     @RequestParam(value = "teacherId", required = false) Long teacherId,
+                                     WebRequest request) {
+        int pageSize = limit != null ? limit : DEFAULT_PAGE_SIZE;
+        if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        SessionCursor position;
+        try {
+            position = cursor != null ? SessionCursor.decode(cursor) : null;
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        // validators cover the whole collection, so they are conservative for a filtered page
+        ResourceVersion version = this.sessionService.getVersion();
+        if (request.checkNotModified(version.getETag(), version.getLastModified())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
+        }
+
+        Slice<Session> page = this.sessionService.findPage(position, from, to, teacherId, pageSize);
+        List<Session> sessions = page.getContent();
 
-        return ResponseEntity.ok().body(this.sessionMapper.toDto(sessions));
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().cacheControl(ResourceVersion.REVALIDATE);
+        if (page.hasNext()) {
+            response.header(NEXT_CURSOR_HEADER, SessionCursor.of(sessions.get(sessions.size() - 1)).encode());
+        }
+        Map<Long, List<Long>> participants = this.sessionService.getParticipantIds(
+                sessions.stream().map(Session::getId).collect(Collectors.toList()));
+        return response.body(this.sessionMapper.toDto(sessions, participants));
+    }
+
+    /**
+     * Sessions whose name or description contains any word of {@code q}, best match first, paged by offset since the
+     * ranking has no stable key to resume from.
+     */
+    @GetMapping("/search")
+    public ResponseEntity<?> search(@RequestParam("q") String query,
+                                    @RequestParam(value = "offset", defaultValue = "0") int offset,
+                                    @RequestParam(value = "limit", required = false) Integer limit) {
+        int pageSize = limit != null ? limit : DEFAULT_PAGE_SIZE;
+        if (query.trim().isEmpty() || offset < 0 || pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        SessionSearchResult result = this.sessionService.search(query, offset, pageSize);
+        List<Session> sessions = result.getSessions();
+        Map<Long, List<Long>> participants = this.sessionService.getParticipantIds(
+                sessions.stream().map(Session::getId).collect(Collectors.toList()));
+        return ResponseEntity.ok()
+                .header(TOTAL_COUNT_HEADER, String.valueOf(result.getTotal()))
+                .body(this.sessionMapper.toDto(sessions, participants));
     }
 
     @PostMapping()
@@ -60,11 +143,23 @@ public class SessionController {
     }
 
     @PutMapping("{id}")
-    public ResponseEntity<?> update(@PathVariable("id") String id, @Valid @RequestBody SessionDto sessionDto) {
+    public ResponseEntity<?> update(@PathVariable("id") String id,
+                                    @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                    @Valid @RequestBody SessionDto sessionDto) {
         try {
-            Session session = this.sessionService.update(Long.parseLong(id), this.sessionMapper.toEntity(sessionDto));
-
-            return ResponseEntity.ok().body(this.sessionMapper.toDto(session));
+            Long sessionId = Long.parseLong(id);
+            Session entity = this.sessionMapper.toEntity(sessionDto);
+            Session session = ifMatch != null
+                    ? this.sessionService.update(sessionId, entity, ifMatch)
+                    : this.sessionService.update(sessionId, entity);
+
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            // re-read so the tag carries the stored precision of updated_at
+            ResourceVersion version = this.sessionService.getVersion(sessionId);
+            if (version != null) {
+                response.eTag(version.getETag());
+            }
+            return response.body(this.sessionMapper.toDto(session));
         } catch (NumberFormatException e) {
             return ResponseEntity.badRequest().build();
         }
@@ -97,6 +192,17 @@ public class SessionController {
         }
     }
 
+    @PostMapping("{id}/participate")
+    public ResponseEntity<?> participateAll(@PathVariable("id") String id, @Valid @RequestBody EnrollmentRequest enrollmentRequest) {
+        try {
+            List<EnrollmentResult> results = this.sessionService.participateAll(Long.parseLong(id), enrollmentRequest.getUserIds());
+
+            return ResponseEntity.ok().body(results);
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     @DeleteMapping("{id}/participate/{userId}")
     public ResponseEntity<?> noLongerParticipate(@PathVariable("id") String id, @PathVariable("userId") String userId) {
         try {
@@ -1,28 +1,42 @@
 package com.openclassrooms.starterjwt.controllers;
 
+import com.openclassrooms.starterjwt.mapper.SessionMapper;
 import com.openclassrooms.starterjwt.mapper.UserMapper;
+import com.openclassrooms.starterjwt.models.Session;
 import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.services.SessionCursor;
+import com.openclassrooms.starterjwt.services.SessionService;
 import com.openclassrooms.starterjwt.services.UserService;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.stream.Collectors;
 
-@CrossOrigin(origins = "*", maxAge = 3600)
+@CrossOrigin(origins = "*", maxAge = 3600, exposedHeaders = SessionController.NEXT_CURSOR_HEADER)
 @RestController
 @RequestMapping("/api/user")
 public class UserController {
     private final UserMapper userMapper;
     private final UserService userService;
+    private final SessionMapper sessionMapper;
+    private final SessionService sessionService;
 
 
     public UserController(UserService userService,
-                             UserMapper userMapper) {
+                             UserMapper userMapper,
+                             SessionService sessionService,
+                             SessionMapper sessionMapper) {
         this.userMapper = userMapper;
         this.userService = userService;
+        this.sessionMapper = sessionMapper;
+        this.sessionService = sessionService;
     }
 
     @GetMapping("/{id}")
@@ -40,6 +54,52 @@ public class UserController {
         }
     }
 
+    /**
+     * Sessions the user takes part in, upcoming ({@code when=upcoming}, the default) or past ({@code when=past}),
+     * paged like {@code GET /api/session}.
+     */
+    @GetMapping("/{id}/sessions")
+    public ResponseEntity<?> findSessions(@PathVariable("id") String id,
+                                          @RequestParam(value = "when", defaultValue = "upcoming") String when,
+                                          @RequestParam(value = "limit", required = false) Integer limit,
+                                          @RequestParam(value = "cursor", required = false) String cursor) {
+        try {
+            Long userId = Long.valueOf(id);
+            boolean past;
+            if ("past".equalsIgnoreCase(when)) {
+                past = true;
+            } else if ("upcoming".equalsIgnoreCase(when)) {
+                past = false;
+            } else {
+                return ResponseEntity.badRequest().build();
+            }
+
+            int pageSize = limit != null ? limit : SessionController.DEFAULT_PAGE_SIZE;
+            if (pageSize < 1 || pageSize > SessionController.MAX_PAGE_SIZE) {
+                return ResponseEntity.badRequest().build();
+            }
+            SessionCursor position = cursor != null ? SessionCursor.decode(cursor) : null;
+
+            Slice<Session> page = this.sessionService.findPageByUser(userId, past, position, pageSize);
+            List<Session> sessions = page.getContent();
+            // only an empty first page can hide an unknown user
+            if (sessions.isEmpty() && position == null && !this.userService.exists(userId)) {
+                return ResponseEntity.notFound().build();
+            }
+
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            if (page.hasNext()) {
+                response.header(SessionController.NEXT_CURSOR_HEADER, SessionCursor.of(sessions.get(sessions.size() - 1)).encode());
+            }
+            Map<Long, List<Long>> participants = this.sessionService.getParticipantIds(
+                    sessions.stream().map(Session::getId).collect(Collectors.toList()));
+            return response.body(this.sessionMapper.toDto(sessions, participants));
+        } catch (IllegalArgumentException e) {
+            // malformed id or cursor
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     @DeleteMapping("{id}")
     public ResponseEntity<?> save(@PathVariable("id") String id) {
         try {
@@ -0,0 +1,68 @@
+package com.openclassrooms.starterjwt.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read replicas, enabled by listing their JDBC URLs in {@code oc.app.datasource.replica.urls}. They share the
+ * credentials of {@code spring.datasource} unless {@code oc.app.datasource.replica.username}/{@code password} are
+ * set. Without replicas the auto-configured data source is used as is.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "oc.app.datasource.replica", name = "urls")
+public class ReplicaDataSourceConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        primary.setPoolName("primary");
+        return primary;
+    }
+
+    @Bean
+    ReplicaRoutingDataSource replicaRoutingDataSource(HikariDataSource primaryDataSource,
+                                                      DataSourceProperties properties,
+                                                      ReplicaLagGuard replicaLagGuard,
+                                                      MeterRegistry meterRegistry,
+                                                      @Value("${oc.app.datasource.replica.urls}") List<String> urls,
+                                                      @Value("${oc.app.datasource.replica.username:}") String username,
+                                                      @Value("${oc.app.datasource.replica.password:}") String password) {
+        List<HikariDataSource> replicas = new ArrayList<>();
+        for (String url : urls) {
+            HikariDataSource replica = properties.initializeDataSourceBuilder().type(HikariDataSource.class).url(url).build();
+            if (!username.isEmpty()) {
+                replica.setUsername(username);
+                replica.setPassword(password);
+            }
+            replica.setPoolName("replica-" + replicas.size());
+            replica.setReadOnly(true);
+            // not beans, so the hikaricp.* meters have to be bound here
+            replica.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+            replicas.add(replica);
+        }
+        return new ReplicaRoutingDataSource(primaryDataSource, replicas, replicaLagGuard);
+    }
+
+    /**
+     * The data source seen by JPA, Flyway and JdbcTemplate.
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+}
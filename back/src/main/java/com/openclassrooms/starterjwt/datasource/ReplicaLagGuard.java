@@ -0,0 +1,80 @@
+package com.openclassrooms.starterjwt.datasource;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Remembers the users who just wrote, so that their own reads keep going to the primary until the replicas have
+ * caught up. The window should exceed the usual replication lag.
+ */
+@Component
+public class ReplicaLagGuard {
+    private static final ThreadLocal<Boolean> PRIMARY_ONLY = new ThreadLocal<>();
+
+    private final Cache<Long, Boolean> recentWriters;
+
+    public ReplicaLagGuard(@Value("${oc.app.datasource.replica.stickyMs:5000}") long stickyMs,
+                           @Value("${oc.app.datasource.replica.maxStickyUsers:100000}") long maxStickyUsers) {
+        this.recentWriters = Caffeine.newBuilder()
+                .maximumSize(maxStickyUsers)
+                .expireAfterWrite(Duration.ofMillis(stickyMs))
+                .build();
+    }
+
+    public void recordWrite(Long userId) {
+        this.recentWriters.put(userId, Boolean.TRUE);
+    }
+
+    /**
+     * Records a write by the authenticated user of the current thread, if any.
+     */
+    public void recordCurrentUserWrite() {
+        Long userId = currentUserId();
+        if (userId != null) {
+            this.recordWrite(userId);
+        }
+    }
+
+    /**
+     * Runs {@code reads} against the primary, read-only transactions included.
+     */
+    public <T> T readFromPrimary(Supplier<T> reads) {
+        Boolean outer = PRIMARY_ONLY.get();
+        PRIMARY_ONLY.set(Boolean.TRUE);
+        try {
+            return reads.get();
+        } finally {
+            if (outer == null) {
+                PRIMARY_ONLY.remove();
+            }
+        }
+    }
+
+    /**
+     * @return whether the current thread is inside {@link #readFromPrimary} or its authenticated user wrote recently
+     */
+    public boolean mustReadPrimary() {
+        if (PRIMARY_ONLY.get() != null) {
+            return true;
+        }
+
+        Long userId = currentUserId();
+        return userId != null && this.recentWriters.getIfPresent(userId) != null;
+    }
+
+    private static Long currentUserId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !(authentication.getPrincipal() instanceof UserDetailsImpl)) {
+            return null;
+        }
+        return ((UserDetailsImpl) authentication.getPrincipal()).getId();
+    }
+}
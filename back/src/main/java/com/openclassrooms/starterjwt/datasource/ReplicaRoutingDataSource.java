@@ -0,0 +1,63 @@
+package com.openclassrooms.starterjwt.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends the connections of read-only transactions to the replicas, in turn, and everything else to the primary.
+ *
+ * <p>The read-only flag of a transaction is only known once it has begun, after the transaction manager took its
+ * connection: this data source must sit behind a {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy},
+ * which defers the choice to the first statement.
+ */
+class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements DisposableBean {
+    static final String PRIMARY = "primary";
+
+    private final List<String> replicaKeys = new ArrayList<>();
+
+    private final List<HikariDataSource> replicas;
+
+    private final ReplicaLagGuard replicaLagGuard;
+
+    private final AtomicInteger nextReplica = new AtomicInteger();
+
+    ReplicaRoutingDataSource(DataSource primary, List<HikariDataSource> replicas, ReplicaLagGuard replicaLagGuard) {
+        this.replicas = replicas;
+        this.replicaLagGuard = replicaLagGuard;
+
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (int i = 0; i < replicas.size(); i++) {
+            String key = "replica-" + i;
+            this.replicaKeys.add(key);
+            targets.put(key, replicas.get(i));
+        }
+        this.setTargetDataSources(targets);
+        this.setDefaultTargetDataSource(primary);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (this.replicaKeys.isEmpty()
+                || !TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                || this.replicaLagGuard.mustReadPrimary()) {
+            return PRIMARY;
+        }
+        return this.replicaKeys.get(Math.floorMod(this.nextReplica.getAndIncrement(), this.replicaKeys.size()));
+    }
+
+    @Override
+    public void destroy() {
+        // the primary is a bean of its own, closed by the context
+        this.replicas.forEach(HikariDataSource::close);
+    }
+}
@@ -0,0 +1,134 @@
+package com.openclassrooms.starterjwt.datasource;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts the SQL statements, rows and JDBC time of each HTTP request, and warns about the requests going over the
+ * statement budget of their endpoint, naming the most repeated statement since a budget blown by a loop over lazy
+ * associations shows up as one statement executed many times.
+ *
+ * <p>Endpoints are keyed by method and mapping pattern, as in {@code GET /api/session/{id}}. Their budgets are listed in
+ * {@code oc.app.sqlBudget.endpoints}, comma separated, e.g. {@code GET /api/session=3,GET /api/teacher/{id}=1}; other
+ * endpoints get {@code oc.app.sqlBudget.default}. The statistics stay on the request under
+ * {@link StatementStats#REQUEST_ATTRIBUTE}.
+ *
+ * <p>Budgets leave out the statements loading the principal on a cache miss, which any endpoint may pay, and only
+ * cover the request thread: for an asynchronous request, the counting stops when the handler returns, so the work
+ * completing it on another thread (the insert of a registration) is not counted.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@ConditionalOnProperty(prefix = "oc.app.sqlBudget", name = "enabled", matchIfMissing = true)
+public class SqlBudgetFilter extends OncePerRequestFilter {
+    static final String METRIC_PREFIX = "http.server.requests.sql";
+
+    static final String UNMAPPED = "UNMAPPED";
+
+    private static final Logger logger = LoggerFactory.getLogger(SqlBudgetFilter.class);
+
+    private final int defaultBudget;
+
+    private final Map<String, Integer> budgets;
+
+    private final MeterRegistry meterRegistry;
+
+    public SqlBudgetFilter(@Value("${oc.app.sqlBudget.default:10}") int defaultBudget,
+                           @Value("${oc.app.sqlBudget.endpoints:}") List<String> endpoints,
+                           MeterRegistry meterRegistry) {
+        this.defaultBudget = defaultBudget;
+        this.budgets = parseBudgets(endpoints);
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        StatementStats stats = StatementStats.start();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            StatementStats.stop();
+            request.setAttribute(StatementStats.REQUEST_ATTRIBUTE, stats);
+            this.record(request, stats);
+        }
+    }
+
+    /**
+     * @return the statement budget of the endpoint, keyed by method and mapping pattern
+     */
+    public int getBudget(String endpoint) {
+        return this.budgets.getOrDefault(endpoint, this.defaultBudget);
+    }
+
+    private void record(HttpServletRequest request, StatementStats stats) {
+        if (stats.getStatements() == 0) {
+            return;
+        }
+
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String uri = pattern != null ? pattern.toString() : UNMAPPED;
+        String endpoint = request.getMethod() + " " + uri;
+
+        DistributionSummary.builder(METRIC_PREFIX + ".statements")
+                .tags("method", request.getMethod(), "uri", uri)
+                .register(this.meterRegistry)
+                .record(stats.getStatements());
+        DistributionSummary.builder(METRIC_PREFIX + ".rows")
+                .tags("method", request.getMethod(), "uri", uri)
+                .register(this.meterRegistry)
+                .record(stats.getRows());
+        Timer.builder(METRIC_PREFIX + ".time")
+                .description("Time spent in the JDBC driver per request")
+                .tags("method", request.getMethod(), "uri", uri)
+                .register(this.meterRegistry)
+                .record(stats.getJdbcNanos(), TimeUnit.NANOSECONDS);
+
+        int budget = this.getBudget(endpoint);
+        if (stats.getEndpointStatements() > budget) {
+            Counter.builder(METRIC_PREFIX + ".budget.exceeded")
+                    .tags("method", request.getMethod(), "uri", uri)
+                    .register(this.meterRegistry)
+                    .increment();
+            logger.warn("{} went over its SQL budget of {} statements: {}", endpoint, budget, stats);
+        }
+    }
+
+    static Map<String, Integer> parseBudgets(List<String> endpoints) {
+        Map<String, Integer> budgets = new HashMap<>();
+        for (String entry : endpoints) {
+            if (entry.trim().isEmpty()) {
+                continue;
+            }
+
+            int separator = entry.lastIndexOf('=');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Expected 'METHOD /pattern=budget', got '" + entry + "'");
+            }
+            budgets.put(entry.substring(0, separator).trim(), Integer.parseInt(entry.substring(separator + 1).trim()));
+        }
+        return Collections.unmodifiableMap(budgets);
+    }
+}
@@ -0,0 +1,153 @@
+package com.openclassrooms.starterjwt.datasource;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Records every statement executed through its connections, the rows read back and the time spent in the driver, into
+ * the {@link StatementStats} of the calling thread. A batch counts as one statement, as it is one round trip.
+ */
+class StatementCountingDataSource extends DelegatingDataSource implements AutoCloseable {
+
+    StatementCountingDataSource(DataSource targetDataSource) {
+        super(targetDataSource);
+    }
+
+    /**
+     * Closes the wrapped pool, since the container infers the destroy method from the wrapper.
+     */
+    @Override
+    public void close() throws Exception {
+        DataSource target = this.getTargetDataSource();
+        if (target instanceof AutoCloseable) {
+            ((AutoCloseable) target).close();
+        }
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrap(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrap(super.getConnection(username, password));
+    }
+
+    private static Connection wrap(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(StatementCountingDataSource.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new ConnectionHandler(connection));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    private static final class ConnectionHandler implements InvocationHandler {
+        private final Connection target;
+
+        private ConnectionHandler(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = StatementCountingDataSource.invoke(this.target, method, args);
+            if (!(result instanceof Statement)) {
+                return result;
+            }
+
+            String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null;
+            Class<?> type = result instanceof CallableStatement ? CallableStatement.class
+                    : result instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+            return Proxy.newProxyInstance(StatementCountingDataSource.class.getClassLoader(), new Class<?>[]{type},
+                    new StatementHandler((Statement) result, sql));
+        }
+    }
+
+    private static final class StatementHandler implements InvocationHandler {
+        private final Statement target;
+
+        // the prepared text, or the last one added to a plain statement batch
+        private String sql;
+
+        private StatementHandler(Statement target, String sql) {
+            this.target = target;
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            StatementStats stats = StatementStats.current();
+            String name = method.getName();
+            if (stats == null) {
+                return StatementCountingDataSource.invoke(this.target, method, args);
+            }
+
+            if (name.equals("addBatch") && args != null && args.length == 1) {
+                this.sql = (String) args[0];
+            }
+            boolean execution = name.startsWith("execute");
+            String executed = execution && args != null && args.length > 0 && args[0] instanceof String
+                    ? (String) args[0] : this.sql;
+
+            long start = System.nanoTime();
+            Object result = StatementCountingDataSource.invoke(this.target, method, args);
+            long elapsed = System.nanoTime() - start;
+            if (execution) {
+                stats.recordStatement(executed, elapsed);
+            } else if (result instanceof ResultSet) {
+                stats.recordTime(elapsed);
+            }
+
+            if (result instanceof ResultSet) {
+                return Proxy.newProxyInstance(StatementCountingDataSource.class.getClassLoader(),
+                        new Class<?>[]{ResultSet.class}, new ResultSetHandler((ResultSet) result));
+            }
+            return result;
+        }
+    }
+
+    private static final class ResultSetHandler implements InvocationHandler {
+        private final ResultSet target;
+
+        private ResultSetHandler(ResultSet target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (!method.getName().equals("next")) {
+                return StatementCountingDataSource.invoke(this.target, method, args);
+            }
+
+            long start = System.nanoTime();
+            Object result = StatementCountingDataSource.invoke(this.target, method, args);
+            StatementStats stats = StatementStats.current();
+            if (stats != null) {
+                long elapsed = System.nanoTime() - start;
+                if (Boolean.TRUE.equals(result)) {
+                    stats.recordRow(elapsed);
+                } else {
+                    stats.recordTime(elapsed);
+                }
+            }
+            return result;
+        }
+    }
+}
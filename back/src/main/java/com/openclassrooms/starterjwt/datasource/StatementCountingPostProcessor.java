@@ -0,0 +1,25 @@
+package com.openclassrooms.starterjwt.datasource;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+
+/**
+ * Wraps the data source seen by JPA, Flyway and JdbcTemplate so that {@link SqlBudgetFilter} can count statements.
+ * The pools behind it, primary and replicas, stay unwrapped.
+ */
+@Component
+@ConditionalOnProperty(prefix = "oc.app.sqlBudget", name = "enabled", matchIfMissing = true)
+public class StatementCountingPostProcessor implements BeanPostProcessor {
+    static final String DATA_SOURCE_BEAN = "dataSource";
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (DATA_SOURCE_BEAN.equals(beanName) && bean instanceof DataSource && !(bean instanceof StatementCountingDataSource)) {
+            return new StatementCountingDataSource((DataSource) bean);
+        }
+        return bean;
+    }
+}
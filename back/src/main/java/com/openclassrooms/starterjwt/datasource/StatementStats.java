@@ -0,0 +1,141 @@
+package com.openclassrooms.starterjwt.datasource;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * SQL statements, rows read and time spent in the JDBC driver by one unit of work, usually an HTTP request. Counting
+ * only happens on a thread between {@link #start()} and {@link #stop()}: work handed to another thread, such as the
+ * password hashing and the insert of a registration, is not counted.
+ */
+public final class StatementStats {
+    /**
+     * Request attribute holding the statistics of the request, once it completed.
+     */
+    public static final String REQUEST_ATTRIBUTE = StatementStats.class.getName();
+
+    // distinct statement texts remembered per unit of work, enough to spot a repeated one
+    static final int MAX_DISTINCT_STATEMENTS = 100;
+
+    private static final ThreadLocal<StatementStats> CURRENT = new ThreadLocal<>();
+
+    private final Map<String, Integer> executions = new HashMap<>();
+
+    private int statements;
+
+    private int authenticationStatements;
+
+    private boolean authenticating;
+
+    private long rows;
+
+    private long jdbcNanos;
+
+    /**
+     * Starts counting on the current thread, replacing any statistics already started there.
+     */
+    public static StatementStats start() {
+        StatementStats stats = new StatementStats();
+        CURRENT.set(stats);
+        return stats;
+    }
+
+    /**
+     * @return the statistics being counted on the current thread, or null
+     */
+    public static StatementStats current() {
+        return CURRENT.get();
+    }
+
+    public static void stop() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Runs the loading of the principal of the request, whose statements are counted apart: they depend on the
+     * principal cache, not on the endpoint.
+     */
+    public static <T> T authenticating(Supplier<T> work) {
+        StatementStats stats = current();
+        if (stats == null || stats.authenticating) {
+            return work.get();
+        }
+        stats.authenticating = true;
+        try {
+            return work.get();
+        } finally {
+            stats.authenticating = false;
+        }
+    }
+
+    void recordStatement(String sql, long nanos) {
+        this.statements++;
+        if (this.authenticating) {
+            this.authenticationStatements++;
+        }
+        this.jdbcNanos += nanos;
+        if (sql != null && (this.executions.size() < MAX_DISTINCT_STATEMENTS || this.executions.containsKey(sql))) {
+            this.executions.merge(sql, 1, Integer::sum);
+        }
+    }
+
+    void recordRow(long nanos) {
+        this.rows++;
+        this.jdbcNanos += nanos;
+    }
+
+    void recordTime(long nanos) {
+        this.jdbcNanos += nanos;
+    }
+
+    public int getStatements() {
+        return statements;
+    }
+
+    /**
+     * @return the statements run to load the principal of the request, included in {@link #getStatements()}
+     */
+    public int getAuthenticationStatements() {
+        return authenticationStatements;
+    }
+
+    /**
+     * @return the statements run by the endpoint itself, the ones its budget applies to
+     */
+    public int getEndpointStatements() {
+        return statements - authenticationStatements;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public long getJdbcNanos() {
+        return jdbcNanos;
+    }
+
+    /**
+     * @return the statement text executed the most times, the usual sign of an N+1 query, or null
+     */
+    public String getMostRepeatedStatement() {
+        return this.executions.entrySet().stream()
+                .max(Map.Entry.comparingByValue())
+                .map(Map.Entry::getKey)
+                .orElse(null);
+    }
+
+    public int getExecutions(String sql) {
+        return sql != null ? this.executions.getOrDefault(sql, 0) : 0;
+    }
+
+    @Override
+    public String toString() {
+        String repeated = this.getMostRepeatedStatement();
+        int executions = this.getExecutions(repeated);
+        return this.statements + " statements"
+                + (this.authenticationStatements > 0 ? " (" + this.authenticationStatements + " to authenticate)" : "")
+                + ", " + this.rows + " rows, " + this.jdbcNanos / 1_000_000 + " ms in JDBC"
+                + (executions > 1 ? ", most repeated (" + executions + "x): " + repeated : "");
+    }
+}
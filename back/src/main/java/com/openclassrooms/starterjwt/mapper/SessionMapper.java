@@ -1,18 +1,23 @@
 package com.openclassrooms.starterjwt.mapper;
 
 import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.exception.BadRequestException;
 import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.Teacher;
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.services.TeacherService;
 import com.openclassrooms.starterjwt.services.UserService;
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
 import org.mapstruct.Mappings;
+import org.mapstruct.Named;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -27,11 +32,40 @@ public abstract class SessionMapper implements EntityMapper<SessionDto, Session>
 
     @Mappings({
             @Mapping(source = "description", target = "description"),
-            @Mapping(target = "teacher", expression = "java(sessionDto.getTeacher_id() != null ? this.teacherService.findById(sessionDto.getTeacher_id()) : null)"),
-            @Mapping(target = "users", expression = "java(Optional.ofNullable(sessionDto.getUsers()).orElseGet(Collections::emptyList).stream().map(user_id -> { User user = this.userService.findById(user_id); if (user != null) { return user; } return null; }).collect(Collectors.toList()))"),
+            @Mapping(source = "teacher_id", target = "teacher", qualifiedByName = "teacher"),
+            @Mapping(target = "booked", ignore = true),
+            @Mapping(source = "users", target = "users", qualifiedByName = "users"),
     })
     public abstract Session toEntity(SessionDto sessionDto);
 
+    /**
+     * Resolves the teacher from the in-memory catalog, so mapping a session costs no query for it.
+     *
+     * @throws BadRequestException when the id matches no teacher
+     */
+    @Named("teacher")
+    protected Teacher toTeacher(Long teacherId) {
+        if (teacherId == null) {
+            return null;
+        }
+
+        Teacher teacher = this.teacherService.findById(teacherId);
+        if (teacher == null) {
+            throw new BadRequestException();
+        }
+        return teacher;
+    }
+
+    /**
+     * Loads every participant with a single statement, whatever their number.
+     *
+     * @throws BadRequestException when an id matches no user
+     */
+    @Named("users")
+    protected List<User> toUsers(List<Long> userIds) {
+        return this.userService.findAllById(userIds != null ? userIds : Collections.emptyList());
+    }
+
 
     @Mappings({
             @Mapping(source = "description", target = "description"),
@@ -39,4 +73,28 @@ public abstract class SessionMapper implements EntityMapper<SessionDto, Session>
             @Mapping(target = "users", expression = "java(Optional.ofNullable(session.getUsers()).orElseGet(Collections::emptyList).stream().map(u -> u.getId()).collect(Collectors.toList()))"),
     })
     public abstract SessionDto toDto(Session session);
+
+    @Named("withoutUsers")
+    @Mappings({
+            @Mapping(source = "session.teacher.id", target = "teacher_id"),
+            @Mapping(target = "users", ignore = true),
+    })
+    protected abstract SessionDto toDtoWithoutUsers(Session session);
+
+    /**
+     * Maps a session whose participant ids were fetched separately, leaving its lazy users untouched.
+     */
+    public SessionDto toDto(Session session, List<Long> userIds) {
+        SessionDto sessionDto = this.toDtoWithoutUsers(session);
+        if (sessionDto != null) {
+            sessionDto.setUsers(userIds);
+        }
+        return sessionDto;
+    }
+
+    public List<SessionDto> toDto(List<Session> sessions, Map<Long, List<Long>> userIdsBySession) {
+        return sessions.stream()
+                .map(session -> this.toDto(session, userIdsBySession.getOrDefault(session.getId(), Collections.emptyList())))
+                .collect(Collectors.toList());
+    }
 }
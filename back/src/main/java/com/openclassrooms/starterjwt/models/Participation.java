@@ -0,0 +1,23 @@
+package com.openclassrooms.starterjwt.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.EmbeddedId;
+import javax.persistence.Entity;
+import javax.persistence.Table;
+
+/**
+ * Row of the PARTICIPATE join table behind {@link Session#getUsers()}, keyed by (session_id, user_id)
+ * so that joining or leaving a session is a single-row statement and duplicates are rejected by the database.
+ */
+@Entity
+@Table(name = "PARTICIPATE")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class Participation {
+    @EmbeddedId
+    private ParticipationId id;
+}
@@ -0,0 +1,28 @@
+package com.openclassrooms.starterjwt.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * Tokens of the user issued up to {@code revokedBefore} (epoch millisecond) are no longer accepted.
+ * No foreign key on purpose: the row must outlive a deleted user until its tokens expire.
+ */
+@Entity
+@Table(name = "REVOKED_USERS")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RevokedUser {
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(name = "revoked_before", nullable = false)
+    private long revokedBefore;
+}
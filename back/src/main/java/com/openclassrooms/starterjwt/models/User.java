@@ -2,6 +2,7 @@ package com.openclassrooms.starterjwt.models;
 
 import lombok.*;
 import lombok.experimental.Accessors;
+import com.openclassrooms.starterjwt.security.services.UserChangeListener;
 import org.hibernate.annotations.UpdateTimestamp;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
@@ -17,7 +18,7 @@ import java.time.LocalDateTime;
 })
 @Data
 @Accessors(chain = true)
-@EntityListeners(AuditingEntityListener.class)
+@EntityListeners({AuditingEntityListener.class, UserChangeListener.class})
 @EqualsAndHashCode(of = {"id"})
 @Builder
 @NoArgsConstructor
@@ -0,0 +1,19 @@
+package com.openclassrooms.starterjwt.payload.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class EnrollmentResult {
+  public enum Status {
+    ADDED,
+    ALREADY_PRESENT,
+    UNKNOWN_USER,
+    SESSION_FULL
+  }
+
+  private Long userId;
+
+  private Status status;
+}
@@ -0,0 +1,27 @@
+package com.openclassrooms.starterjwt.payload.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+@Getter
+@AllArgsConstructor
+public class ImportReport {
+  @Getter
+  @AllArgsConstructor
+  public static class RowError {
+    private long line;
+
+    private String message;
+  }
+
+  private long imported;
+
+  private long rejected;
+
+  /**
+   * The first rejected rows, in input order; {@code rejected} counts all of them.
+   */
+  private List<RowError> errors;
+}
@@ -0,0 +1,13 @@
+package com.openclassrooms.starterjwt.repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * Row count and latest {@code updated_at} of a table, read with one aggregate query.
+ * Any insert, update or delete changes at least one of the two.
+ */
+public interface ChangeStamp {
+    long getRowCount();
+
+    LocalDateTime getLastModified();
+}
@@ -0,0 +1,16 @@
+package com.openclassrooms.starterjwt.repository;
+
+/**
+ * One line of a session roster.
+ */
+public interface ParticipantExportRow {
+    Long getSessionId();
+
+    Long getUserId();
+
+    String getEmail();
+
+    String getFirstName();
+
+    String getLastName();
+}
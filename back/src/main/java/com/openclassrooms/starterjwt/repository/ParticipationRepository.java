@@ -0,0 +1,55 @@
+package com.openclassrooms.starterjwt.repository;
+
+import com.openclassrooms.starterjwt.models.Participation;
+import com.openclassrooms.starterjwt.models.ParticipationId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.QueryHint;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+@Repository
+public interface ParticipationRepository extends JpaRepository<Participation, ParticipationId>, ParticipationRepositoryCustom {
+
+    /**
+     * Fails with a {@link org.springframework.dao.DataIntegrityViolationException} when the pair already
+     * exists or when either side does not.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO PARTICIPATE (session_id, user_id) VALUES (:sessionId, :userId)", nativeQuery = true)
+    int insert(@Param("sessionId") Long sessionId, @Param("userId") Long userId);
+
+    @Transactional
+    @Modifying
+    @Query("delete from Participation p where p.id.sessionId = :sessionId and p.id.userId = :userId")
+    int remove(@Param("sessionId") Long sessionId, @Param("userId") Long userId);
+
+    /**
+     * Returns {@code [sessionId, userId]} pairs read from the primary key alone.
+     */
+    @Query("select p.id.sessionId, p.id.userId from Participation p"
+            + " where p.id.sessionId in :sessionIds order by p.id.sessionId, p.id.userId")
+    List<Object[]> findUserIds(@Param("sessionIds") Collection<Long> sessionIds);
+
+    @Query("select p.id.userId from Participation p where p.id.sessionId = :sessionId and p.id.userId in :userIds")
+    List<Long> findUserIdsAmong(@Param("sessionId") Long sessionId, @Param("userIds") Collection<Long> userIds);
+
+    /**
+     * Every participant of every session with the user's contact details, ordered by session.
+     * Must be closed, inside a transaction.
+     */
+    @QueryHints(@QueryHint(name = org.hibernate.annotations.QueryHints.FETCH_SIZE, value = SessionRepository.EXPORT_FETCH_SIZE))
+    @Query("select p.id.sessionId as sessionId, u.id as userId, u.email as email,"
+            + " u.firstName as firstName, u.lastName as lastName"
+            + " from Participation p join User u on u.id = p.id.userId"
+            + " order by p.id.sessionId, u.id")
+    Stream<ParticipantExportRow> streamRostersForExport();
+}
@@ -0,0 +1,11 @@
+package com.openclassrooms.starterjwt.repository;
+
+import java.util.Collection;
+
+public interface ParticipationRepositoryCustom {
+
+    /**
+     * Inserts one PARTICIPATE row per user id using JDBC statement batching. Must run inside the caller's transaction.
+     */
+    void insertAll(Long sessionId, Collection<Long> userIds);
+}
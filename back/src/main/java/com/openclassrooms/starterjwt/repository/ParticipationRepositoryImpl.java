@@ -0,0 +1,27 @@
+package com.openclassrooms.starterjwt.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Collection;
+
+class ParticipationRepositoryImpl implements ParticipationRepositoryCustom {
+    private static final String INSERT_SQL = "INSERT INTO PARTICIPATE (session_id, user_id) VALUES (?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final int batchSize;
+
+    ParticipationRepositoryImpl(JdbcTemplate jdbcTemplate, @Value("${oc.app.jdbc.batchSize:100}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void insertAll(Long sessionId, Collection<Long> userIds) {
+        this.jdbcTemplate.batchUpdate(INSERT_SQL, userIds, this.batchSize, (statement, userId) -> {
+            statement.setLong(1, sessionId);
+            statement.setLong(2, userId);
+        });
+    }
+}
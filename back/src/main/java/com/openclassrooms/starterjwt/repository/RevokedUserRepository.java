@@ -0,0 +1,18 @@
+package com.openclassrooms.starterjwt.repository;
+
+import com.openclassrooms.starterjwt.models.RevokedUser;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+@Repository
+public interface RevokedUserRepository extends JpaRepository<RevokedUser, Long>, RevokedUserRepositoryCustom {
+
+    @Transactional
+    @Modifying
+    @Query("delete from RevokedUser r where r.revokedBefore < :limit")
+    int deleteRevokedBefore(@Param("limit") long limit);
+}
@@ -0,0 +1,10 @@
+package com.openclassrooms.starterjwt.repository;
+
+public interface RevokedUserRepositoryCustom {
+
+    /**
+     * Inserts or moves the cut-off of the user with plain JDBC, so it can run from an entity listener
+     * without flushing the persistence context again.
+     */
+    void upsert(Long userId, long revokedBefore);
+}
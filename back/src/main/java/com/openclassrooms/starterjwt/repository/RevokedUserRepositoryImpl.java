@@ -0,0 +1,19 @@
+package com.openclassrooms.starterjwt.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+class RevokedUserRepositoryImpl implements RevokedUserRepositoryCustom {
+    private static final String UPSERT_SQL = "INSERT INTO REVOKED_USERS (user_id, revoked_before) VALUES (?, ?)"
+            + " ON DUPLICATE KEY UPDATE revoked_before = VALUES(revoked_before)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    RevokedUserRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void upsert(Long userId, long revokedBefore) {
+        this.jdbcTemplate.update(UPSERT_SQL, userId, revokedBefore);
+    }
+}
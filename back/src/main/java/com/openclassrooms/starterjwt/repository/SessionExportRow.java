@@ -0,0 +1,23 @@
+package com.openclassrooms.starterjwt.repository;
+
+import java.util.Date;
+
+/**
+ * One (session, participant) pair of the export query; {@code userId} is {@code null} for a session without
+ * participants.
+ */
+public interface SessionExportRow {
+    Long getId();
+
+    String getName();
+
+    Date getDate();
+
+    Long getTeacherId();
+
+    Integer getCapacity();
+
+    int getBooked();
+
+    Long getUserId();
+}
@@ -1,9 +1,115 @@
 package com.openclassrooms.starterjwt.repository;
 
 import com.openclassrooms.starterjwt.models.Session;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+import java.time.LocalDateTime;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
-public interface SessionRepository  extends JpaRepository<Session, Long> {
+public interface SessionRepository  extends JpaRepository<Session, Long>, SessionRepositoryCustom {
+    /**
+     * Rows fetched per round trip by the export streams; on MySQL this needs {@code useCursorFetch=true}.
+     */
+    String EXPORT_FETCH_SIZE = "500";
+
+    @Query("select s from Session s"
+            + " where s.date >= :after and (s.date > :after or s.id > :afterId) and s.date < :before"
+            + " order by s.date asc, s.id asc")
+    Slice<Session> findPage(@Param("after") Date after,
+                            @Param("afterId") Long afterId,
+                            @Param("before") Date before,
+                            Pageable pageable);
+
+    @Query("select s from Session s"
+            + " where s.teacher.id = :teacherId"
+            + " and s.date >= :after and (s.date > :after or s.id > :afterId) and s.date < :before"
+            + " order by s.date asc, s.id asc")
+    Slice<Session> findPageByTeacher(@Param("teacherId") Long teacherId,
+                                     @Param("after") Date after,
+                                     @Param("afterId") Long afterId,
+                                     @Param("before") Date before,
+                                     Pageable pageable);
+
+    /**
+     * Upcoming sessions of a user, read from the user's PARTICIPATE rows so the cost depends on their bookings only.
+     */
+    @Query("select s from Participation p join Session s on s.id = p.id.sessionId"
+            + " where p.id.userId = :userId"
+            + " and s.date >= :after and (s.date > :after or s.id > :afterId)"
+            + " order by s.date asc, s.id asc")
+    Slice<Session> findUpcomingPageByUser(@Param("userId") Long userId,
+                                          @Param("after") Date after,
+                                          @Param("afterId") Long afterId,
+                                          Pageable pageable);
+
+    /**
+     * Past sessions of a user, most recent first; see {@link #findUpcomingPageByUser}.
+     */
+    @Query("select s from Participation p join Session s on s.id = p.id.sessionId"
+            + " where p.id.userId = :userId"
+            + " and s.date <= :before and (s.date < :before or s.id < :beforeId)"
+            + " order by s.date desc, s.id desc")
+    Slice<Session> findPastPageByUser(@Param("userId") Long userId,
+                                      @Param("before") Date before,
+                                      @Param("beforeId") Long beforeId,
+                                      Pageable pageable);
+
+    /**
+     * Polled by every {@code GET /api/session}; {@code count(*)} rather than {@code count(s)} lets both aggregates
+     * be read from {@code idx_sessions_updated_at}.
+     */
+    @Query("select count(*) as rowCount, max(s.updatedAt) as lastModified from Session s")
+    ChangeStamp findChangeStamp();
+
+    @Query("select s.updatedAt from Session s where s.id = :id")
+    Optional<LocalDateTime> findUpdatedAtById(@Param("id") Long id);
+
+    /**
+     * Takes one seat if the session still has room; returns 0 when it is full or does not exist.
+     * Bulk updates skip {@code @UpdateTimestamp}, hence the explicit {@code now}.
+     */
+    @Transactional
+    @Modifying
+    @Query("update Session s set s.booked = s.booked + 1, s.updatedAt = :now"
+            + " where s.id = :id and (s.capacity is null or s.booked < s.capacity)")
+    int reserveSeat(@Param("id") Long id, @Param("now") LocalDateTime now);
+
+    @Transactional
+    @Modifying
+    @Query("update Session s set s.booked = s.booked - 1, s.updatedAt = :now where s.id = :id and s.booked > 0")
+    int releaseSeat(@Param("id") Long id, @Param("now") LocalDateTime now);
+
+    /**
+     * Every session joined with its participant ids, ordered by session so a reader can group consecutive rows.
+     * Projections stay out of the persistence context, so the stream can be consumed in constant memory.
+     * Must be closed, inside a transaction.
+     */
+    @QueryHints(@QueryHint(name = org.hibernate.annotations.QueryHints.FETCH_SIZE, value = EXPORT_FETCH_SIZE))
+    @Query("select s.id as id, s.name as name, s.date as date, s.teacher.id as teacherId,"
+            + " s.capacity as capacity, s.booked as booked, p.id.userId as userId"
+            + " from Session s left join Participation p on p.id.sessionId = s.id"
+            + " order by s.id, p.id.userId")
+    Stream<SessionExportRow> streamForExport();
+
+    @Query("select s.id as id, s.name as name, s.description as description from Session s")
+    List<SessionSearchRow> findAllForSearch();
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select s from Session s where s.id = :id")
+    Optional<Session> findByIdForUpdate(@Param("id") Long id);
 }
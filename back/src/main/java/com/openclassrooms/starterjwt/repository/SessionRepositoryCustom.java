@@ -0,0 +1,13 @@
+package com.openclassrooms.starterjwt.repository;
+
+import com.openclassrooms.starterjwt.models.Session;
+
+import java.util.List;
+
+public interface SessionRepositoryCustom {
+    /**
+     * Inserts new sessions, without participants, using JDBC statement batching, and sets their generated ids;
+     * entity listeners are bypassed. Must run inside the caller's transaction.
+     */
+    void insertAll(List<Session> sessions);
+}
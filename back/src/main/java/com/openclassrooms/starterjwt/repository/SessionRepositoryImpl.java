@@ -0,0 +1,69 @@
+package com.openclassrooms.starterjwt.repository;
+
+import com.openclassrooms.starterjwt.models.Session;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataRetrievalFailureException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.List;
+
+class SessionRepositoryImpl implements SessionRepositoryCustom {
+    private static final String INSERT_SQL = "INSERT INTO SESSIONS"
+            + " (name, date, description, teacher_id, capacity, booked, created_at, updated_at)"
+            + " VALUES (?, ?, ?, ?, ?, 0, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final int batchSize;
+
+    SessionRepositoryImpl(JdbcTemplate jdbcTemplate, @Value("${oc.app.jdbc.batchSize:100}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void insertAll(List<Session> sessions) {
+        // @CreatedDate and @UpdateTimestamp do not run on this path
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        // JdbcTemplate.batchUpdate cannot return generated keys, hence the plain statement
+        this.jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+                for (int start = 0; start < sessions.size(); start += this.batchSize) {
+                    List<Session> chunk = sessions.subList(start, Math.min(start + this.batchSize, sessions.size()));
+                    for (Session session : chunk) {
+                        statement.setString(1, session.getName());
+                        statement.setTimestamp(2, new Timestamp(session.getDate().getTime()));
+                        statement.setString(3, session.getDescription());
+                        statement.setLong(4, session.getTeacher().getId());
+                        if (session.getCapacity() != null) {
+                            statement.setInt(5, session.getCapacity());
+                        } else {
+                            statement.setNull(5, Types.INTEGER);
+                        }
+                        statement.setTimestamp(6, now);
+                        statement.setTimestamp(7, now);
+                        statement.addBatch();
+                    }
+                    statement.executeBatch();
+
+                    try (ResultSet keys = statement.getGeneratedKeys()) {
+                        for (Session session : chunk) {
+                            if (!keys.next()) {
+                                throw new DataRetrievalFailureException("Missing generated key for session " + session.getName());
+                            }
+                            session.setId(keys.getLong(1));
+                        }
+                    }
+                }
+            }
+            return null;
+        });
+    }
+}
@@ -0,0 +1,12 @@
+package com.openclassrooms.starterjwt.repository;
+
+/**
+ * Indexed text of one session, loaded when the search index is rebuilt.
+ */
+public interface SessionSearchRow {
+    Long getId();
+
+    String getName();
+
+    String getDescription();
+}
@@ -0,0 +1,39 @@
+package com.openclassrooms.starterjwt.security;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.openclassrooms.starterjwt.security.jwt.JwtKeys;
+
+@Configuration
+public class JwtConfig {
+  private static final Logger logger = LoggerFactory.getLogger(JwtConfig.class);
+
+  @Bean
+  public JwtKeys jwtKeys(@Value("${oc.app.jwtAlgorithm:HS512}") String algorithm,
+                         @Value("${oc.app.jwtSecret}") String jwtSecret,
+                         @Value("${oc.app.jwtKeyDir:}") String keyDir,
+                         @Value("${oc.app.jwtActiveKid:}") String activeKid,
+                         @Value("${oc.app.jwtKeyReloadMs:60000}") long keyReloadMs) throws IOException, GeneralSecurityException {
+    switch (algorithm) {
+      case "HS512":
+        return JwtKeys.hmac(jwtSecret);
+      case "RS256":
+        if (keyDir.isEmpty()) {
+          logger.warn("No oc.app.jwtKeyDir configured, signing with a generated RSA key valid for this process only");
+          return JwtKeys.generatedRsa();
+        }
+        // keys added to or removed from the directory are picked up without a restart
+        return JwtKeys.loadRsa(Paths.get(keyDir), activeKid).reloadEvery(keyReloadMs);
+      default:
+        throw new IllegalArgumentException("Unsupported oc.app.jwtAlgorithm: " + algorithm);
+    }
+  }
+}
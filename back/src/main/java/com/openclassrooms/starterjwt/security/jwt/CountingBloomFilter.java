@@ -0,0 +1,66 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Counting Bloom filter over long keys: {@link #mightContain(long)} never misses a key that was
+ * added and not removed, and answers most absent keys without touching anything else.
+ * Counters let keys be removed again once their revocation expires.
+ */
+class CountingBloomFilter {
+  private static final int HASHES = 4;
+
+  private final AtomicIntegerArray counters;
+
+  private final int mask;
+
+  /**
+   * @param sizeLog2 log2 of the number of counters
+   */
+  CountingBloomFilter(int sizeLog2) {
+    this.counters = new AtomicIntegerArray(1 << sizeLog2);
+    this.mask = (1 << sizeLog2) - 1;
+  }
+
+  void add(long key) {
+    long hash = mix(key);
+    for (int i = 0; i < HASHES; i++) {
+      this.counters.incrementAndGet(index(hash, i));
+    }
+  }
+
+  void remove(long key) {
+    long hash = mix(key);
+    for (int i = 0; i < HASHES; i++) {
+      this.counters.decrementAndGet(index(hash, i));
+    }
+  }
+
+  boolean mightContain(long key) {
+    long hash = mix(key);
+    for (int i = 0; i < HASHES; i++) {
+      if (this.counters.get(index(hash, i)) <= 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // double hashing on the two halves of one 64-bit hash
+  private int index(long hash, int i) {
+    int h1 = (int) hash;
+    int h2 = (int) (hash >>> 32) | 1;
+    return (h1 + i * h2) & this.mask;
+  }
+
+  // MurmurHash3 finalizer
+  private static long mix(long key) {
+    long h = key;
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb93fe53a87c3L;
+    h ^= h >>> 33;
+    return h;
+  }
+}
@@ -0,0 +1,317 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.interfaces.RSAPrivateCrtKey;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.RSAPublicKeySpec;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.spec.SecretKeySpec;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtBuilder;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.SignatureException;
+import io.jsonwebtoken.SigningKeyResolverAdapter;
+import io.jsonwebtoken.UnsupportedJwtException;
+import io.jsonwebtoken.impl.TextCodec;
+
+/**
+ * Keys used to sign and verify tokens.
+ *
+ * <p>With HS512 a single shared secret does both. With RS256 every key pair is tagged with a
+ * {@code kid}: the active one signs, the others only verify, so a new key can be rolled out while
+ * tokens signed with the previous one are still valid. Public keys are published as a JWK set.
+ * EdDSA would be the cheaper asymmetric choice, but jjwt 0.9.1 does not implement it.
+ *
+ * <p>Keys loaded from a directory can be reloaded while running, see {@link #reloadEvery(long)}.
+ */
+public class JwtKeys extends SigningKeyResolverAdapter implements AutoCloseable {
+  private static final Logger logger = LoggerFactory.getLogger(JwtKeys.class);
+
+  // null unless loaded from a directory
+  private final Path directory;
+
+  private final String configuredKid;
+
+  private volatile KeySet keySet;
+
+  private ScheduledExecutorService reloader;
+
+  private JwtKeys(KeySet keySet, Path directory, String configuredKid) {
+    this.keySet = keySet;
+    this.directory = directory;
+    this.configuredKid = configuredKid;
+  }
+
+  /**
+   * Shared-secret keys, decoded the same way as {@code setSigningKey(String)} so tokens issued
+   * with the raw secret stay valid.
+   */
+  public static JwtKeys hmac(String secret) {
+    SecretKeySpec key = new SecretKeySpec(TextCodec.BASE64.decode(secret), SignatureAlgorithm.HS512.getJcaName());
+    return new JwtKeys(new KeySet(SignatureAlgorithm.HS512, null, Collections.emptyMap(), key), null, null);
+  }
+
+  /**
+   * @param keyPairs  every key pair still accepted for verification, by kid
+   * @param activeKid the kid of the key pair signing new tokens
+   */
+  public static JwtKeys rsa(Map<String, KeyPair> keyPairs, String activeKid) {
+    return new JwtKeys(KeySet.rsa(keyPairs, activeKid), null, null);
+  }
+
+  /**
+   * Loads every PKCS#8 PEM file of the directory as an RSA key pair whose kid is the file name
+   * without {@code .pem}. Without an explicit active kid, the last one in name order signs.
+   */
+  public static JwtKeys loadRsa(Path directory, String activeKid) throws IOException, GeneralSecurityException {
+    return new JwtKeys(readDirectory(directory, activeKid), directory, activeKid);
+  }
+
+  private static KeySet readDirectory(Path directory, String activeKid) throws IOException, GeneralSecurityException {
+    TreeMap<String, KeyPair> keyPairs = new TreeMap<>();
+    KeyFactory keyFactory = KeyFactory.getInstance("RSA");
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.pem")) {
+      for (Path file : files) {
+        String pem = new String(Files.readAllBytes(file), StandardCharsets.US_ASCII)
+            .replaceAll("-----[A-Z ]+-----", "");
+        RSAPrivateCrtKey privateKey = (RSAPrivateCrtKey) keyFactory.generatePrivate(
+            new PKCS8EncodedKeySpec(Base64.getMimeDecoder().decode(pem)));
+        PublicKey publicKey = keyFactory.generatePublic(
+            new RSAPublicKeySpec(privateKey.getModulus(), privateKey.getPublicExponent()));
+        String fileName = file.getFileName().toString();
+        keyPairs.put(fileName.substring(0, fileName.length() - ".pem".length()), new KeyPair(publicKey, privateKey));
+      }
+    }
+    if (keyPairs.isEmpty()) {
+      throw new IllegalArgumentException("No *.pem key in " + directory);
+    }
+
+    String kid = activeKid != null && !activeKid.isEmpty() ? activeKid : keyPairs.lastKey();
+    return KeySet.rsa(keyPairs, kid);
+  }
+
+  /**
+   * A single RSA key pair generated in memory: tokens do not survive a restart and are not
+   * accepted by other nodes, which makes it suitable for development only.
+   */
+  public static JwtKeys generatedRsa() {
+    String kid = UUID.randomUUID().toString();
+    return rsa(Collections.singletonMap(kid, generateRsaKeyPair()), kid);
+  }
+
+  /**
+   * Reads the key directory again, so that keys added or removed there take effect without a
+   * restart. A directory that cannot be read leaves the current keys in place.
+   *
+   * @return whether the key set changed; always false for keys not loaded from a directory
+   */
+  public boolean reload() throws IOException, GeneralSecurityException {
+    if (directory == null) {
+      return false;
+    }
+
+    KeySet reloaded = readDirectory(directory, configuredKid);
+    if (reloaded.sameKeys(keySet)) {
+      return false;
+    }
+    keySet = reloaded;
+    logger.info("Reloaded JWT keys from {}: {} signs, {} verify", directory, reloaded.activeKid, reloaded.keyPairs.keySet());
+    return true;
+  }
+
+  /**
+   * Reloads the key directory every {@code periodMs} milliseconds until {@link #close()}; does
+   * nothing for keys not loaded from a directory or when the period is not positive.
+   */
+  public synchronized JwtKeys reloadEvery(long periodMs) {
+    if (directory != null && periodMs > 0 && reloader == null) {
+      reloader = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("jwt-keys-"));
+      reloader.scheduleWithFixedDelay(this::reloadQuietly, periodMs, periodMs, TimeUnit.MILLISECONDS);
+    }
+    return this;
+  }
+
+  private void reloadQuietly() {
+    try {
+      reload();
+    } catch (IOException | GeneralSecurityException | RuntimeException e) {
+      logger.error("Could not reload JWT keys from {}, keeping the current ones: {}", directory, e.getMessage());
+    }
+  }
+
+  @Override
+  public synchronized void close() {
+    if (reloader != null) {
+      reloader.shutdownNow();
+      reloader = null;
+    }
+  }
+
+  static KeyPair generateRsaKeyPair() {
+    try {
+      KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+      generator.initialize(2048);
+      return generator.generateKeyPair();
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  public SignatureAlgorithm getAlgorithm() {
+    return keySet.algorithm;
+  }
+
+  /**
+   * @return the kid to put in the header of new tokens, {@code null} for HMAC
+   */
+  public String getActiveKid() {
+    return keySet.activeKid;
+  }
+
+  public Key getSigningKey() {
+    return keySet.signingKey;
+  }
+
+  /**
+   * Tags the token with the active kid and signs it, both taken from the same key set.
+   */
+  public String sign(JwtBuilder builder) {
+    KeySet current = keySet;
+    if (current.activeKid != null) {
+      builder.setHeaderParam(JwsHeader.KEY_ID, current.activeKid);
+    }
+    return builder.signWith(current.algorithm, current.signingKey).compact();
+  }
+
+  /**
+   * @return whether tokens carrying this kid can still be verified; {@code null} stands for the
+   *     HMAC secret
+   */
+  public boolean accepts(String kid) {
+    KeySet current = keySet;
+    return kid == null ? current.secretKey != null : current.keyPairs.containsKey(kid);
+  }
+
+  @Override
+  public Key resolveSigningKey(JwsHeader header, Claims claims) {
+    KeySet current = keySet;
+    if (!current.algorithm.getValue().equals(header.getAlgorithm())) {
+      throw new UnsupportedJwtException("Unexpected JWT algorithm " + header.getAlgorithm());
+    }
+    if (current.secretKey != null) {
+      return current.secretKey;
+    }
+
+    KeyPair keyPair = header.getKeyId() != null ? current.keyPairs.get(header.getKeyId()) : null;
+    if (keyPair == null) {
+      throw new SignatureException("Unknown JWT signing key " + header.getKeyId());
+    }
+    return keyPair.getPublic();
+  }
+
+  /**
+   * Public verification keys in JWK form (RFC 7517); empty for HMAC, whose secret is never published.
+   */
+  public List<Map<String, Object>> toJwks() {
+    KeySet current = keySet;
+    List<Map<String, Object>> jwks = new ArrayList<>();
+    current.keyPairs.forEach((kid, keyPair) -> {
+      RSAPublicKey publicKey = (RSAPublicKey) keyPair.getPublic();
+      Map<String, Object> jwk = new LinkedHashMap<>();
+      jwk.put("kty", "RSA");
+      jwk.put("use", "sig");
+      jwk.put("alg", current.algorithm.getValue());
+      jwk.put("kid", kid);
+      jwk.put("n", base64Url(publicKey.getModulus()));
+      jwk.put("e", base64Url(publicKey.getPublicExponent()));
+      jwks.add(jwk);
+    });
+    return jwks;
+  }
+
+  private static String base64Url(BigInteger value) {
+    byte[] bytes = value.toByteArray();
+    // JWK integers are unsigned, drop the sign byte
+    if (bytes.length > 1 && bytes[0] == 0) {
+      bytes = Arrays.copyOfRange(bytes, 1, bytes.length);
+    }
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+  }
+
+  /**
+   * One generation of keys, replaced as a whole on reload.
+   */
+  private static final class KeySet {
+    private final SignatureAlgorithm algorithm;
+
+    private final String activeKid;
+
+    private final Key signingKey;
+
+    // kid -> key pair, in publication order; empty for HMAC
+    private final Map<String, KeyPair> keyPairs;
+
+    private final Key secretKey;
+
+    private KeySet(SignatureAlgorithm algorithm, String activeKid, Map<String, KeyPair> keyPairs, Key secretKey) {
+      this.algorithm = algorithm;
+      this.activeKid = activeKid;
+      this.keyPairs = Collections.unmodifiableMap(new LinkedHashMap<>(keyPairs));
+      this.secretKey = secretKey;
+      this.signingKey = secretKey != null ? secretKey : keyPairs.get(activeKid).getPrivate();
+    }
+
+    private static KeySet rsa(Map<String, KeyPair> keyPairs, String activeKid) {
+      if (!keyPairs.containsKey(activeKid)) {
+        throw new IllegalArgumentException("No RSA key with kid " + activeKid);
+      }
+      for (KeyPair keyPair : keyPairs.values()) {
+        if (!(keyPair.getPublic() instanceof RSAPublicKey)) {
+          throw new IllegalArgumentException("RS256 requires RSA key pairs");
+        }
+      }
+
+      return new KeySet(SignatureAlgorithm.RS256, activeKid, keyPairs, null);
+    }
+
+    private boolean sameKeys(KeySet other) {
+      if (!Objects.equals(activeKid, other.activeKid) || !keyPairs.keySet().equals(other.keyPairs.keySet())) {
+        return false;
+      }
+      return keyPairs.entrySet().stream().allMatch(entry ->
+          entry.getValue().getPublic().equals(other.keyPairs.get(entry.getKey()).getPublic()));
+    }
+  }
+}
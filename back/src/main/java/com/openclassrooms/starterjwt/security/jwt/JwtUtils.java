@@ -1,6 +1,11 @@
 package com.openclassrooms.starterjwt.security.jwt;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Date;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -8,52 +13,212 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Component;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
 
 import io.jsonwebtoken.*;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 
 @Component
 public class JwtUtils {
   private static final Logger logger = LoggerFactory.getLogger(JwtUtils.class);
 
-  @Value("${oc.app.jwtSecret}")
-  private String jwtSecret;
+  static final String ID_CLAIM = "id";
+  static final String FIRST_NAME_CLAIM = "firstName";
+  static final String LAST_NAME_CLAIM = "lastName";
+  static final String ADMIN_CLAIM = "admin";
+  // iat only has second precision, revocations need to order a token against a change within one
+  static final String ISSUED_AT_MS_CLAIM = "issuedAtMs";
 
-  @Value("${oc.app.jwtExpirationMs}")
-  private int jwtExpirationMs;
+  static final String METRIC_NAME = "auth.jwt.verification";
+
+  private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  });
+
+  private final int jwtExpirationMs;
+
+  private final JwtKeys jwtKeys;
+
+  private final JwtParser parser;
+
+  // keyed by token digest so bearer tokens are not kept in memory
+  private final Cache<String, VerifiedToken> verifiedTokens;
+
+  private final Timer cached;
+
+  private final Timer verified;
+
+  private final Timer rejected;
+
+  public JwtUtils(JwtKeys jwtKeys,
+                  @Value("${oc.app.jwtExpirationMs}") int jwtExpirationMs,
+                  @Value("${oc.app.jwtCache.maxSize:10000}") long verifiedTokensMaxSize,
+                  MeterRegistry meterRegistry) {
+    this.jwtKeys = jwtKeys;
+    this.jwtExpirationMs = jwtExpirationMs;
+    this.parser = Jwts.parser().setSigningKeyResolver(jwtKeys);
+    this.verifiedTokens = Caffeine.newBuilder()
+        .maximumSize(verifiedTokensMaxSize)
+        .expireAfter(new UntilTokenExpiry())
+        .build();
+    this.cached = timer(meterRegistry, "cached");
+    this.verified = timer(meterRegistry, "verified");
+    this.rejected = timer(meterRegistry, "rejected");
+  }
 
   public String generateJwtToken(Authentication authentication) {
 
     UserDetailsImpl userPrincipal = (UserDetailsImpl) authentication.getPrincipal();
+    Date now = new Date();
 
-    return Jwts.builder()
+    return jwtKeys.sign(Jwts.builder()
         .setSubject((userPrincipal.getUsername()))
-        .setIssuedAt(new Date())
-        .setExpiration(new Date((new Date()).getTime() + jwtExpirationMs))
-        .signWith(SignatureAlgorithm.HS512, jwtSecret)
-        .compact();
+        .claim(ID_CLAIM, userPrincipal.getId())
+        .claim(FIRST_NAME_CLAIM, userPrincipal.getFirstName())
+        .claim(LAST_NAME_CLAIM, userPrincipal.getLastName())
+        .claim(ADMIN_CLAIM, Boolean.TRUE.equals(userPrincipal.getAdmin()))
+        .claim(ISSUED_AT_MS_CLAIM, now.getTime())
+        .setIssuedAt(now)
+        .setExpiration(new Date(now.getTime() + jwtExpirationMs)));
   }
 
-  public String getUserNameFromJwtToken(String token) {
-    return Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(token).getBody().getSubject();
-  }
+  /**
+   * Verifies the signature and expiry of the token once and returns its claims,
+   * or {@code null} when the token is not acceptable.
+   */
+  public Claims verifyJwtToken(String authToken) {
+    long start = System.nanoTime();
+    if (authToken == null || authToken.trim().isEmpty()) {
+      logger.error("JWT claims string is empty");
+      return record(rejected, start, null);
+    }
 
-  public boolean validateJwtToken(String authToken) {
+    String digest = digest(authToken);
+    VerifiedToken verifiedToken = verifiedTokens.getIfPresent(digest);
+    if (verifiedToken != null) {
+      if (jwtKeys.accepts(verifiedToken.kid)) {
+        return record(cached, start, verifiedToken.claims);
+      }
+      // its key was removed since, verify it again against the current keys
+      verifiedTokens.invalidate(digest);
+    }
+
+    Jws<Claims> jws;
     try {
-      Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(authToken);
-      return true;
+      jws = parser.parseClaimsJws(authToken);
     } catch (SignatureException e) {
       logger.error("Invalid JWT signature: {}", e.getMessage());
+      return record(rejected, start, null);
     } catch (MalformedJwtException e) {
       logger.error("Invalid JWT token: {}", e.getMessage());
+      return record(rejected, start, null);
     } catch (ExpiredJwtException e) {
       logger.error("JWT token is expired: {}", e.getMessage());
+      return record(rejected, start, null);
     } catch (UnsupportedJwtException e) {
       logger.error("JWT token is unsupported: {}", e.getMessage());
+      return record(rejected, start, null);
     } catch (IllegalArgumentException e) {
       logger.error("JWT claims string is empty: {}", e.getMessage());
+      return record(rejected, start, null);
+    }
+
+    Claims claims = jws.getBody();
+    if (claims.getExpiration() != null) {
+      verifiedTokens.put(digest, new VerifiedToken(jws.getHeader().getKeyId(), claims));
+    }
+    return record(verified, start, claims);
+  }
+
+  /**
+   * Rebuilds the principal from the identity claims of a verified token,
+   * or returns {@code null} for tokens issued without them.
+   */
+  public UserDetailsImpl getPrincipalFromClaims(Claims claims) {
+    Long id = claims.get(ID_CLAIM, Long.class);
+    if (id == null) {
+      return null;
     }
 
-    return false;
+    return UserDetailsImpl
+        .builder()
+        .id(id)
+        .username(claims.getSubject())
+        .firstName(claims.get(FIRST_NAME_CLAIM, String.class))
+        .lastName(claims.get(LAST_NAME_CLAIM, String.class))
+        .admin(Boolean.TRUE.equals(claims.get(ADMIN_CLAIM, Boolean.class)))
+        .build();
+  }
+
+  public String getUserNameFromJwtToken(String token) {
+    Claims claims = verifyJwtToken(token);
+    return claims != null ? claims.getSubject() : null;
+  }
+
+  public boolean validateJwtToken(String authToken) {
+    return verifyJwtToken(authToken) != null;
+  }
+
+  /**
+   * Full signature check and claims parsing, bypassing the verified-token cache.
+   */
+  Claims parseClaims(String authToken) {
+    return parser.parseClaimsJws(authToken).getBody();
+  }
+
+  private static Claims record(Timer timer, long start, Claims claims) {
+    timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    return claims;
+  }
+
+  private static Timer timer(MeterRegistry meterRegistry, String result) {
+    return Timer.builder(METRIC_NAME)
+        .description("Time spent verifying a JWT, signature checks being skipped for cached tokens")
+        .tag("result", result)
+        .publishPercentileHistogram()
+        .register(meterRegistry);
+  }
+
+  private static String digest(String token) {
+    byte[] hash = SHA_256.get().digest(token.getBytes(StandardCharsets.US_ASCII));
+    return Base64.getEncoder().encodeToString(hash);
+  }
+
+  private static final class VerifiedToken {
+    // null for HMAC
+    private final String kid;
+
+    private final Claims claims;
+
+    private VerifiedToken(String kid, Claims claims) {
+      this.kid = kid;
+      this.claims = claims;
+    }
+  }
+
+  private static class UntilTokenExpiry implements Expiry<String, VerifiedToken> {
+    @Override
+    public long expireAfterCreate(String key, VerifiedToken token, long currentTime) {
+      long remainingMs = token.claims.getExpiration().getTime() - System.currentTimeMillis();
+      return TimeUnit.MILLISECONDS.toNanos(Math.max(remainingMs, 0));
+    }
+
+    @Override
+    public long expireAfterUpdate(String key, VerifiedToken token, long currentTime, long currentDuration) {
+      return expireAfterCreate(key, token, currentTime);
+    }
+
+    @Override
+    public long expireAfterRead(String key, VerifiedToken token, long currentTime, long currentDuration) {
+      return currentDuration;
+    }
   }
 }
@@ -0,0 +1,111 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.openclassrooms.starterjwt.models.RevokedUser;
+import com.openclassrooms.starterjwt.repository.RevokedUserRepository;
+
+import io.jsonwebtoken.Claims;
+
+/**
+ * Issued-after cut-offs per user, so a token can be rejected without loading its user.
+ *
+ * <p>Lookups only touch memory: a counting Bloom filter answers for the users that were never
+ * revoked, and an exact map holds the cut-offs. Cut-offs are written through to REVOKED_USERS and
+ * reloaded at startup. A cut-off is only kept for the lifetime of a token, since anything issued
+ * before it has expired by then. Cut-offs are in epoch milliseconds, compared with the
+ * {@link JwtUtils#ISSUED_AT_MS_CLAIM} of the token so that logging in again right after a
+ * revocation is not rejected.
+ */
+@Component
+public class TokenRevocations {
+  private static final int BLOOM_SIZE_LOG2 = 15;
+
+  private final long tokenLifetimeMs;
+
+  private final RevokedUserRepository revokedUserRepository;
+
+  private final CountingBloomFilter revokedUsers = new CountingBloomFilter(BLOOM_SIZE_LOG2);
+
+  // user id -> epoch millisecond up to which issued tokens are rejected
+  private final Map<Long, Long> cutOffs = new ConcurrentHashMap<>();
+
+  public TokenRevocations(@Value("${oc.app.jwtExpirationMs}") long jwtExpirationMs,
+                          RevokedUserRepository revokedUserRepository) {
+    this.tokenLifetimeMs = Math.max(jwtExpirationMs, 0);
+    this.revokedUserRepository = revokedUserRepository;
+  }
+
+  @PostConstruct
+  public void load() {
+    revokedUserRepository.deleteRevokedBefore(System.currentTimeMillis() - tokenLifetimeMs);
+    for (RevokedUser revokedUser : revokedUserRepository.findAll()) {
+      remember(revokedUser.getUserId(), revokedUser.getRevokedBefore());
+    }
+  }
+
+  /**
+   * Rejects every token of the user issued up to now. The cut-off is persisted in the current
+   * transaction, if any, and only applied once it commits, so a rolled back change logs nobody out.
+   */
+  public void revokeUser(Long userId) {
+    long cutOff = System.currentTimeMillis();
+    revokedUserRepository.upsert(userId, cutOff);
+
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+        @Override
+        public void afterCommit() {
+          remember(userId, cutOff);
+        }
+      });
+    } else {
+      remember(userId, cutOff);
+    }
+  }
+
+  public boolean isRevoked(Claims claims) {
+    Long userId = claims.get(JwtUtils.ID_CLAIM, Long.class);
+    if (userId == null || !revokedUsers.mightContain(userId)) {
+      return false;
+    }
+
+    Long cutOff = cutOffs.get(userId);
+    if (cutOff == null) {
+      return false;
+    }
+    if (cutOff + tokenLifetimeMs < System.currentTimeMillis()) {
+      forget(userId, cutOff);
+      return false;
+    }
+
+    Long issuedAtMs = claims.get(JwtUtils.ISSUED_AT_MS_CLAIM, Long.class);
+    if (issuedAtMs == null) {
+      // older tokens only carry the second they were issued in, assume its start
+      Date issuedAt = claims.getIssuedAt();
+      issuedAtMs = issuedAt != null ? issuedAt.getTime() : null;
+    }
+    return issuedAtMs == null || issuedAtMs <= cutOff;
+  }
+
+  private synchronized void remember(Long userId, long cutOff) {
+    if (cutOffs.put(userId, cutOff) == null) {
+      revokedUsers.add(userId);
+    }
+  }
+
+  private synchronized void forget(Long userId, long cutOff) {
+    if (cutOffs.remove(userId, cutOff)) {
+      revokedUsers.remove(userId);
+    }
+  }
+}
@@ -0,0 +1,90 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.stereotype.Component;
+
+import com.openclassrooms.starterjwt.models.User;
+
+/**
+ * Revokes the tokens of a user whose password or admin flag changed, or who was deleted. Other
+ * updates, such as a new name, leave the tokens valid.
+ *
+ * <p>A Hibernate listener rather than a JPA callback, since only Hibernate tells which properties
+ * an update changed.
+ */
+@Component
+public class UserRevocationListener implements PostUpdateEventListener, PostDeleteEventListener {
+  // properties whose change alters what a token grants
+  static final Set<String> REVOKING_PROPERTIES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList("password", "admin")));
+
+  private final EntityManagerFactory entityManagerFactory;
+
+  private final TokenRevocations tokenRevocations;
+
+  public UserRevocationListener(EntityManagerFactory entityManagerFactory, TokenRevocations tokenRevocations) {
+    this.entityManagerFactory = entityManagerFactory;
+    this.tokenRevocations = tokenRevocations;
+  }
+
+  @PostConstruct
+  public void register() {
+    EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+        .getServiceRegistry()
+        .getService(EventListenerRegistry.class);
+    registry.appendListeners(EventType.POST_UPDATE, this);
+    registry.appendListeners(EventType.POST_DELETE, this);
+  }
+
+  @Override
+  public void onPostUpdate(PostUpdateEvent event) {
+    if (event.getEntity() instanceof User && changesGrants(event)) {
+      tokenRevocations.revokeUser(((User) event.getEntity()).getId());
+    }
+  }
+
+  @Override
+  public void onPostDelete(PostDeleteEvent event) {
+    if (event.getEntity() instanceof User) {
+      tokenRevocations.revokeUser(((User) event.getEntity()).getId());
+    }
+  }
+
+  private static boolean changesGrants(PostUpdateEvent event) {
+    String[] names = event.getPersister().getPropertyNames();
+    if (event.getDirtyProperties() != null) {
+      return Arrays.stream(event.getDirtyProperties()).anyMatch(index -> REVOKING_PROPERTIES.contains(names[index]));
+    }
+    // without dirty-checking data, compare the states, or assume the worst when the old one is unknown
+    if (event.getOldState() == null) {
+      return true;
+    }
+    for (int i = 0; i < names.length; i++) {
+      if (REVOKING_PROPERTIES.contains(names[i]) && !Objects.equals(event.getOldState()[i], event.getState()[i])) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public boolean requiresPostCommitHanding(EntityPersister persister) {
+    // the revocation is persisted in the transaction and applied in memory after commit
+    return false;
+  }
+}
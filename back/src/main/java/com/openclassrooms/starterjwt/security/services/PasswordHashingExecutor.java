@@ -0,0 +1,83 @@
+package com.openclassrooms.starterjwt.security.services;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * CPU-sized pool with a bounded queue for BCrypt work, so password hashing cannot take over the
+ * request threads. When the queue is full, {@link #submit(Supplier)} fails fast with a
+ * {@link RejectedExecutionException}.
+ */
+@Component
+public class PasswordHashingExecutor implements DisposableBean {
+  static final String METRIC_PREFIX = "auth.hashing";
+
+  private final ThreadPoolExecutor executor;
+
+  private final Timer duration;
+
+  private final Counter rejected;
+
+  public PasswordHashingExecutor(@Value("${oc.app.hashing.threads:0}") int threads,
+                                 @Value("${oc.app.hashing.queueCapacity:100}") int queueCapacity,
+                                 MeterRegistry meterRegistry) {
+    int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("bcrypt-"),
+        new ThreadPoolExecutor.AbortPolicy());
+
+    Gauge.builder(METRIC_PREFIX + ".queue.depth", this.executor, pool -> pool.getQueue().size())
+        .description("Password hashing tasks waiting for a worker")
+        .register(meterRegistry);
+    Gauge.builder(METRIC_PREFIX + ".active", this.executor, ThreadPoolExecutor::getActiveCount)
+        .register(meterRegistry);
+    this.duration = Timer.builder(METRIC_PREFIX + ".duration")
+        .description("Time spent hashing or matching a password")
+        .publishPercentileHistogram()
+        .register(meterRegistry);
+    this.rejected = Counter.builder(METRIC_PREFIX + ".rejected")
+        .description("Tasks refused because the queue was full")
+        .register(meterRegistry);
+  }
+
+  /**
+   * @throws RejectedExecutionException when the pool is saturated
+   */
+  public <T> CompletableFuture<T> submit(Supplier<T> task) {
+    CompletableFuture<T> future = new CompletableFuture<>();
+    try {
+      this.executor.execute(() -> {
+        // the timer records before the future completes, so callers always see the sample
+        try {
+          future.complete(this.duration.record(task));
+        } catch (Throwable e) {
+          future.completeExceptionally(e);
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      this.rejected.increment();
+      throw e;
+    }
+
+    return future;
+  }
+
+  @Override
+  public void destroy() {
+    this.executor.shutdown();
+  }
+}
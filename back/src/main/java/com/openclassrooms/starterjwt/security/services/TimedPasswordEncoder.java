@@ -0,0 +1,57 @@
+package com.openclassrooms.starterjwt.security.services;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Times the hashing and matching of the wrapped encoder, matches being tagged with their outcome, so the cost of
+ * BCrypt shows up apart from the queueing measured by {@link PasswordHashingExecutor}.
+ */
+public class TimedPasswordEncoder implements PasswordEncoder {
+  static final String METRIC_NAME = "auth.password";
+
+  private final PasswordEncoder delegate;
+
+  private final Timer encode;
+
+  private final Timer match;
+
+  private final Timer mismatch;
+
+  public TimedPasswordEncoder(PasswordEncoder delegate, MeterRegistry meterRegistry) {
+    this.delegate = delegate;
+    this.encode = timer(meterRegistry, "encode", "none");
+    this.match = timer(meterRegistry, "match", "match");
+    this.mismatch = timer(meterRegistry, "match", "mismatch");
+  }
+
+  @Override
+  public String encode(CharSequence rawPassword) {
+    return this.encode.record(() -> this.delegate.encode(rawPassword));
+  }
+
+  @Override
+  public boolean matches(CharSequence rawPassword, String encodedPassword) {
+    long start = System.nanoTime();
+    boolean matches = this.delegate.matches(rawPassword, encodedPassword);
+    (matches ? this.match : this.mismatch).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    return matches;
+  }
+
+  @Override
+  public boolean upgradeEncoding(String encodedPassword) {
+    return this.delegate.upgradeEncoding(encodedPassword);
+  }
+
+  private static Timer timer(MeterRegistry meterRegistry, String operation, String result) {
+    return Timer.builder(METRIC_NAME)
+        .description("Time spent hashing or checking a password")
+        .tags("operation", operation, "result", result)
+        .publishPercentileHistogram()
+        .register(meterRegistry);
+  }
+}
@@ -0,0 +1,26 @@
+package com.openclassrooms.starterjwt.security.services;
+
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+import com.openclassrooms.starterjwt.models.User;
+
+/**
+ * Drops what the security layer remembers about a user once the USERS row changes or goes away;
+ * instantiated by Hibernate through Spring. Revoking the tokens of the user is left to
+ * {@link com.openclassrooms.starterjwt.security.jwt.UserRevocationListener}, which can tell which
+ * columns an update changed.
+ */
+public class UserChangeListener {
+  private final UserDetailsCache userDetailsCache;
+
+  public UserChangeListener(UserDetailsCache userDetailsCache) {
+    this.userDetailsCache = userDetailsCache;
+  }
+
+  @PostUpdate
+  @PostRemove
+  public void evict(User user) {
+    userDetailsCache.evictUser(user.getId());
+  }
+}
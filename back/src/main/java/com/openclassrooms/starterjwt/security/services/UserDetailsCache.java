@@ -0,0 +1,70 @@
+package com.openclassrooms.starterjwt.security.services;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * Bounded, expiring cache of the principals resolved from JWTs, keyed by email.
+ * Hit/miss counts are published as the {@code cache.*} meters tagged {@code cache=principals}.
+ */
+@Component
+public class UserDetailsCache {
+  static final String CACHE_NAME = "principals";
+
+  private final Cache<String, UserDetails> cache;
+
+  public UserDetailsCache(@Value("${oc.app.principalCache.ttlMs:300000}") long ttlMs,
+                          @Value("${oc.app.principalCache.maxSize:10000}") long maxSize,
+                          MeterRegistry meterRegistry) {
+    this.cache = Caffeine.newBuilder()
+        .maximumSize(maxSize)
+        .expireAfterWrite(Duration.ofMillis(ttlMs))
+        .recordStats()
+        .build();
+    CaffeineCacheMetrics.monitor(meterRegistry, this.cache, CACHE_NAME);
+  }
+
+  public UserDetails get(String username, Function<String, UserDetails> loader) {
+    return this.cache.get(username, loader);
+  }
+
+  /**
+   * Drops every entry of the given user. Inside a transaction the entries are dropped again after
+   * commit, so a request racing the transaction cannot put the old row back.
+   */
+  public void evictUser(Long id) {
+    removeUser(id);
+
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+        @Override
+        public void afterCommit() {
+          removeUser(id);
+        }
+      });
+    }
+  }
+
+  public CacheStats stats() {
+    return this.cache.stats();
+  }
+
+  // entries are looked up by email, but an update may have changed it
+  private void removeUser(Long id) {
+    this.cache.asMap().values().removeIf(userDetails ->
+        userDetails instanceof UserDetailsImpl && id.equals(((UserDetailsImpl) userDetails).getId()));
+  }
+}
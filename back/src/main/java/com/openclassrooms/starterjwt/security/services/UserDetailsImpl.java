@@ -1,10 +1,12 @@
 package com.openclassrooms.starterjwt.security.services;
 
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.Collections;
 import java.util.Objects;
+import java.util.Set;
 
 import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
@@ -19,6 +21,11 @@ import lombok.Getter;
 public class UserDetailsImpl implements UserDetails {
   private static final long serialVersionUID = 1L;
 
+  public static final String ROLE_ADMIN = "ROLE_ADMIN";
+
+  private static final Set<GrantedAuthority> ADMIN_AUTHORITIES =
+      Collections.singleton(new SimpleGrantedAuthority(ROLE_ADMIN));
+
   private Long id;
 
   private String username;
@@ -32,8 +39,11 @@ public class UserDetailsImpl implements UserDetails {
   @JsonIgnore
   private String password;  
   
-  public Collection<? extends GrantedAuthority> getAuthorities() {        
-      return new HashSet<GrantedAuthority>();
+  public Collection<? extends GrantedAuthority> getAuthorities() {
+    if (Boolean.TRUE.equals(admin)) {
+      return ADMIN_AUTHORITIES;
+    }
+    return Collections.emptySet();
   }
 
   @Override
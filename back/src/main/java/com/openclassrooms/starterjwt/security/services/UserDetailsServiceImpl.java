@@ -1,5 +1,8 @@
 package com.openclassrooms.starterjwt.security.services;
 
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
@@ -9,18 +12,40 @@ import org.springframework.transaction.annotation.Transactional;
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.repository.UserRepository;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
 @Service
 public class UserDetailsServiceImpl implements UserDetailsService {
+  static final String METRIC_NAME = "auth.user.load";
+
   UserRepository userRepository;
 
-  UserDetailsServiceImpl(UserRepository userRepository) {
+  private final Timer found;
+
+  private final Timer notFound;
+
+  UserDetailsServiceImpl(UserRepository userRepository, MeterRegistry meterRegistry) {
     this.userRepository = userRepository;
+    this.found = Timer.builder(METRIC_NAME)
+        .description("Time spent loading a user by email")
+        .tag("result", "found")
+        .publishPercentileHistogram()
+        .register(meterRegistry);
+    this.notFound = Timer.builder(METRIC_NAME)
+        .description("Time spent loading a user by email")
+        .tag("result", "not_found")
+        .publishPercentileHistogram()
+        .register(meterRegistry);
   }
 
   @Override
   @Transactional
   public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-    User user = userRepository.findByEmail(username)
+    long start = System.nanoTime();
+    Optional<User> result = userRepository.findByEmail(username);
+    (result.isPresent() ? this.found : this.notFound).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    User user = result
         .orElseThrow(() -> new UsernameNotFoundException("User Not Found with email: " + username));
 
     return UserDetailsImpl
@@ -29,6 +54,7 @@ public class UserDetailsServiceImpl implements UserDetailsService {
             .username(user.getEmail())
             .lastName(user.getLastName())
             .firstName(user.getFirstName())
+            .admin(user.isAdmin())
             .password(user.getPassword())
             .build();
   }
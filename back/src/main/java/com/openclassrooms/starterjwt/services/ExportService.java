@@ -0,0 +1,106 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.repository.ParticipantExportRow;
+import com.openclassrooms.starterjwt.repository.ParticipationRepository;
+import com.openclassrooms.starterjwt.repository.SessionExportRow;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionTimedOutException;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Streams sessions and rosters straight from a database cursor to an output stream: rows are written as they are
+ * read, so memory use does not depend on the number of sessions or participants.
+ *
+ * <p>The read-only transaction, its connection and the cursor stay open until the last row is written, so an export
+ * lasts as long as the client takes to read it. It is aborted once it has run for {@code oc.app.export.maxDurationMs}
+ * (10 minutes by default): the response is then cut short and the transaction rolled back. A client that stops
+ * reading altogether is dropped earlier by the container's write timeout.
+ */
+@Service
+public class ExportService {
+    private final SessionRepository sessionRepository;
+
+    private final ParticipationRepository participationRepository;
+
+    private final long maxDurationNanos;
+
+    public ExportService(SessionRepository sessionRepository,
+                         ParticipationRepository participationRepository,
+                         @Value("${oc.app.export.maxDurationMs:600000}") long maxDurationMs) {
+        this.sessionRepository = sessionRepository;
+        this.participationRepository = participationRepository;
+        this.maxDurationNanos = TimeUnit.MILLISECONDS.toNanos(maxDurationMs);
+    }
+
+    /**
+     * Writes one line per session with its participant ids, in id order.
+     */
+    @Transactional(readOnly = true)
+    public void exportSessions(RowFormat format, OutputStream out) throws IOException {
+        try (Stream<SessionExportRow> rows = this.sessionRepository.streamForExport();
+             RowFormat.RowWriter writer = format.open(out,
+                     "id", "name", "date", "teacher_id", "capacity", "booked", "users")) {
+            long deadline = System.nanoTime() + this.maxDurationNanos;
+            Iterator<SessionExportRow> iterator = rows.iterator();
+            SessionExportRow current = null;
+            List<Long> userIds = new ArrayList<>();
+
+            // rows of a session are consecutive, only its participant ids are buffered
+            while (iterator.hasNext()) {
+                SessionExportRow row = iterator.next();
+                checkDeadline(deadline);
+                if (current != null && !current.getId().equals(row.getId())) {
+                    writeSession(writer, current, userIds);
+                    userIds.clear();
+                }
+                current = row;
+                if (row.getUserId() != null) {
+                    userIds.add(row.getUserId());
+                }
+            }
+            if (current != null) {
+                writeSession(writer, current, userIds);
+            }
+        }
+    }
+
+    /**
+     * Writes one line per (session, participant) with the participant's name and email.
+     */
+    @Transactional(readOnly = true)
+    public void exportRosters(RowFormat format, OutputStream out) throws IOException {
+        try (Stream<ParticipantExportRow> rows = this.participationRepository.streamRostersForExport();
+             RowFormat.RowWriter writer = format.open(out,
+                     "session_id", "user_id", "email", "first_name", "last_name")) {
+            long deadline = System.nanoTime() + this.maxDurationNanos;
+            Iterator<ParticipantExportRow> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                ParticipantExportRow row = iterator.next();
+                checkDeadline(deadline);
+                writer.write(row.getSessionId(), row.getUserId(), row.getEmail(), row.getFirstName(), row.getLastName());
+            }
+        }
+    }
+
+    private static void checkDeadline(long deadline) {
+        if (System.nanoTime() - deadline > 0) {
+            throw new TransactionTimedOutException("Export exceeded oc.app.export.maxDurationMs, aborted");
+        }
+    }
+
+    private static void writeSession(RowFormat.RowWriter writer, SessionExportRow session, List<Long> userIds)
+            throws IOException {
+        writer.write(session.getId(), session.getName(), session.getDate(), session.getTeacherId(),
+                session.getCapacity(), session.getBooked(), userIds);
+    }
+}
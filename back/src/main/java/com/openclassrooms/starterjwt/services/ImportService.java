@@ -0,0 +1,197 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.Teacher;
+import com.openclassrooms.starterjwt.payload.response.ImportReport;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk session import. Rows are validated one by one against the {@link SessionDto} constraints, then written
+ * with batched JDBC inserts, one transaction per batch: an invalid row is reported and skipped, a batch the database
+ * refuses is retried row by row so that only the rows it refuses are reported, and everything else is kept.
+ */
+@Service
+public class ImportService {
+    /**
+     * Columns read from each row; any other column, such as the ids and participants of an export, is ignored.
+     */
+    static final Set<String> COLUMNS = new HashSet<>(Arrays.asList("name", "date", "teacher_id", "description", "capacity"));
+
+    static final int MAX_REPORTED_ERRORS = 1000;
+
+    private final SessionRepository sessionRepository;
+
+    private final TeacherService teacherService;
+
+    private final SessionSearchIndex sessionSearchIndex;
+
+    private final Validator validator;
+
+    private final ObjectMapper objectMapper;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final int defaultBatchSize;
+
+    public ImportService(SessionRepository sessionRepository,
+                         TeacherService teacherService,
+                         SessionSearchIndex sessionSearchIndex,
+                         Validator validator,
+                         ObjectMapper objectMapper,
+                         PlatformTransactionManager transactionManager,
+                         @Value("${oc.app.jdbc.batchSize:100}") int defaultBatchSize) {
+        this.sessionRepository = sessionRepository;
+        this.teacherService = teacherService;
+        this.sessionSearchIndex = sessionSearchIndex;
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.defaultBatchSize = defaultBatchSize;
+    }
+
+    public ImportReport importSessions(RowFormat format, InputStream in) throws IOException {
+        return this.importSessions(format, in, this.defaultBatchSize);
+    }
+
+    public ImportReport importSessions(RowFormat format, InputStream in, int batchSize) throws IOException {
+        Progress progress = new Progress();
+        List<Session> batch = new ArrayList<>(batchSize);
+        List<Long> batchLines = new ArrayList<>(batchSize);
+
+        try (RowFormat.RowReader reader = format.open(in)) {
+            while (true) {
+                Map<String, Object> row;
+                try {
+                    row = reader.next();
+                } catch (RowFormat.MalformedRowException e) {
+                    progress.reject(e.getLine(), e.getMessage());
+                    continue;
+                }
+                if (row == null) {
+                    break;
+                }
+
+                String error = this.toSession(row, batch);
+                if (error != null) {
+                    progress.reject(reader.getLine(), error);
+                    continue;
+                }
+                batchLines.add(reader.getLine());
+                if (batch.size() == batchSize) {
+                    this.flush(batch, batchLines, progress);
+                }
+            }
+        }
+        this.flush(batch, batchLines, progress);
+
+        return new ImportReport(progress.imported, progress.rejected, progress.errors);
+    }
+
+    /**
+     * Adds the session described by the row to {@code batch}.
+     *
+     * @return why the row was rejected, {@code null} when it was added
+     */
+    private String toSession(Map<String, Object> row, List<Session> batch) {
+        row.keySet().retainAll(COLUMNS);
+        SessionDto sessionDto;
+        try {
+            sessionDto = this.objectMapper.convertValue(row, SessionDto.class);
+        } catch (IllegalArgumentException e) {
+            return "invalid value: " + e.getMessage();
+        }
+
+        Set<ConstraintViolation<SessionDto>> violations = this.validator.validate(sessionDto);
+        if (!violations.isEmpty()) {
+            return violations.stream()
+                    .map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining(", "));
+        }
+        Teacher teacher = this.teacherService.findById(sessionDto.getTeacher_id());
+        if (teacher == null) {
+            return "teacher_id unknown teacher";
+        }
+
+        batch.add(Session.builder()
+                .name(sessionDto.getName())
+                .date(sessionDto.getDate())
+                .description(sessionDto.getDescription())
+                .teacher(teacher)
+                .capacity(sessionDto.getCapacity())
+                .build());
+        return null;
+    }
+
+    private void flush(List<Session> batch, List<Long> batchLines, Progress progress) {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            this.transactionTemplate.executeWithoutResult(status -> this.sessionRepository.insertAll(batch));
+            progress.imported += batch.size();
+            this.sessionSearchIndex.index(batch);
+        } catch (DataAccessException e) {
+            this.insertOneByOne(batch, batchLines, progress);
+        }
+        batch.clear();
+        batchLines.clear();
+    }
+
+    /**
+     * Retries a refused batch one row per transaction, so only the rows the database refuses are rejected.
+     */
+    private void insertOneByOne(List<Session> batch, List<Long> batchLines, Progress progress) {
+        List<Session> inserted = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            Session session = batch.get(i);
+            // keys may have been handed out before the batch was rolled back
+            session.setId(null);
+            try {
+                this.transactionTemplate.executeWithoutResult(
+                        status -> this.sessionRepository.insertAll(Collections.singletonList(session)));
+                inserted.add(session);
+            } catch (DataAccessException e) {
+                progress.reject(batchLines.get(i), "rejected by the database: " + e.getMostSpecificCause().getMessage());
+            }
+        }
+        progress.imported += inserted.size();
+        this.sessionSearchIndex.index(inserted);
+    }
+
+    private static final class Progress {
+        private long imported;
+
+        private long rejected;
+
+        private final List<ImportReport.RowError> errors = new ArrayList<>();
+
+        private void reject(long line, String message) {
+            this.rejected++;
+            if (this.errors.size() < MAX_REPORTED_ERRORS) {
+                this.errors.add(new ImportReport.RowError(line, message));
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.repository.ChangeStamp;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import org.springframework.http.CacheControl;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * HTTP validators of a resource, derived from {@code updated_at} (and the row count for collections)
+ * so they can be checked without loading any entity.
+ */
+@Getter
+@EqualsAndHashCode
+public class ResourceVersion {
+    /**
+     * Lets clients keep a copy but makes them revalidate it on every use.
+     */
+    public static final CacheControl REVALIDATE = CacheControl.noCache().cachePrivate();
+
+    private static final String ANY = "*";
+
+    /**
+     * Strong entity tag, quoted.
+     */
+    private final String eTag;
+
+    /**
+     * Epoch millis of the last change, -1 when unknown.
+     */
+    private final long lastModified;
+
+    private ResourceVersion(String tag, LocalDateTime updatedAt) {
+        Instant instant = updatedAt != null ? updatedAt.atZone(ZoneId.systemDefault()).toInstant() : null;
+        long micros = instant != null ? ChronoUnit.MICROS.between(Instant.EPOCH, instant) : 0;
+
+        this.eTag = "\"" + tag + "-" + Long.toHexString(micros) + "\"";
+        this.lastModified = instant != null ? instant.toEpochMilli() : -1;
+    }
+
+    public static ResourceVersion of(ChangeStamp stamp) {
+        return of(stamp.getRowCount(), stamp.getLastModified());
+    }
+
+    public static ResourceVersion of(long rowCount, LocalDateTime lastModified) {
+        return new ResourceVersion(Long.toHexString(rowCount), lastModified);
+    }
+
+    public static ResourceVersion of(Long id, LocalDateTime updatedAt) {
+        return new ResourceVersion(Long.toHexString(id), updatedAt);
+    }
+
+    /**
+     * Evaluates an {@code If-Match} header (RFC 7232 section 3.1): {@code *} or one of the listed
+     * tags, compared strongly so weak tags never match.
+     */
+    public boolean matches(String ifMatch) {
+        for (String tag : ifMatch.split(",")) {
+            String trimmed = tag.trim();
+            if (ANY.equals(trimmed) || this.eTag.equals(trimmed)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
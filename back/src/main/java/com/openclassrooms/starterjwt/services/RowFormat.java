@@ -0,0 +1,402 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Line-oriented formats of the admin exports and imports. Written values may be {@code null}, numbers, strings,
+ * dates (written as ISO-8601 instants) or collections of ids; read rows are maps keyed by column name.
+ */
+public enum RowFormat {
+    /**
+     * One JSON object per line, keyed by column name.
+     */
+    NDJSON("application/x-ndjson", "ndjson") {
+        @Override
+        public RowWriter open(OutputStream out, String... columns) throws IOException {
+            JsonGenerator generator = JSON.getFactory().createGenerator(out, JsonEncoding.UTF8);
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+
+            return new RowWriter() {
+                @Override
+                public void write(Object... values) throws IOException {
+                    generator.writeStartObject();
+                    for (int i = 0; i < columns.length; i++) {
+                        generator.writeFieldName(columns[i]);
+                        writeValue(values[i]);
+                    }
+                    generator.writeEndObject();
+                    generator.writeRaw('\n');
+                }
+
+                private void writeValue(Object value) throws IOException {
+                    if (value instanceof Date) {
+                        generator.writeString(formatDate((Date) value));
+                    } else if (value instanceof Collection) {
+                        generator.writeStartArray();
+                        for (Object element : (Collection<?>) value) {
+                            writeValue(element);
+                        }
+                        generator.writeEndArray();
+                    } else {
+                        generator.writeObject(value);
+                    }
+                }
+
+                @Override
+                public void close() throws IOException {
+                    generator.close();
+                }
+            };
+        }
+
+        @Override
+        public RowReader open(InputStream in) {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+
+            return new RowReader() {
+                private long line;
+
+                @Override
+                public Map<String, Object> next() throws IOException {
+                    String text;
+                    do {
+                        text = reader.readLine();
+                        if (text == null) {
+                            return null;
+                        }
+                        line++;
+                    } while (text.trim().isEmpty());
+
+                    try {
+                        return JSON.readValue(text, ROW_TYPE);
+                    } catch (JsonProcessingException e) {
+                        throw new MalformedRowException(line, "not a JSON object: " + e.getOriginalMessage());
+                    }
+                }
+
+                @Override
+                public long getLine() {
+                    return line;
+                }
+
+                @Override
+                public void close() throws IOException {
+                    reader.close();
+                }
+            };
+        }
+    },
+
+    /**
+     * RFC 4180 CSV with a header line; collections are written as space-separated ids. Text that a spreadsheet
+     * would evaluate as a formula is written with a leading {@code '}, which the reader removes.
+     */
+    CSV("text/csv", "csv") {
+        @Override
+        public RowWriter open(OutputStream out, String... columns) throws IOException {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+
+            RowWriter rows = new RowWriter() {
+                @Override
+                public void write(Object... values) throws IOException {
+                    for (int i = 0; i < values.length; i++) {
+                        if (i > 0) {
+                            writer.write(',');
+                        }
+                        writer.write(escape(toText(values[i])));
+                    }
+                    writer.write("\r\n");
+                }
+
+                private String toText(Object value) {
+                    if (value == null) {
+                        return "";
+                    }
+                    if (value instanceof Date) {
+                        return formatDate((Date) value);
+                    }
+                    if (value instanceof CharSequence) {
+                        return guardFormula(value.toString());
+                    }
+                    if (value instanceof Collection) {
+                        StringBuilder text = new StringBuilder();
+                        for (Object element : (Collection<?>) value) {
+                            if (text.length() > 0) {
+                                text.append(' ');
+                            }
+                            text.append(element);
+                        }
+                        return text.toString();
+                    }
+                    return value.toString();
+                }
+
+                @Override
+                public void close() throws IOException {
+                    // flush only, the response stream belongs to the container
+                    writer.flush();
+                }
+            };
+            rows.write((Object[]) columns);
+            return rows;
+        }
+
+        /**
+         * The first record names the columns. An unquoted empty field reads as {@code null}.
+         */
+        @Override
+        public RowReader open(InputStream in) throws IOException {
+            CsvParser parser = new CsvParser(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)));
+            List<String> columns = parser.readRecord();
+            if (columns == null) {
+                columns = Collections.emptyList();
+            }
+            List<String> header = columns;
+
+            return new RowReader() {
+                @Override
+                public Map<String, Object> next() throws IOException {
+                    List<String> fields;
+                    do {
+                        fields = parser.readRecord();
+                        if (fields == null) {
+                            return null;
+                        }
+                    } while (fields.size() == 1 && fields.get(0) == null);
+
+                    if (fields.size() != header.size()) {
+                        throw new MalformedRowException(parser.recordLine,
+                                "expected " + header.size() + " fields, found " + fields.size());
+                    }
+                    Map<String, Object> row = new LinkedHashMap<>();
+                    for (int i = 0; i < fields.size(); i++) {
+                        row.put(header.get(i), unguardFormula(fields.get(i)));
+                    }
+                    return row;
+                }
+
+                @Override
+                public long getLine() {
+                    return parser.recordLine;
+                }
+
+                @Override
+                public void close() throws IOException {
+                    parser.reader.close();
+                }
+            };
+        }
+    };
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    /**
+     * Leading characters that make a spreadsheet evaluate a cell as a formula.
+     */
+    private static final String FORMULA_PREFIXES = "=+-@\t\r";
+
+    private static final TypeReference<Map<String, Object>> ROW_TYPE = new TypeReference<Map<String, Object>>() {
+    };
+
+    private final String contentType;
+
+    private final String extension;
+
+    RowFormat(String contentType, String extension) {
+        this.contentType = contentType;
+        this.extension = extension;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * Starts writing rows with the given columns to {@code out}, which is left open.
+     */
+    public abstract RowWriter open(OutputStream out, String... columns) throws IOException;
+
+    /**
+     * Starts reading rows from {@code in}, which is closed with the reader.
+     */
+    public abstract RowReader open(InputStream in) throws IOException;
+
+    /**
+     * @throws IllegalArgumentException for an unknown format name
+     */
+    public static RowFormat parse(String name) {
+        return valueOf(name.toUpperCase(Locale.ROOT));
+    }
+
+    private static String formatDate(Date date) {
+        return DateTimeFormatter.ISO_INSTANT.format(date.toInstant());
+    }
+
+    /**
+     * Prefixes formula-like text with {@code '}; text already starting with {@code '} gets one more, so that
+     * {@link #unguardFormula} restores any value.
+     */
+    private static String guardFormula(String text) {
+        if (!text.isEmpty() && (FORMULA_PREFIXES.indexOf(text.charAt(0)) >= 0 || text.charAt(0) == '\'')) {
+            return '\'' + text;
+        }
+        return text;
+    }
+
+    private static String unguardFormula(String text) {
+        if (text != null && text.length() > 1 && text.charAt(0) == '\''
+                && (FORMULA_PREFIXES.indexOf(text.charAt(1)) >= 0 || text.charAt(1) == '\'')) {
+            return text.substring(1);
+        }
+        return text;
+    }
+
+    private static String escape(String text) {
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+            return text;
+        }
+        return '"' + text.replace("\"", "\"\"") + '"';
+    }
+
+    public interface RowWriter extends Closeable {
+        /**
+         * Writes one row, values in column order.
+         */
+        void write(Object... values) throws IOException;
+    }
+
+    public interface RowReader extends Closeable {
+        /**
+         * @return the next row keyed by column name, {@code null} at the end of the input
+         * @throws MalformedRowException when the row cannot be parsed; reading goes on with the next one
+         */
+        Map<String, Object> next() throws IOException;
+
+        /**
+         * @return the line on which the last row read starts, counting from 1
+         */
+        long getLine();
+    }
+
+    public static class MalformedRowException extends IOException {
+        private final long line;
+
+        public MalformedRowException(long line, String message) {
+            super(message);
+            this.line = line;
+        }
+
+        public long getLine() {
+            return line;
+        }
+    }
+
+    /**
+     * RFC 4180 records, which may span lines inside quotes.
+     */
+    private static final class CsvParser {
+        private final BufferedReader reader;
+
+        private long line = 1;
+
+        private long recordLine;
+
+        private CsvParser(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        /**
+         * @return the fields of the next record, {@code null} at the end of the input
+         */
+        List<String> readRecord() throws IOException {
+            int c = reader.read();
+            if (c == -1) {
+                return null;
+            }
+
+            recordLine = line;
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            boolean closed = false;
+            while (true) {
+                if (c == -1 || (c == '\n' && (!quoted || closed))) {
+                    if (quoted && !closed) {
+                        throw new MalformedRowException(recordLine, "unterminated quoted field");
+                    }
+                    fields.add(quoted || field.length() > 0 ? field.toString() : null);
+                    if (c == '\n') {
+                        line++;
+                    }
+                    return fields;
+                }
+
+                if (quoted && !closed) {
+                    if (c == '"') {
+                        closed = true;
+                    } else {
+                        if (c == '\n') {
+                            line++;
+                        }
+                        field.append((char) c);
+                    }
+                } else if (c == ',') {
+                    fields.add(quoted || field.length() > 0 ? field.toString() : null);
+                    field.setLength(0);
+                    quoted = false;
+                    closed = false;
+                } else if (c == '"' && closed) {
+                    // doubled quote inside a quoted field
+                    field.append('"');
+                    closed = false;
+                } else if (c == '"' && field.length() == 0 && !quoted) {
+                    quoted = true;
+                } else if (c != '\r') {
+                    if (c == '"' || closed) {
+                        skipLine();
+                        throw new MalformedRowException(recordLine, "misplaced quote");
+                    }
+                    field.append((char) c);
+                }
+                c = reader.read();
+            }
+        }
+
+        private void skipLine() throws IOException {
+            int c;
+            do {
+                c = reader.read();
+            } while (c != -1 && c != '\n');
+            line++;
+        }
+    }
+}
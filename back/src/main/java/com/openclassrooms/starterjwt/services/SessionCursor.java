@@ -0,0 +1,45 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.models.Session;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+
+/**
+ * Keyset position in the (date, id) ordering of sessions, exchanged with clients as an opaque token.
+ */
+@Getter
+@EqualsAndHashCode
+@RequiredArgsConstructor
+public class SessionCursor {
+    private static final String SEPARATOR = ":";
+
+    private final Date date;
+    private final Long id;
+
+    public static SessionCursor of(Session session) {
+        return new SessionCursor(session.getDate(), session.getId());
+    }
+
+    public String encode() {
+        String raw = this.date.getTime() + SEPARATOR + this.id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @throws IllegalArgumentException when the token was not produced by {@link #encode()}
+     */
+    public static SessionCursor decode(String token) {
+        String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        String[] parts = raw.split(SEPARATOR);
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Malformed session cursor");
+        }
+
+        return new SessionCursor(new Date(Long.parseLong(parts[0])), Long.valueOf(parts[1]));
+    }
+}
@@ -0,0 +1,279 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.repository.SessionSearchRow;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory inverted index over session names and descriptions, ranked with BM25.
+ *
+ * <p>The index is rebuilt from the SESSIONS table at startup, then kept up to date by the services writing sessions
+ * on this node, once their transaction commits. Terms are lower-cased and stripped of accents, so "Prénatal" matches
+ * "prenatal". A term found in the name weighs as much as {@value #NAME_WEIGHT} occurrences in the description.
+ */
+@Component
+public class SessionSearchIndex {
+    static final String METRIC_PREFIX = "session.search";
+
+    static final int NAME_WEIGHT = 3;
+
+    static final int MAX_QUERY_TERMS = 16;
+
+    private static final double K1 = 1.2;
+
+    private static final double B = 0.75;
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private static final Logger logger = LoggerFactory.getLogger(SessionSearchIndex.class);
+
+    private final SessionRepository sessionRepository;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // session id -> weighted term frequencies, kept to unindex the previous text of the session
+    private final Map<Long, Document> documents = new HashMap<>();
+
+    // term -> session id -> weighted term frequency
+    private final Map<String, Map<Long, Integer>> postings = new HashMap<>();
+
+    private long totalLength;
+
+    private final Timer searchTimer;
+
+    private final Timer rebuildTimer;
+
+    public SessionSearchIndex(SessionRepository sessionRepository, MeterRegistry meterRegistry) {
+        this.sessionRepository = sessionRepository;
+
+        Gauge.builder(METRIC_PREFIX + ".documents", this, SessionSearchIndex::size)
+                .description("Sessions in the search index")
+                .register(meterRegistry);
+        this.searchTimer = Timer.builder(METRIC_PREFIX + ".query").register(meterRegistry);
+        this.rebuildTimer = Timer.builder(METRIC_PREFIX + ".rebuild")
+                .description("Time spent reindexing the sessions table")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void rebuild() {
+        this.rebuildTimer.record(() -> {
+            List<SessionSearchRow> rows = this.sessionRepository.findAllForSearch();
+            this.lock.writeLock().lock();
+            try {
+                this.documents.clear();
+                this.postings.clear();
+                this.totalLength = 0;
+                for (SessionSearchRow row : rows) {
+                    this.put(row.getId(), row.getName(), row.getDescription());
+                }
+            } finally {
+                this.lock.writeLock().unlock();
+            }
+            logger.info("Indexed {} sessions for search", rows.size());
+        });
+    }
+
+    /**
+     * Indexes the current text of the sessions once the current transaction commits, or right away without one.
+     */
+    public void index(Collection<Session> sessions) {
+        List<Session> indexed = new ArrayList<>(sessions);
+        this.afterCommit(() -> {
+            this.lock.writeLock().lock();
+            try {
+                for (Session session : indexed) {
+                    this.put(session.getId(), session.getName(), session.getDescription());
+                }
+            } finally {
+                this.lock.writeLock().unlock();
+            }
+        });
+    }
+
+    public void index(Session session) {
+        this.index(Collections.singletonList(session));
+    }
+
+    public void remove(Long id) {
+        this.afterCommit(() -> {
+            this.lock.writeLock().lock();
+            try {
+                this.delete(id);
+            } finally {
+                this.lock.writeLock().unlock();
+            }
+        });
+    }
+
+    /**
+     * Sessions matching any term of the query, best first; sessions with the same score are ordered by id.
+     */
+    public Hits search(String query, int offset, int limit) {
+        List<String> distinct = new ArrayList<>(new LinkedHashSet<>(tokenize(query)));
+        List<String> terms = distinct.size() > MAX_QUERY_TERMS ? distinct.subList(0, MAX_QUERY_TERMS) : distinct;
+        if (terms.isEmpty()) {
+            return new Hits(0, Collections.emptyList());
+        }
+
+        return this.searchTimer.record(() -> {
+            Map<Long, Double> scores = new HashMap<>();
+            this.lock.readLock().lock();
+            try {
+                int documentCount = this.documents.size();
+                double averageLength = documentCount > 0 ? (double) this.totalLength / documentCount : 0;
+                for (String term : terms) {
+                    Map<Long, Integer> postingList = this.postings.get(term);
+                    if (postingList == null) {
+                        continue;
+                    }
+
+                    double idf = Math.log(1 + (documentCount - postingList.size() + 0.5) / (postingList.size() + 0.5));
+                    postingList.forEach((id, frequency) -> {
+                        double norm = K1 * (1 - B + B * this.documents.get(id).length / averageLength);
+                        scores.merge(id, idf * frequency * (K1 + 1) / (frequency + norm), Double::sum);
+                    });
+                }
+            } finally {
+                this.lock.readLock().unlock();
+            }
+
+            List<Map.Entry<Long, Double>> ranked = new ArrayList<>(scores.entrySet());
+            ranked.sort(Map.Entry.<Long, Double>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()));
+            List<Long> ids = new ArrayList<>();
+            for (int i = offset; i < ranked.size() && ids.size() < limit; i++) {
+                ids.add(ranked.get(i).getKey());
+            }
+            return new Hits(ranked.size(), ids);
+        });
+    }
+
+    public int size() {
+        this.lock.readLock().lock();
+        try {
+            return this.documents.size();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+
+        String folded = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("")
+                .toLowerCase(Locale.ROOT);
+        for (String token : SEPARATORS.split(folded)) {
+            // single letters are mostly elided articles, as in "l'ashtanga"
+            if (token.length() > 1) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    private void put(Long id, String name, String description) {
+        this.delete(id);
+
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String token : tokenize(name)) {
+            frequencies.merge(token, NAME_WEIGHT, Integer::sum);
+        }
+        for (String token : tokenize(description)) {
+            frequencies.merge(token, 1, Integer::sum);
+        }
+
+        Document document = new Document(frequencies);
+        this.documents.put(id, document);
+        this.totalLength += document.length;
+        frequencies.forEach((term, frequency) -> this.postings.computeIfAbsent(term, key -> new HashMap<>()).put(id, frequency));
+    }
+
+    private void delete(Long id) {
+        Document document = this.documents.remove(id);
+        if (document == null) {
+            return;
+        }
+
+        this.totalLength -= document.length;
+        for (String term : document.frequencies.keySet()) {
+            Map<Long, Integer> postingList = this.postings.get(term);
+            postingList.remove(id);
+            if (postingList.isEmpty()) {
+                this.postings.remove(term);
+            }
+        }
+    }
+
+    private void afterCommit(Runnable update) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    update.run();
+                }
+            });
+        } else {
+            update.run();
+        }
+    }
+
+    private static final class Document {
+        private final Map<String, Integer> frequencies;
+
+        private final int length;
+
+        private Document(Map<String, Integer> frequencies) {
+            this.frequencies = frequencies;
+            this.length = frequencies.values().stream().mapToInt(Integer::intValue).sum();
+        }
+    }
+
+    /**
+     * One page of search results: session ids in rank order and the number of sessions matching overall.
+     */
+    public static final class Hits {
+        private final long total;
+
+        private final List<Long> ids;
+
+        private Hits(long total, List<Long> ids) {
+            this.total = total;
+            this.ids = Collections.unmodifiableList(ids);
+        }
+
+        public long getTotal() {
+            return total;
+        }
+
+        public List<Long> getIds() {
+            return ids;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.models.Session;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One page of ranked search results and the number of sessions matching overall.
+ */
+@Getter
+@RequiredArgsConstructor
+public class SessionSearchResult {
+    private final long total;
+    private final List<Session> sessions;
+}
@@ -1,78 +1,343 @@
 package com.openclassrooms.starterjwt.services;
 
+import com.openclassrooms.starterjwt.datasource.ReplicaLagGuard;
 import com.openclassrooms.starterjwt.exception.BadRequestException;
 import com.openclassrooms.starterjwt.exception.NotFoundException;
+import com.openclassrooms.starterjwt.exception.PreconditionFailedException;
 import com.openclassrooms.starterjwt.models.Session;
 import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.payload.response.EnrollmentResult;
+import com.openclassrooms.starterjwt.repository.ParticipationRepository;
 import com.openclassrooms.starterjwt.repository.SessionRepository;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
 public class SessionService {
+    static final String METRIC_PREFIX = "session.participation";
+
+    private static final Date EARLIEST = new Date(0);
+
+    private static final Date LATEST = new Date(253402300799000L); // 9999-12-31T23:59:59Z
+
     private final SessionRepository sessionRepository;
 
     private final UserRepository userRepository;
 
-    public SessionService(SessionRepository sessionRepository, UserRepository userRepository) {
+    private final ParticipationRepository participationRepository;
+
+    private final SessionSearchIndex sessionSearchIndex;
+
+    private final ReplicaLagGuard replicaLagGuard;
+
+    private final MeterRegistry meterRegistry;
+
+    public SessionService(SessionRepository sessionRepository,
+                          UserRepository userRepository,
+                          ParticipationRepository participationRepository,
+                          SessionSearchIndex sessionSearchIndex,
+                          ReplicaLagGuard replicaLagGuard,
+                          MeterRegistry meterRegistry) {
         this.sessionRepository = sessionRepository;
         this.userRepository = userRepository;
+        this.participationRepository = participationRepository;
+        this.sessionSearchIndex = sessionSearchIndex;
+        this.replicaLagGuard = replicaLagGuard;
+        this.meterRegistry = meterRegistry;
     }
 
     public Session create(Session session) {
-        return this.sessionRepository.save(session);
+        this.countSeats(session);
+        Session created = this.sessionRepository.save(session);
+        this.sessionSearchIndex.index(created);
+        this.replicaLagGuard.recordCurrentUserWrite();
+        return created;
     }
 
     public void delete(Long id) {
         this.sessionRepository.deleteById(id);
+        this.sessionSearchIndex.remove(id);
+        this.replicaLagGuard.recordCurrentUserWrite();
     }
 
+    @Transactional(readOnly = true)
     public List<Session> findAll() {
         return this.sessionRepository.findAll();
     }
 
+    /**
+     * Returns the sessions following {@code cursor} in (date, id) order, restricted to {@code [from, to)}
+     * and optionally to one teacher. Every bound is nullable.
+     */
+    @Transactional(readOnly = true)
+    public Slice<Session> findPage(SessionCursor cursor, Date from, Date to, Long teacherId, int limit) {
+        Date after = from != null ? from : EARLIEST;
+        Long afterId = Long.MIN_VALUE;
+        if (cursor != null && !cursor.getDate().before(after)) {
+            after = cursor.getDate();
+            afterId = cursor.getId();
+        }
+        Date before = to != null ? to : LATEST;
+        PageRequest page = PageRequest.of(0, limit);
+
+        if (teacherId != null) {
+            return this.sessionRepository.findPageByTeacher(teacherId, after, afterId, before, page);
+        }
+        return this.sessionRepository.findPage(after, afterId, before, page);
+    }
+
+    /**
+     * Returns the sessions of a user following {@code cursor}: upcoming ones in (date, id) order, or past ones in
+     * reverse order.
+     */
+    @Transactional(readOnly = true)
+    public Slice<Session> findPageByUser(Long userId, boolean past, SessionCursor cursor, int limit) {
+        Date now = new Date();
+        PageRequest page = PageRequest.of(0, limit);
+
+        if (past) {
+            Date before = now;
+            Long beforeId = Long.MIN_VALUE;
+            if (cursor != null && cursor.getDate().before(before)) {
+                before = cursor.getDate();
+                beforeId = cursor.getId();
+            }
+            return this.sessionRepository.findPastPageByUser(userId, before, beforeId, page);
+        }
+
+        Date after = now;
+        Long afterId = Long.MIN_VALUE;
+        // a cursor older than now points at sessions that have started since
+        if (cursor != null && !cursor.getDate().before(after)) {
+            after = cursor.getDate();
+            afterId = cursor.getId();
+        }
+        return this.sessionRepository.findUpcomingPageByUser(userId, after, afterId, page);
+    }
+
+    /**
+     * Ranked full-text search over names and descriptions.
+     *
+     * @return the matching sessions of the requested page, best first, and the overall number of matches
+     */
+    @Transactional(readOnly = true)
+    public SessionSearchResult search(String query, int offset, int limit) {
+        SessionSearchIndex.Hits hits = this.sessionSearchIndex.search(query, offset, limit);
+        if (hits.getIds().isEmpty()) {
+            return new SessionSearchResult(hits.getTotal(), Collections.emptyList());
+        }
+
+        Map<Long, Session> found = this.sessionRepository.findAllById(hits.getIds()).stream()
+                .collect(Collectors.toMap(Session::getId, session -> session));
+        // the index may briefly list a session another transaction has just deleted
+        List<Session> sessions = hits.getIds().stream()
+                .map(found::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        return new SessionSearchResult(hits.getTotal(), sessions);
+    }
+
+    @Transactional(readOnly = true)
     public Session getById(Long id) {
         return this.sessionRepository.findById(id).orElse(null);
     }
 
+    /**
+     * Validators of the whole session collection: any page changes only if a session was added, removed or updated,
+     * participations included.
+     */
+    @Transactional(readOnly = true)
+    public ResourceVersion getVersion() {
+        return ResourceVersion.of(this.sessionRepository.findChangeStamp());
+    }
+
+    /**
+     * @return the validators of one session, {@code null} when it does not exist
+     */
+    @Transactional(readOnly = true)
+    public ResourceVersion getVersion(Long id) {
+        return this.sessionRepository.findUpdatedAtById(id)
+                .map(updatedAt -> ResourceVersion.of(id, updatedAt))
+                .orElse(null);
+    }
+
+    @Transactional(readOnly = true)
+    public List<Long> getParticipantIds(Long id) {
+        return this.getParticipantIds(Collections.singletonList(id)).getOrDefault(id, Collections.emptyList());
+    }
+
+    /**
+     * Loads the participant ids of several sessions in one statement, keyed by session id.
+     * Sessions without participants are absent from the result.
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, List<Long>> getParticipantIds(Collection<Long> ids) {
+        Map<Long, List<Long>> participants = new HashMap<>();
+        if (ids.isEmpty()) {
+            return participants;
+        }
+
+        for (Object[] row : this.participationRepository.findUserIds(ids)) {
+            participants.computeIfAbsent((Long) row[0], key -> new ArrayList<>()).add((Long) row[1]);
+        }
+        return participants;
+    }
+
+    @Transactional
     public Session update(Long id, Session session) {
         session.setId(id);
-        return this.sessionRepository.save(session);
+        this.countSeats(session);
+        // a change limited to the participants would not touch the row otherwise
+        session.setUpdatedAt(LocalDateTime.now());
+        // the participants were read, and checked, in an earlier transaction: merging them would reload them one by
+        // one, so the merged session gets references instead
+        List<User> users = session.getUsers();
+        session.setUsers(null);
+        Session updated = this.sessionRepository.save(session);
+        updated.setUsers(users == null ? null : users.stream()
+                .map(user -> this.userRepository.getById(user.getId()))
+                .collect(Collectors.toCollection(ArrayList::new)));
+        this.sessionSearchIndex.index(updated);
+        this.replicaLagGuard.recordCurrentUserWrite();
+        return updated;
     }
 
-    public void participate(Long id, Long userId) {
-        Session session = this.sessionRepository.findById(id).orElse(null);
-        User user = this.userRepository.findById(userId).orElse(null);
-        if (session == null || user == null) {
-            throw new NotFoundException();
+    /**
+     * Updates the session only if its current version matches {@code ifMatch}. The row stays locked between the
+     * check and the write so two clients holding the same tag cannot both succeed.
+     *
+     * @throws PreconditionFailedException when the session does not exist or was changed since
+     */
+    @Transactional
+    public Session update(Long id, Session session, String ifMatch) {
+        Session current = this.sessionRepository.findByIdForUpdate(id).orElseThrow(PreconditionFailedException::new);
+        if (!ResourceVersion.of(id, current.getUpdatedAt()).matches(ifMatch)) {
+            throw new PreconditionFailedException();
         }
+        return this.update(id, session);
+    }
 
-        boolean alreadyParticipate = session.getUsers().stream().anyMatch(o -> o.getId().equals(userId));
-        if(alreadyParticipate) {
+    private void countSeats(Session session) {
+        int participants = session.getUsers() != null ? session.getUsers().size() : 0;
+        if (session.getCapacity() != null && participants > session.getCapacity()) {
             throw new BadRequestException();
         }
+        session.setBooked(participants);
+    }
 
-        session.getUsers().add(user);
+    /**
+     * Takes a seat with a conditional update of the session's booked counter, which only locks that session's row,
+     * then inserts the (session, user) pair. The primary key and foreign keys of PARTICIPATE detect duplicates and
+     * unknown users; any failure rolls the seat back.
+     */
+    @Transactional
+    public void participate(Long id, Long userId) {
+        if (this.sessionRepository.reserveSeat(id, LocalDateTime.now()) == 0) {
+            if (!this.sessionRepository.existsById(id)) {
+                throw this.conflict("participate", new NotFoundException());
+            }
+            throw this.conflict("participate", new BadRequestException());
+        }
 
-        this.sessionRepository.save(session);
+        try {
+            this.participationRepository.insert(id, userId);
+        } catch (DataIntegrityViolationException e) {
+            if (!this.userRepository.existsById(userId)) {
+                throw this.conflict("participate", new NotFoundException());
+            }
+            throw this.conflict("participate", new BadRequestException());
+        }
+        this.replicaLagGuard.recordWrite(userId);
     }
 
-    public void noLongerParticipate(Long id, Long userId) {
-        Session session = this.sessionRepository.findById(id).orElse(null);
-        if (session == null) {
-            throw new NotFoundException();
+    /**
+     * Enrolls several users at once: one lookup for the users, one for those already enrolled,
+     * then a batched insert of the rest, all in a single transaction. The session row stays locked
+     * for the duration so the remaining seats can be handed out in one go.
+     */
+    @Transactional
+    public List<EnrollmentResult> participateAll(Long id, List<Long> userIds) {
+        Session session = this.sessionRepository.findByIdForUpdate(id)
+                .orElseThrow(() -> this.conflict("participateAll", new NotFoundException()));
+        int seatsLeft = session.getCapacity() != null
+                ? Math.max(session.getCapacity() - session.getBooked(), 0)
+                : Integer.MAX_VALUE;
+
+        Set<Long> requested = new LinkedHashSet<>(userIds);
+        Set<Long> known = this.userRepository.findAllById(requested).stream()
+                .map(User::getId)
+                .collect(Collectors.toSet());
+        Set<Long> present = known.isEmpty()
+                ? Collections.emptySet()
+                : new HashSet<>(this.participationRepository.findUserIdsAmong(id, known));
+
+        List<EnrollmentResult> results = new ArrayList<>(requested.size());
+        List<Long> added = new ArrayList<>();
+        for (Long userId : requested) {
+            if (!known.contains(userId)) {
+                results.add(new EnrollmentResult(userId, EnrollmentResult.Status.UNKNOWN_USER));
+            } else if (present.contains(userId)) {
+                results.add(new EnrollmentResult(userId, EnrollmentResult.Status.ALREADY_PRESENT));
+            } else if (added.size() >= seatsLeft) {
+                results.add(new EnrollmentResult(userId, EnrollmentResult.Status.SESSION_FULL));
+            } else {
+                results.add(new EnrollmentResult(userId, EnrollmentResult.Status.ADDED));
+                added.add(userId);
+            }
         }
 
-        boolean alreadyParticipate = session.getUsers().stream().anyMatch(o -> o.getId().equals(userId));
-        if(!alreadyParticipate) {
-            throw new BadRequestException();
+        try {
+            this.participationRepository.insertAll(id, added);
+        } catch (DataIntegrityViolationException e) {
+            // rows written without the seat lock, e.g. by a concurrent session update
+            throw this.conflict("participateAll", new BadRequestException());
         }
+        session.setBooked(session.getBooked() + added.size());
+        added.forEach(this.replicaLagGuard::recordWrite);
+        return results;
+    }
 
-        session.setUsers(session.getUsers().stream().filter(user -> !user.getId().equals(userId)).collect(Collectors.toList()));
+    @Transactional
+    public void noLongerParticipate(Long id, Long userId) {
+        if (this.participationRepository.remove(id, userId) == 0) {
+            if (!this.sessionRepository.existsById(id)) {
+                throw this.conflict("noLongerParticipate", new NotFoundException());
+            }
+            throw this.conflict("noLongerParticipate", new BadRequestException());
+        }
+        this.sessionRepository.releaseSeat(id, LocalDateTime.now());
+        this.replicaLagGuard.recordWrite(userId);
+    }
 
-        this.sessionRepository.save(session);
+    /**
+     * Counts a refused participation change, tagged with the operation and the exception sent back.
+     */
+    private <E extends RuntimeException> E conflict(String operation, E exception) {
+        Counter.builder(METRIC_PREFIX + ".conflicts")
+                .description("Participation changes refused because of the session, user or enrollment state")
+                .tags("operation", operation, "exception", exception.getClass().getSimpleName())
+                .register(this.meterRegistry)
+                .increment();
+        return exception;
     }
 }
@@ -0,0 +1,235 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.datasource.ReplicaLagGuard;
+import com.openclassrooms.starterjwt.models.Teacher;
+import com.openclassrooms.starterjwt.repository.TeacherRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Copy-on-write snapshot of the TEACHERS table. Readers never touch the database: they get the current immutable
+ * {@link Snapshot}, which is replaced as a whole after a teacher is written on this node and on a fixed interval
+ * for writes made elsewhere.
+ */
+@Component
+public class TeacherCatalog implements DisposableBean {
+    static final String METRIC_PREFIX = "teacher.catalog";
+
+    private static final Logger logger = LoggerFactory.getLogger(TeacherCatalog.class);
+
+    private final TeacherRepository teacherRepository;
+
+    private final ReplicaLagGuard replicaLagGuard;
+
+    private final long refreshMs;
+
+    private final ScheduledExecutorService scheduler;
+
+    // bumped after every committed teacher write; a snapshot built before the last bump is stale
+    private final AtomicLong changes = new AtomicLong();
+
+    private volatile Snapshot snapshot = new Snapshot(0, -1, Collections.emptyList());
+
+    private final Timer refreshTimer;
+
+    private final Counter hits;
+
+    private final Counter misses;
+
+    public TeacherCatalog(TeacherRepository teacherRepository,
+                          ReplicaLagGuard replicaLagGuard,
+                          @Value("${oc.app.teacherCatalog.refreshMs:60000}") long refreshMs,
+                          MeterRegistry meterRegistry) {
+        this.teacherRepository = teacherRepository;
+        this.replicaLagGuard = replicaLagGuard;
+        this.refreshMs = refreshMs;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("teacher-catalog-"));
+
+        Gauge.builder(METRIC_PREFIX + ".version", this, catalog -> catalog.snapshot.getVersion())
+                .description("Version of the teacher snapshot being served")
+                .register(meterRegistry);
+        Gauge.builder(METRIC_PREFIX + ".size", this, catalog -> catalog.snapshot.getTeachers().size())
+                .register(meterRegistry);
+        this.refreshTimer = Timer.builder(METRIC_PREFIX + ".refresh")
+                .description("Time spent reloading the teacher table")
+                .register(meterRegistry);
+        this.hits = Counter.builder(METRIC_PREFIX + ".lookups").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder(METRIC_PREFIX + ".lookups").tag("result", "miss").register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        this.refresh();
+        if (this.refreshMs > 0) {
+            this.scheduler.scheduleWithFixedDelay(this::refreshQuietly, this.refreshMs, this.refreshMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public Snapshot current() {
+        Snapshot current = this.snapshot;
+        if (current.changes != this.changes.get()) {
+            current = this.refreshIfStale();
+        }
+        return current;
+    }
+
+    public List<Teacher> findAll() {
+        this.hits.increment();
+        return this.current().getTeachers();
+    }
+
+    /**
+     * Looks a teacher up in the snapshot. An unknown id is checked against the database once, in case the teacher
+     * was created on another node since the last refresh.
+     */
+    public Teacher findById(Long id) {
+        Teacher teacher = this.current().find(id);
+        if (teacher != null) {
+            this.hits.increment();
+            return teacher;
+        }
+
+        this.misses.increment();
+        // a teacher just created would not be on the replicas yet
+        return this.replicaLagGuard.readFromPrimary(() -> this.teacherRepository.existsById(id))
+                ? this.refresh(true).find(id)
+                : null;
+    }
+
+    /**
+     * Marks the snapshot stale once the current transaction commits, or right away without one.
+     * The next read reloads it.
+     */
+    public void invalidate() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    changes.incrementAndGet();
+                }
+            });
+        } else {
+            this.changes.incrementAndGet();
+        }
+    }
+
+    public Snapshot refresh() {
+        return this.refresh(false);
+    }
+
+    /**
+     * @param fromPrimary whether to bypass the read replicas, after a write they may not have received yet
+     */
+    private synchronized Snapshot refresh(boolean fromPrimary) {
+        // read before loading, so a write committed during the load makes this snapshot stale
+        long observedChanges = this.changes.get();
+        List<Teacher> teachers = this.refreshTimer.record(() -> fromPrimary
+                ? this.replicaLagGuard.readFromPrimary(() -> this.teacherRepository.findAll())
+                : this.teacherRepository.findAll());
+
+        Snapshot next = new Snapshot(this.snapshot.getVersion() + 1, observedChanges, teachers);
+        this.snapshot = next;
+        return next;
+    }
+
+    private synchronized Snapshot refreshIfStale() {
+        // only a write made through this node marks the snapshot stale
+        return this.snapshot.changes != this.changes.get() ? this.refresh(true) : this.snapshot;
+    }
+
+    private void refreshQuietly() {
+        try {
+            this.refresh();
+        } catch (RuntimeException e) {
+            logger.warn("Teacher catalog refresh failed, keeping version {}", this.snapshot.getVersion(), e);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        this.scheduler.shutdownNow();
+    }
+
+    /**
+     * One immutable generation of the catalog. The teachers are detached copies shared by every reader and must not
+     * be modified.
+     */
+    public static final class Snapshot {
+        private final long version;
+
+        private final long changes;
+
+        private final List<Teacher> teachers;
+
+        private final Map<Long, Teacher> byId;
+
+        private final ResourceVersion resourceVersion;
+
+        private Snapshot(long version, long changes, List<Teacher> loaded) {
+            this.version = version;
+            this.changes = changes;
+
+            List<Teacher> teachers = new ArrayList<>(loaded.size());
+            Map<Long, Teacher> byId = new LinkedHashMap<>();
+            LocalDateTime lastModified = null;
+            for (Teacher teacher : loaded) {
+                Teacher copy = Teacher.builder()
+                        .id(teacher.getId())
+                        .lastName(teacher.getLastName())
+                        .firstName(teacher.getFirstName())
+                        .createdAt(teacher.getCreatedAt())
+                        .updatedAt(teacher.getUpdatedAt())
+                        .build();
+                teachers.add(copy);
+                byId.put(copy.getId(), copy);
+                if (copy.getUpdatedAt() != null && (lastModified == null || copy.getUpdatedAt().isAfter(lastModified))) {
+                    lastModified = copy.getUpdatedAt();
+                }
+            }
+            this.teachers = Collections.unmodifiableList(teachers);
+            this.byId = Collections.unmodifiableMap(byId);
+            this.resourceVersion = ResourceVersion.of(teachers.size(), lastModified);
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public List<Teacher> getTeachers() {
+            return teachers;
+        }
+
+        public Teacher find(Long id) {
+            return byId.get(id);
+        }
+
+        /**
+         * Same validators as a count / max(updated_at) query over the table.
+         */
+        public ResourceVersion getResourceVersion() {
+            return resourceVersion;
+        }
+    }
+}
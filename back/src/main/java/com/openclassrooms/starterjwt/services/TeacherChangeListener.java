@@ -0,0 +1,27 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.models.Teacher;
+import org.springframework.context.annotation.Lazy;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+/**
+ * Marks the teacher catalog stale whenever a TEACHERS row is written; instantiated by Hibernate through Spring.
+ * The catalog is resolved lazily because it needs a repository, hence the entity manager factory being built.
+ */
+public class TeacherChangeListener {
+    private final TeacherCatalog teacherCatalog;
+
+    public TeacherChangeListener(@Lazy TeacherCatalog teacherCatalog) {
+        this.teacherCatalog = teacherCatalog;
+    }
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void invalidate(Teacher teacher) {
+        teacherCatalog.invalidate();
+    }
+}
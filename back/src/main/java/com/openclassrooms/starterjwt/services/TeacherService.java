@@ -1,24 +1,38 @@
 package com.openclassrooms.starterjwt.services;
 
 import com.openclassrooms.starterjwt.models.Teacher;
-import com.openclassrooms.starterjwt.repository.TeacherRepository;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
 
+/**
+ * Teacher reads, all served from the in-memory {@link TeacherCatalog}.
+ */
 @Service
 public class TeacherService {
-    private final TeacherRepository teacherRepository;
+    private final TeacherCatalog teacherCatalog;
 
-    public TeacherService(TeacherRepository teacherRepository) {
-        this.teacherRepository = teacherRepository;
+    public TeacherService(TeacherCatalog teacherCatalog) {
+        this.teacherCatalog = teacherCatalog;
     }
 
     public List<Teacher> findAll() {
-        return this.teacherRepository.findAll();
+        return this.teacherCatalog.findAll();
     }
 
     public Teacher findById(Long id) {
-        return this.teacherRepository.findById(id).orElse(null);
+        return this.teacherCatalog.findById(id);
+    }
+
+    public ResourceVersion getVersion() {
+        return this.teacherCatalog.current().getResourceVersion();
+    }
+
+    /**
+     * @return the validators of one teacher, {@code null} when it does not exist
+     */
+    public ResourceVersion getVersion(Long id) {
+        Teacher teacher = this.teacherCatalog.current().find(id);
+        return teacher != null ? ResourceVersion.of(id, teacher.getUpdatedAt()) : null;
     }
 }
@@ -1,8 +1,19 @@
 package com.openclassrooms.starterjwt.services;
 
+import com.openclassrooms.starterjwt.exception.BadRequestException;
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.repository.UserRepository;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 public class UserService {
@@ -16,7 +27,33 @@ public class UserService {
         this.userRepository.deleteById(id);
     }
 
+    @Transactional(readOnly = true)
     public User findById(Long id) {
         return this.userRepository.findById(id).orElse(null);
     }
+
+    @Transactional(readOnly = true)
+    public boolean exists(Long id) {
+        return this.userRepository.existsById(id);
+    }
+
+    /**
+     * Loads several users in one statement, in the order of {@code ids} without duplicates.
+     *
+     * @throws BadRequestException when one of the ids matches no user
+     */
+    @Transactional(readOnly = true)
+    public List<User> findAllById(Collection<Long> ids) {
+        Set<Long> requested = new LinkedHashSet<>(ids);
+        if (requested.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Map<Long, User> found = this.userRepository.findAllById(requested).stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+        if (found.size() != requested.size()) {
+            throw new BadRequestException();
+        }
+        return requested.stream().map(found::get).collect(Collectors.toCollection(ArrayList::new));
+    }
 }
@@ -0,0 +1,36 @@
+-- Identifiers widen to BIGINT, as the entities map them to Long. The foreign keys are unnamed in
+-- V1, so their checks are suspended rather than the constraints dropped and recreated.
+SET FOREIGN_KEY_CHECKS = 0;
+ALTER TABLE `TEACHERS` MODIFY `id` BIGINT AUTO_INCREMENT;
+ALTER TABLE `SESSIONS` MODIFY `id` BIGINT AUTO_INCREMENT;
+ALTER TABLE `SESSIONS` MODIFY `teacher_id` BIGINT;
+ALTER TABLE `USERS` MODIFY `id` BIGINT AUTO_INCREMENT;
+ALTER TABLE `PARTICIPATE` MODIFY `user_id` BIGINT;
+ALTER TABLE `PARTICIPATE` MODIFY `session_id` BIGINT;
+SET FOREIGN_KEY_CHECKS = 1;
+
+-- Change stamps need sub-second precision to tell two edits in the same second apart.
+ALTER TABLE `TEACHERS` MODIFY `updated_at` DATETIME(6) DEFAULT CURRENT_TIMESTAMP(6) ON UPDATE CURRENT_TIMESTAMP(6);
+ALTER TABLE `SESSIONS` MODIFY `updated_at` DATETIME(6) DEFAULT CURRENT_TIMESTAMP(6) ON UPDATE CURRENT_TIMESTAMP(6);
+ALTER TABLE `USERS` MODIFY `updated_at` DATETIME(6) DEFAULT CURRENT_TIMESTAMP(6) ON UPDATE CURRENT_TIMESTAMP(6);
+
+-- A participation is a (session, user) pair: incomplete and duplicate rows are dropped before the key.
+CREATE TABLE `PARTICIPATE_DISTINCT` AS
+  SELECT DISTINCT `user_id`, `session_id` FROM `PARTICIPATE` WHERE `user_id` IS NOT NULL AND `session_id` IS NOT NULL;
+DELETE FROM `PARTICIPATE`;
+INSERT INTO `PARTICIPATE` (`user_id`, `session_id`) SELECT `user_id`, `session_id` FROM `PARTICIPATE_DISTINCT`;
+DROP TABLE `PARTICIPATE_DISTINCT`;
+ALTER TABLE `PARTICIPATE` MODIFY `user_id` BIGINT NOT NULL;
+ALTER TABLE `PARTICIPATE` MODIFY `session_id` BIGINT NOT NULL;
+ALTER TABLE `PARTICIPATE` ADD PRIMARY KEY (`session_id`, `user_id`);
+
+-- Capacity and booked seats; existing sessions are unlimited and booked as far as PARTICIPATE says.
+ALTER TABLE `SESSIONS` ADD COLUMN `capacity` INT;
+ALTER TABLE `SESSIONS` ADD COLUMN `booked` INT NOT NULL DEFAULT 0;
+UPDATE `SESSIONS` SET `booked` = (SELECT COUNT(*) FROM `PARTICIPATE` WHERE `PARTICIPATE`.`session_id` = `SESSIONS`.`id`);
+
+-- Token revocation cut-offs, in epoch milliseconds.
+CREATE TABLE `REVOKED_USERS` (
+  `user_id` BIGINT PRIMARY KEY,
+  `revoked_before` BIGINT NOT NULL
+);
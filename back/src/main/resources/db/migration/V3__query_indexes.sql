@@ -0,0 +1,10 @@
+-- Session listings, by date range and per teacher, paged on (date, id).
+-- The teacher index also backs the SESSIONS.teacher_id foreign key.
+CREATE INDEX `idx_sessions_date` ON `SESSIONS` (`date`, `id`);
+CREATE INDEX `idx_sessions_teacher_date` ON `SESSIONS` (`teacher_id`, `date`, `id`);
+
+-- Sessions of a user; the primary key only serves lookups by session.
+CREATE INDEX `idx_participate_user` ON `PARTICIPATE` (`user_id`, `session_id`);
+
+-- Login and registration look users up by email.
+CREATE UNIQUE INDEX `uq_users_email` ON `USERS` (`email`);
@@ -0,0 +1,2 @@
+-- Change stamp of the session list (count and latest updated_at), computed on every GET /api/session.
+CREATE INDEX `idx_sessions_updated_at` ON `SESSIONS` (`updated_at`);
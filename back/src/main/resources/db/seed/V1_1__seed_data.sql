@@ -0,0 +1,9 @@
+-- Idempotent: a database created from the legacy script.sql already holds these rows.
+INSERT INTO TEACHERS (first_name, last_name)
+SELECT 'Margot', 'DELAHAYE' FROM DUAL WHERE NOT EXISTS (SELECT 1 FROM TEACHERS WHERE last_name = 'DELAHAYE');
+INSERT INTO TEACHERS (first_name, last_name)
+SELECT 'Hélène', 'THIERCELIN' FROM DUAL WHERE NOT EXISTS (SELECT 1 FROM TEACHERS WHERE last_name = 'THIERCELIN');
+
+INSERT INTO USERS (first_name, last_name, admin, email, password)
+SELECT 'Admin', 'Admin', true, 'yoga@studio.com', '$2a$10$.Hsa/ZjUVaHqi0tp9xieMeewrnZxrZ5pQRzddUXE/WjDu2ZThe6Iq'
+FROM DUAL WHERE NOT EXISTS (SELECT 1 FROM USERS WHERE email = 'yoga@studio.com');
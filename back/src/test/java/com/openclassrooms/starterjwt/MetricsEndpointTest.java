@@ -0,0 +1,124 @@
+package com.openclassrooms.starterjwt;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.payload.request.LoginRequest;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.jayway.jsonpath.JsonPath;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.metrics.AutoConfigureMetrics;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMetrics
+@AutoConfigureMockMvc
+@DisplayName("Prometheus metrics")
+class MetricsEndpointTest {
+    private static final String EMAIL = "metrics@example.com";
+    private static final String PASSWORD = "password";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private User user;
+
+    @BeforeEach
+    void setup() {
+        userRepository.deleteAll();
+        user = userRepository.save(User.builder()
+                                       .email(EMAIL)
+                                       .firstName("Metrics")
+                                       .lastName("Reader")
+                                       .password(passwordEncoder.encode(PASSWORD))
+                                       .admin(false)
+                                       .build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        userRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("the scrape covers requests, authentication, participation conflicts, the pool and Hibernate")
+    void prometheus_shouldExposeHotPathMeters() throws Exception {
+        String token = login();
+        mockMvc.perform(get("/api/session").header(HttpHeaders.AUTHORIZATION, "Bearer " + token))
+               .andExpect(status().isOk());
+        mockMvc.perform(post("/api/session/" + Long.MAX_VALUE + "/participate/" + user.getId())
+                       .header(HttpHeaders.AUTHORIZATION, "Bearer " + token))
+               .andExpect(status().isNotFound());
+
+        String scrape = mockMvc.perform(get("/actuator/prometheus"))
+                               .andExpect(status().isOk())
+                               .andReturn().getResponse().getContentAsString();
+
+        assertThat(scrape)
+                .contains("http_server_requests_seconds_bucket{exception=\"None\",method=\"GET\",outcome=\"SUCCESS\",status=\"200\",uri=\"/api/session\"")
+                .contains("auth_password_seconds_count{operation=\"match\",result=\"match\",}")
+                .contains("auth_user_load_seconds_count{result=\"found\",}")
+                .contains("auth_jwt_verification_seconds_count{result=\"verified\",}")
+                .contains("session_participation_conflicts_total{exception=\"NotFoundException\",operation=\"participate\",}")
+                .contains("hikaricp_connections_active{pool=")
+                .contains("hibernate_statements_total{");
+    }
+
+    @Test
+    @WithMockUser
+    @DisplayName("other actuator endpoints are neither exposed nor readable by non-admin users")
+    void actuator_shouldOnlyExposeHealthAndPrometheus() throws Exception {
+        mockMvc.perform(get("/actuator/metrics"))
+               .andExpect(status().isForbidden());
+        mockMvc.perform(get("/actuator/health"))
+               .andExpect(status().isOk());
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    @DisplayName("the metrics endpoint is not exposed, even to admins")
+    void metrics_shouldNotBeExposed() throws Exception {
+        mockMvc.perform(get("/actuator/metrics"))
+               .andExpect(status().isNotFound());
+    }
+
+    private String login() throws Exception {
+        LoginRequest loginRequest = new LoginRequest();
+        loginRequest.setEmail(EMAIL);
+        loginRequest.setPassword(PASSWORD);
+
+        MvcResult pending = mockMvc.perform(post("/api/auth/login")
+                                           .contentType(MediaType.APPLICATION_JSON)
+                                           .content(objectMapper.writeValueAsString(loginRequest)))
+                                   .andReturn();
+        String body = mockMvc.perform(asyncDispatch(pending))
+                             .andExpect(status().isOk())
+                             .andReturn().getResponse().getContentAsString();
+        return JsonPath.read(body, "$.token");
+    }
+}
@@ -5,25 +5,45 @@ import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.payload.request.LoginRequest;
 import com.openclassrooms.starterjwt.payload.request.SignupRequest;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.security.services.PasswordHashingExecutor;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
+import org.mockito.stubbing.Answer;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
@@ -37,17 +57,23 @@ class AuthControllerTest {
     @Autowired
     private ObjectMapper objectMapper;
 
-    @Autowired
+    @SpyBean
     private PasswordEncoder passwordEncoder;
 
     @SpyBean
     private UserRepository userRepository;
 
+    @SpyBean
+    private PasswordHashingExecutor passwordHashingExecutor;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
     @AfterEach
     void tearDown() {
         userRepository.deleteAll();
         SecurityContextHolder.clearContext();
-        Mockito.reset(userRepository);
+        Mockito.reset(userRepository, passwordHashingExecutor);
     }
 
     @BeforeEach
@@ -55,6 +81,13 @@ class AuthControllerTest {
         userRepository.deleteAll();
     }
 
+    private ResultActions performAsync(MockHttpServletRequestBuilder builder) throws Exception {
+        MvcResult result = mockMvc.perform(builder)
+                                  .andExpect(request().asyncStarted())
+                                  .andReturn();
+        return mockMvc.perform(asyncDispatch(result));
+    }
+
     private User persistUser(String email, String firstName, String lastName, boolean admin, String rawPassword) {
         return userRepository.save(User.builder()
                                        .email(email)
@@ -74,7 +107,7 @@ class AuthControllerTest {
 
          persistUser(loginRequest.getEmail(), "John", "Doe", true, loginRequest.getPassword());
 
-        mockMvc.perform(post("/api/auth/login")
+        performAsync(post("/api/auth/login")
                        .contentType(MediaType.APPLICATION_JSON)
                        .content(objectMapper.writeValueAsString(loginRequest)))
                .andExpect(status().isOk())
@@ -96,7 +129,7 @@ class AuthControllerTest {
 
         persistUser(signupRequest.getEmail(), signupRequest.getFirstName(), signupRequest.getLastName(), false, signupRequest.getPassword());
 
-        mockMvc.perform(post("/api/auth/register")
+        performAsync(post("/api/auth/register")
                        .contentType(MediaType.APPLICATION_JSON)
                        .content(objectMapper.writeValueAsString(signupRequest)))
                .andExpect(status().isBadRequest())
@@ -113,7 +146,7 @@ class AuthControllerTest {
         signupRequest.setLastName("Smith");
         signupRequest.setPassword("password");
 
-        mockMvc.perform(post("/api/auth/register")
+        performAsync(post("/api/auth/register")
                        .contentType(MediaType.APPLICATION_JSON)
                        .content(objectMapper.writeValueAsString(signupRequest)))
                .andExpect(status().isOk())
@@ -126,25 +159,146 @@ class AuthControllerTest {
     }
 
     @Test
-    @DisplayName("authenticateUser should default admin to false when user not found")
-    void authenticateUser_shouldDefaultAdminToFalseWhenUserNotFound() throws Exception {
-         LoginRequest loginRequest = new LoginRequest();
-         loginRequest.setEmail("ghost@example.com");
-         loginRequest.setPassword("password");
+    @DisplayName("authenticateUser should load the user with a single query")
+    void authenticateUser_shouldRunOneQuery() throws Exception {
+        LoginRequest loginRequest = new LoginRequest();
+        loginRequest.setEmail("admin@example.com");
+        loginRequest.setPassword("password");
+
+        persistUser(loginRequest.getEmail(), "Ada", "Admin", true, loginRequest.getPassword());
+        Mockito.clearInvocations(userRepository);
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        performAsync(post("/api/auth/login")
+                       .contentType(MediaType.APPLICATION_JSON)
+                       .content(objectMapper.writeValueAsString(loginRequest)))
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$.firstName").value("Ada"))
+               .andExpect(jsonPath("$.admin").value(true));
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        verify(userRepository, times(1)).findByEmail(loginRequest.getEmail());
+    }
+
+    @Test
+    @DisplayName("authenticateUser should return unauthorized on a wrong password")
+    void authenticateUser_shouldRejectWrongPassword() throws Exception {
+        LoginRequest loginRequest = new LoginRequest();
+        loginRequest.setEmail("user@example.com");
+        loginRequest.setPassword("wrong-password");
+
+        persistUser(loginRequest.getEmail(), "John", "Doe", false, "password");
+
+        performAsync(post("/api/auth/login")
+                       .contentType(MediaType.APPLICATION_JSON)
+                       .content(objectMapper.writeValueAsString(loginRequest)))
+               .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    @DisplayName("authenticateUser should return unauthorized on an unknown email, without hashing anything")
+    void authenticateUser_shouldRejectUnknownEmail() throws Exception {
+        LoginRequest loginRequest = new LoginRequest();
+        loginRequest.setEmail("nobody@example.com");
+        loginRequest.setPassword("password");
+        Mockito.clearInvocations(passwordEncoder);
+
+        performAsync(post("/api/auth/login")
+                       .contentType(MediaType.APPLICATION_JSON)
+                       .content(objectMapper.writeValueAsString(loginRequest)))
+               .andExpect(status().isUnauthorized());
+        // the dummy hash compared against was computed when the controller was built
+        verify(passwordEncoder, never()).encode(any());
+        verify(passwordEncoder).matches(any(), any());
+    }
+
+    @Test
+    @DisplayName("authenticateUser and registerUser should keep database work off the hashing pool")
+    void authentication_shouldQueryOutsideHashingPool() throws Exception {
+        persistUser("user@example.com", "John", "Doe", false, "password");
+        List<String> threads = new CopyOnWriteArrayList<>();
+        // the spy wraps a repository proxy, its default answer delegates to it
+        Answer<?> repository = Mockito.mockingDetails(userRepository).getMockCreationSettings().getDefaultAnswer();
+        Answer<?> recordThread = invocation -> {
+            threads.add(Thread.currentThread().getName());
+            return repository.answer(invocation);
+        };
+        Mockito.doAnswer(recordThread).when(userRepository).findByEmail(any());
+        Mockito.doAnswer(recordThread).when(userRepository).save(any());
+        LoginRequest loginRequest = new LoginRequest();
+        loginRequest.setEmail("user@example.com");
+        loginRequest.setPassword("password");
+        SignupRequest signupRequest = new SignupRequest();
+        signupRequest.setEmail("new@example.com");
+        signupRequest.setFirstName("Jane");
+        signupRequest.setLastName("Smith");
+        signupRequest.setPassword("password");
 
-         User storedUser = persistUser(loginRequest.getEmail(), "Ghost", "User", true, loginRequest.getPassword());
+        performAsync(post("/api/auth/login")
+                       .contentType(MediaType.APPLICATION_JSON)
+                       .content(objectMapper.writeValueAsString(loginRequest)))
+               .andExpect(status().isOk());
+        performAsync(post("/api/auth/register")
+                       .contentType(MediaType.APPLICATION_JSON)
+                       .content(objectMapper.writeValueAsString(signupRequest)))
+               .andExpect(status().isOk());
+
+        assertThat(threads).hasSize(2).noneMatch(thread -> thread.startsWith("bcrypt-"));
+    }
 
-         Mockito.doReturn(Optional.of(storedUser))
-             .doReturn(Optional.empty())
-             .when(userRepository)
-             .findByEmail(loginRequest.getEmail());
+    @Test
+    @DisplayName("registerUser should reject an email registered concurrently")
+    void registerUser_shouldRejectConcurrentDuplicate() throws Exception {
+        SignupRequest signupRequest = new SignupRequest();
+        signupRequest.setEmail("user@example.com");
+        signupRequest.setFirstName("John");
+        signupRequest.setLastName("Doe");
+        signupRequest.setPassword("password");
+        persistUser(signupRequest.getEmail(), "John", "Doe", false, "password");
+        // the other registration lands between the check and the insert
+        Mockito.doReturn(false).when(userRepository).existsByEmail(signupRequest.getEmail());
 
-        mockMvc.perform(post("/api/auth/login")
+        performAsync(post("/api/auth/register")
+                       .contentType(MediaType.APPLICATION_JSON)
+                       .content(objectMapper.writeValueAsString(signupRequest)))
+               .andExpect(status().isBadRequest())
+               .andExpect(jsonPath("$.message").value("Error: Email is already taken!"));
+        assertThat(userRepository.count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("authenticateUser and registerUser should answer 503 with Retry-After when hashing is saturated")
+    void authentication_shouldReturnServiceUnavailableWhenSaturated() throws Exception {
+        Mockito.doThrow(new RejectedExecutionException("full")).when(passwordHashingExecutor).submit(any());
+        LoginRequest loginRequest = new LoginRequest();
+        loginRequest.setEmail("user@example.com");
+        loginRequest.setPassword("password");
+        SignupRequest signupRequest = new SignupRequest();
+        signupRequest.setEmail("new@example.com");
+        signupRequest.setFirstName("Jane");
+        signupRequest.setLastName("Smith");
+        signupRequest.setPassword("password");
+
+        performAsync(post("/api/auth/login")
                        .contentType(MediaType.APPLICATION_JSON)
                        .content(objectMapper.writeValueAsString(loginRequest)))
+               .andExpect(status().isServiceUnavailable())
+               .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"));
+        performAsync(post("/api/auth/register")
+                       .contentType(MediaType.APPLICATION_JSON)
+                       .content(objectMapper.writeValueAsString(signupRequest)))
+               .andExpect(status().isServiceUnavailable())
+               .andExpect(header().exists(HttpHeaders.RETRY_AFTER));
+        assertThat(userRepository.existsByEmail(signupRequest.getEmail())).isFalse();
+    }
+
+    @Test
+    @DisplayName("jwks should publish no key while tokens are signed with the shared secret")
+    void jwks_shouldBeEmptyForHmac() throws Exception {
+        mockMvc.perform(get("/api/auth/jwks"))
                .andExpect(status().isOk())
-             .andExpect(jsonPath("$.token").isNotEmpty())
-               .andExpect(jsonPath("$.username").value(loginRequest.getEmail()))
-               .andExpect(jsonPath("$.admin").value(false));
+               .andExpect(header().exists(HttpHeaders.CACHE_CONTROL))
+               .andExpect(jsonPath("$.keys").isEmpty());
     }
 }
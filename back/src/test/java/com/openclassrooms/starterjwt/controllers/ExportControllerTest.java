@@ -0,0 +1,199 @@
+package com.openclassrooms.starterjwt.controllers;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.Teacher;
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.repository.TeacherRepository;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@DisplayName("ExportController")
+class ExportControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private SessionRepository sessionRepository;
+
+    @Autowired
+    private TeacherRepository teacherRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private Teacher teacher;
+    private User alice;
+    private User bob;
+    private Session crowded;
+    private Session empty;
+
+    @BeforeEach
+    void setup() {
+        sessionRepository.deleteAll();
+        userRepository.deleteAll();
+        teacherRepository.deleteAll();
+
+        teacher = teacherRepository.save(Teacher.builder().firstName("Margot").lastName("Delahaye").build());
+        alice = createUser("alice@example.com", "Alice", "Flow");
+        bob = createUser("bob@example.com", "Bob", "Zen, Jr");
+
+        crowded = sessionRepository.save(Session.builder()
+                                                .name("Morning \"flow\"")
+                                                .description("Start the day")
+                                                .date(new Date(1_700_000_000_000L))
+                                                .teacher(teacher)
+                                                .capacity(10)
+                                                .users(new ArrayList<>(List.of(bob, alice)))
+                                                .booked(2)
+                                                .build());
+        empty = sessionRepository.save(Session.builder()
+                                              .name("Evening, stretch")
+                                              .description("Recover")
+                                              .date(new Date(1_700_000_100_000L))
+                                              .teacher(teacher)
+                                              .users(new ArrayList<>())
+                                              .build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        sessionRepository.deleteAll();
+        userRepository.deleteAll();
+        teacherRepository.deleteAll();
+    }
+
+    private User createUser(String email, String firstName, String lastName) {
+        return userRepository.save(User.builder()
+                                       .email(email)
+                                       .firstName(firstName)
+                                       .lastName(lastName)
+                                       .password("password")
+                                       .admin(false)
+                                       .build());
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    @DisplayName("exportSessions should stream one JSON line per session without loading entities")
+    void exportSessions_shouldWriteNdjson() throws Exception {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        String body = mockMvc.perform(get("/api/admin/export/sessions"))
+                             .andExpect(status().isOk())
+                             .andExpect(content().contentTypeCompatibleWith("application/x-ndjson"))
+                             .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"sessions.ndjson\""))
+                             .andReturn().getResponse().getContentAsString();
+
+        String[] lines = body.split("\n");
+        assertThat(lines).hasSize(2);
+        JsonNode first = objectMapper.readTree(lines[0]);
+        assertThat(first.get("id").asLong()).isEqualTo(crowded.getId());
+        assertThat(first.get("name").asText()).isEqualTo("Morning \"flow\"");
+        assertThat(first.get("date").asText()).isEqualTo("2023-11-14T22:13:20Z");
+        assertThat(first.get("teacher_id").asLong()).isEqualTo(teacher.getId());
+        assertThat(first.get("users")).extracting(JsonNode::asLong).containsExactly(alice.getId(), bob.getId());
+        JsonNode second = objectMapper.readTree(lines[1]);
+        assertThat(second.get("capacity").isNull()).isTrue();
+        assertThat(second.get("users")).isEmpty();
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    @DisplayName("exportSessions should write quoted CSV with a header")
+    void exportSessions_shouldWriteCsv() throws Exception {
+        String body = mockMvc.perform(get("/api/admin/export/sessions").param("format", "csv"))
+                             .andExpect(status().isOk())
+                             .andExpect(content().contentTypeCompatibleWith("text/csv"))
+                             .andReturn().getResponse().getContentAsString();
+
+        assertThat(body.split("\r\n")).containsExactly(
+                "id,name,date,teacher_id,capacity,booked,users",
+                crowded.getId() + ",\"Morning \"\"flow\"\"\",2023-11-14T22:13:20Z," + teacher.getId() + ",10,2,"
+                        + alice.getId() + " " + bob.getId(),
+                empty.getId() + ",\"Evening, stretch\",2023-11-14T22:15:00Z," + teacher.getId() + ",,0,");
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    @DisplayName("exportRosters should write one line per participant")
+    void exportRosters_shouldWriteCsv() throws Exception {
+        String body = mockMvc.perform(get("/api/admin/export/rosters").param("format", "CSV"))
+                             .andExpect(status().isOk())
+                             .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"rosters.csv\""))
+                             .andReturn().getResponse().getContentAsString();
+
+        assertThat(body.split("\r\n")).containsExactly(
+                "session_id,user_id,email,first_name,last_name",
+                crowded.getId() + "," + alice.getId() + ",alice@example.com,Alice,Flow",
+                crowded.getId() + "," + bob.getId() + ",bob@example.com,Bob,\"Zen, Jr\"");
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    @DisplayName("exportRosters should keep spreadsheets from evaluating cells as formulas")
+    void exportRosters_shouldGuardFormulas() throws Exception {
+        bob.setFirstName("=HYPERLINK(\"x.io\")").setLastName("-2+3");
+        userRepository.save(bob);
+
+        String body = mockMvc.perform(get("/api/admin/export/rosters").param("format", "csv"))
+                             .andExpect(status().isOk())
+                             .andReturn().getResponse().getContentAsString();
+
+        assertThat(body.split("\r\n")).contains(
+                crowded.getId() + "," + bob.getId() + ",bob@example.com,\"'=HYPERLINK(\"\"x.io\"\")\",'-2+3");
+    }
+
+    @Test
+    @WithMockUser
+    @DisplayName("exports should be forbidden to non-admin users")
+    void export_shouldRequireAdmin() throws Exception {
+        mockMvc.perform(get("/api/admin/export/sessions"))
+               .andExpect(status().isForbidden());
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    @DisplayName("exports should reject an unknown format")
+    void export_shouldReturnBadRequestForUnknownFormat() throws Exception {
+        mockMvc.perform(get("/api/admin/export/rosters").param("format", "xml"))
+               .andExpect(status().isBadRequest());
+    }
+}
@@ -0,0 +1,184 @@
+package com.openclassrooms.starterjwt.controllers;
+
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.Teacher;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.repository.TeacherRepository;
+import com.openclassrooms.starterjwt.services.SessionService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.startsWith;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@DisplayName("ImportController")
+class ImportControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private SessionRepository sessionRepository;
+
+    @Autowired
+    private TeacherRepository teacherRepository;
+
+    @Autowired
+    private SessionService sessionService;
+
+    private Teacher teacher;
+
+    @BeforeEach
+    void setup() {
+        sessionRepository.deleteAll();
+        teacherRepository.deleteAll();
+
+        teacher = teacherRepository.save(Teacher.builder().firstName("Margot").lastName("Delahaye").build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        sessionRepository.deleteAll();
+        teacherRepository.deleteAll();
+    }
+
+    private List<Session> importedSessions() {
+        return sessionRepository.findAll().stream()
+                                .sorted(Comparator.comparing(Session::getId))
+                                .collect(Collectors.toList());
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    @DisplayName("importSessions should insert every row of an exported CSV file")
+    void importSessions_shouldReadCsv() throws Exception {
+        String body = "id,name,date,teacher_id,capacity,description,booked,users\r\n"
+                + "7,\"Morning \"\"flow\"\"\",2023-11-14T22:13:20Z," + teacher.getId() + ",10,Start the day,2,3 4\r\n"
+                + "8,\"Evening, stretch\",2023-11-14T22:15:00Z," + teacher.getId() + ",,Recover,0,\r\n";
+
+        mockMvc.perform(post("/api/admin/import/sessions").param("format", "csv")
+                                                          .param("batchSize", "1")
+                                                          .content(body))
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$.imported").value(2))
+               .andExpect(jsonPath("$.rejected").value(0))
+               .andExpect(jsonPath("$.errors", hasSize(0)));
+
+        List<Session> sessions = importedSessions();
+        assertThat(sessions).extracting(Session::getName).containsExactly("Morning \"flow\"", "Evening, stretch");
+        assertThat(sessions).extracting(Session::getCapacity).containsExactly(10, null);
+        assertThat(sessions).extracting(Session::getBooked).containsExactly(0, 0);
+        assertThat(sessions.get(0).getDate().getTime()).isEqualTo(1_700_000_000_000L);
+        assertThat(sessions.get(0).getTeacher().getId()).isEqualTo(teacher.getId());
+        assertThat(sessions.get(0).getCreatedAt()).isNotNull();
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    @DisplayName("importSessions should remove the formula guard written by the CSV export")
+    void importSessions_shouldUnguardCsvFormulas() throws Exception {
+        String body = "name,date,teacher_id,description\r\n"
+                + "'=1+1,2023-11-14T22:13:20Z," + teacher.getId() + ",''quoted\r\n"
+                + "'plain,2023-11-14T22:15:00Z," + teacher.getId() + ",'-\r\n";
+
+        mockMvc.perform(post("/api/admin/import/sessions").param("format", "csv").content(body))
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$.imported").value(2));
+
+        List<Session> sessions = importedSessions();
+        assertThat(sessions).extracting(Session::getName).containsExactly("=1+1", "'plain");
+        assertThat(sessions).extracting(Session::getDescription).containsExactly("'quoted", "-");
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    @DisplayName("importSessions should report invalid rows by line and keep the others")
+    void importSessions_shouldReportRejectedRows() throws Exception {
+        String body = "{\"name\":\"Yin\",\"date\":\"2024-01-01T10:00:00Z\",\"teacher_id\":" + teacher.getId()
+                + ",\"description\":\"Slow\"}\n"
+                + "\n"
+                + "{\"name\":\"\",\"date\":\"2024-01-02T10:00:00Z\",\"teacher_id\":" + teacher.getId()
+                + ",\"description\":\"No name\"}\n"
+                + "{\"name\":\"Ghost\",\"date\":\"2024-01-03T10:00:00Z\",\"teacher_id\":" + (teacher.getId() + 1000)
+                + ",\"description\":\"Nobody\"}\n"
+                + "{\"name\":\"Broken\"\n"
+                + "{\"name\":\"Vinyasa\",\"date\":\"2024-01-04T10:00:00Z\",\"teacher_id\":" + teacher.getId()
+                + ",\"description\":\"Fast\",\"capacity\":12}\n";
+
+        mockMvc.perform(post("/api/admin/import/sessions").content(body))
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$.imported").value(2))
+               .andExpect(jsonPath("$.rejected").value(3))
+               .andExpect(jsonPath("$.errors[0].line").value(3))
+               .andExpect(jsonPath("$.errors[0].message", startsWith("name ")))
+               .andExpect(jsonPath("$.errors[1].line").value(4))
+               .andExpect(jsonPath("$.errors[1].message").value("teacher_id unknown teacher"))
+               .andExpect(jsonPath("$.errors[2].line").value(5));
+
+        assertThat(importedSessions()).extracting(Session::getName).containsExactly("Yin", "Vinyasa");
+        assertThat(sessionService.search("vinyasa", 0, 10).getSessions()).extracting(Session::getName)
+                                                                            .containsExactly("Vinyasa");
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    @DisplayName("importSessions should only reject the row the database refuses in a batch")
+    void importSessions_shouldKeepValidRowsOfRefusedBatch() throws Exception {
+        // valid for SessionDto, but longer than the description column
+        String tooLong = String.join("", Collections.nCopies(2100, "x"));
+        StringBuilder body = new StringBuilder();
+        for (int i = 1; i <= 5; i++) {
+            body.append("{\"name\":\"Session ").append(i).append("\",\"date\":\"2024-01-0").append(i)
+                .append("T10:00:00Z\",\"teacher_id\":").append(teacher.getId())
+                .append(",\"description\":\"").append(i == 3 ? tooLong : "Yoga").append("\"}\n");
+        }
+
+        mockMvc.perform(post("/api/admin/import/sessions").param("batchSize", "5").content(body.toString()))
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$.imported").value(4))
+               .andExpect(jsonPath("$.rejected").value(1))
+               .andExpect(jsonPath("$.errors", hasSize(1)))
+               .andExpect(jsonPath("$.errors[0].line").value(3))
+               .andExpect(jsonPath("$.errors[0].message", startsWith("rejected by the database: ")));
+
+        assertThat(importedSessions()).extracting(Session::getName)
+                                      .containsExactly("Session 1", "Session 2", "Session 4", "Session 5");
+        assertThat(sessionService.search("yoga", 0, 10).getSessions()).hasSize(4);
+    }
+
+    @Test
+    @WithMockUser
+    @DisplayName("imports should be forbidden to non-admin users")
+    void import_shouldRequireAdmin() throws Exception {
+        mockMvc.perform(post("/api/admin/import/sessions").content(""))
+               .andExpect(status().isForbidden());
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    @DisplayName("imports should reject an unknown format or batch size")
+    void import_shouldReturnBadRequestForInvalidParameters() throws Exception {
+        mockMvc.perform(post("/api/admin/import/sessions").param("format", "xml").content(""))
+               .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/api/admin/import/sessions").param("batchSize", "0").content(""))
+               .andExpect(status().isBadRequest());
+    }
+}
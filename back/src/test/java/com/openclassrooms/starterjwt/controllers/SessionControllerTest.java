@@ -5,9 +5,11 @@ import com.openclassrooms.starterjwt.dto.SessionDto;
 import com.openclassrooms.starterjwt.models.Session;
 import com.openclassrooms.starterjwt.models.Teacher;
 import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.payload.request.EnrollmentRequest;
 import com.openclassrooms.starterjwt.repository.SessionRepository;
 import com.openclassrooms.starterjwt.repository.TeacherRepository;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.services.SessionService;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -15,9 +17,11 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.util.ArrayList;
 import java.util.Date;
@@ -26,6 +30,7 @@ import java.util.List;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.hasSize;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -49,6 +54,9 @@ class SessionControllerTest {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private SessionService sessionService;
+
     private Teacher teacher;
     private User attendeeOne;
     private User attendeeTwo;
@@ -140,6 +148,95 @@ class SessionControllerTest {
                .andExpect(jsonPath("$[1].id").value(other.getId()));
     }
 
+    @Test
+    @WithMockUser
+    @DisplayName("findAll should return a default-sized page when no limit is given")
+    void findAll_shouldPageByDefault() throws Exception {
+        for (int i = 0; i < SessionController.DEFAULT_PAGE_SIZE; i++) {
+            createSession("Session " + i, new Date(1_000_000L * (i + 1)), teacher);
+        }
+
+        mockMvc.perform(get("/api/session"))
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$", hasSize(SessionController.DEFAULT_PAGE_SIZE)))
+               .andExpect(header().exists(SessionController.NEXT_CURSOR_HEADER));
+    }
+
+    private Session createSession(String name, Date date, Teacher sessionTeacher) {
+        return sessionRepository.save(Session.builder()
+                                             .name(name)
+                                             .description(name + " description")
+                                             .date(date)
+                                             .teacher(sessionTeacher)
+                                             .users(new ArrayList<>())
+                                             .build());
+    }
+
+    @Test
+    @WithMockUser
+    @DisplayName("findAll should page through sessions with a cursor")
+    void findAll_shouldPageWithCursor() throws Exception {
+        sessionRepository.deleteAll();
+        Session first = createSession("First", new Date(1_000_000L), teacher);
+        Session second = createSession("Second", new Date(2_000_000L), teacher);
+        Session third = createSession("Third", new Date(3_000_000L), teacher);
+
+        MvcResult firstPage = mockMvc.perform(get("/api/session").param("limit", "2"))
+                                     .andExpect(status().isOk())
+                                     .andExpect(jsonPath("$", hasSize(2)))
+                                     .andExpect(jsonPath("$[0].id").value(first.getId()))
+                                     .andExpect(jsonPath("$[1].id").value(second.getId()))
+                                     .andExpect(header().exists(SessionController.NEXT_CURSOR_HEADER))
+                                     .andReturn();
+
+        String cursor = firstPage.getResponse().getHeader(SessionController.NEXT_CURSOR_HEADER);
+
+        mockMvc.perform(get("/api/session").param("limit", "2").param("cursor", cursor))
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$", hasSize(1)))
+               .andExpect(jsonPath("$[0].id").value(third.getId()))
+               .andExpect(header().doesNotExist(SessionController.NEXT_CURSOR_HEADER));
+    }
+
+    @Test
+    @WithMockUser
+    @DisplayName("findAll should filter by teacher and date range")
+    void findAll_shouldFilterByTeacherAndDates() throws Exception {
+        sessionRepository.deleteAll();
+        Teacher otherTeacher = teacherRepository.save(Teacher.builder()
+                                                             .firstName("Hélène")
+                                                             .lastName("Thiercelin")
+                                                             .build());
+        createSession("Too early", new Date(1_000_000L), teacher);
+        Session inRange = createSession("In range", new Date(86_400_000L * 2), teacher);
+        createSession("Other teacher", new Date(86_400_000L * 2), otherTeacher);
+        createSession("Too late", new Date(86_400_000L * 5), teacher);
+
+        mockMvc.perform(get("/api/session")
+                       .param("teacherId", String.valueOf(teacher.getId()))
+                       .param("from", "1970-01-02")
+                       .param("to", "1970-01-04T00:00:00.000Z"))
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$", hasSize(1)))
+               .andExpect(jsonPath("$[0].id").value(inRange.getId()));
+    }
+
+    @Test
+    @WithMockUser
+    @DisplayName("findAll should return bad request when cursor invalid")
+    void findAll_shouldReturnBadRequestWhenCursorInvalid() throws Exception {
+        mockMvc.perform(get("/api/session").param("cursor", "not-a-cursor"))
+               .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @WithMockUser
+    @DisplayName("findAll should return bad request when limit out of range")
+    void findAll_shouldReturnBadRequestWhenLimitOutOfRange() throws Exception {
+        mockMvc.perform(get("/api/session").param("limit", "0"))
+               .andExpect(status().isBadRequest());
+    }
+
     @Test
     @WithMockUser
     @DisplayName("create should create session")
@@ -152,6 +249,7 @@ class SessionControllerTest {
             "Unwind after work",
             List.of(attendeeOne.getId(), attendeeTwo.getId()),
             null,
+            null,
             null
         );
 
@@ -178,6 +276,7 @@ class SessionControllerTest {
                 "Updated description",
                 List.of(attendeeTwo.getId()),
                 null,
+                null,
                 null
         );
 
@@ -189,10 +288,117 @@ class SessionControllerTest {
                .andExpect(jsonPath("$.description").value("Updated description"))
                .andExpect(jsonPath("$.users[0]").value(attendeeTwo.getId()));
 
-        Session updated = sessionRepository.findById(session.getId()).orElseThrow();
+        Session updated = sessionRepository.findById(session.getId()).orElseThrow(IllegalStateException::new);
         assertThat(updated.getName()).isEqualTo("Updated Session");
     }
 
+    @Test
+    @WithMockUser
+    @DisplayName("findById should answer 304 until the session changes")
+    void findById_shouldRevalidateWithETag() throws Exception {
+        String eTag = mockMvc.perform(get("/api/session/" + session.getId()))
+                             .andExpect(status().isOk())
+                             .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache, private"))
+                             .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(eTag).isNotNull();
+
+        mockMvc.perform(get("/api/session/" + session.getId()).header(HttpHeaders.IF_NONE_MATCH, eTag))
+               .andExpect(status().isNotModified())
+               .andExpect(header().string(HttpHeaders.ETAG, eTag));
+
+        mockMvc.perform(post("/api/session/" + session.getId() + "/participate/" + attendeeOne.getId()))
+               .andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/session/" + session.getId()).header(HttpHeaders.IF_NONE_MATCH, eTag))
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$.users[0]").value(attendeeOne.getId()));
+    }
+
+    @Test
+    @WithMockUser
+    @DisplayName("findAll should answer 304 until a session is added")
+    void findAll_shouldRevalidateWithETag() throws Exception {
+        String eTag = mockMvc.perform(get("/api/session"))
+                             .andExpect(status().isOk())
+                             .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get("/api/session").header(HttpHeaders.IF_NONE_MATCH, eTag))
+               .andExpect(status().isNotModified());
+
+        sessionRepository.save(Session.builder()
+                                      .name("Evening Stretch")
+                                      .description("Recover after work")
+                                      .date(new Date())
+                                      .teacher(teacher)
+                                      .users(new ArrayList<>())
+                                      .build());
+
+        mockMvc.perform(get("/api/session").header(HttpHeaders.IF_NONE_MATCH, eTag))
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$", hasSize(2)));
+    }
+
+    @Test
+    @WithMockUser
+    @DisplayName("update should apply a matching If-Match and reject a stale one with 412")
+    void update_shouldCheckIfMatch() throws Exception {
+        String eTag = mockMvc.perform(get("/api/session/" + session.getId()))
+                             .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        SessionDto requestDto = new SessionDto(
+                session.getId(),
+                "Updated Session",
+                session.getDate(),
+                teacher.getId(),
+                "Updated description",
+                List.of(),
+                null,
+                null,
+                null
+        );
+        String body = objectMapper.writeValueAsString(requestDto);
+
+        String newETag = mockMvc.perform(put("/api/session/" + session.getId())
+                                        .header(HttpHeaders.IF_MATCH, eTag)
+                                        .contentType(MediaType.APPLICATION_JSON)
+                                        .content(body))
+                                .andExpect(status().isOk())
+                                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(newETag).isNotNull().isNotEqualTo(eTag);
+
+        mockMvc.perform(put("/api/session/" + session.getId())
+                       .header(HttpHeaders.IF_MATCH, eTag)
+                       .contentType(MediaType.APPLICATION_JSON)
+                       .content(body))
+               .andExpect(status().isPreconditionFailed());
+
+        mockMvc.perform(get("/api/session/" + session.getId()).header(HttpHeaders.IF_NONE_MATCH, newETag))
+               .andExpect(status().isNotModified());
+    }
+
+    @Test
+    @WithMockUser
+    @DisplayName("update should reject unknown participants and leave the session unchanged")
+    void update_shouldRejectUnknownUser() throws Exception {
+        SessionDto requestDto = new SessionDto(
+                session.getId(),
+                "Updated Session",
+                session.getDate(),
+                teacher.getId(),
+                "Updated description",
+                List.of(attendeeOne.getId(), attendeeTwo.getId() + 100),
+                null,
+                null,
+                null
+        );
+
+        mockMvc.perform(put("/api/session/" + session.getId())
+                       .contentType(MediaType.APPLICATION_JSON)
+                       .content(objectMapper.writeValueAsString(requestDto)))
+               .andExpect(status().isBadRequest());
+
+        assertThat(sessionRepository.findById(session.getId()).orElseThrow(IllegalStateException::new).getName()).isEqualTo("Morning Yoga");
+    }
+
     @Test
     @WithMockUser
     @DisplayName("update should return bad request when id invalid")
@@ -205,6 +411,7 @@ class SessionControllerTest {
                 "desc",
                 List.of(1L),
                 null,
+                null,
                 null
         );
 
@@ -249,8 +456,7 @@ class SessionControllerTest {
         mockMvc.perform(post("/api/session/" + session.getId() + "/participate/" + userId))
                .andExpect(status().isOk());
 
-        Session updated = sessionRepository.findById(session.getId()).orElseThrow();
-        assertThat(updated.getUsers()).extracting(User::getId).containsExactly(userId);
+        assertThat(sessionService.getParticipantIds(session.getId())).containsExactly(userId);
     }
 
     @Test
@@ -261,6 +467,143 @@ class SessionControllerTest {
                .andExpect(status().isBadRequest());
     }
 
+    @Test
+    @WithMockUser
+    @DisplayName("participate should reject a second join")
+    void participate_shouldRejectDuplicate() throws Exception {
+        String url = "/api/session/" + session.getId() + "/participate/" + attendeeOne.getId();
+
+        mockMvc.perform(post(url)).andExpect(status().isOk());
+        mockMvc.perform(post(url)).andExpect(status().isBadRequest());
+
+        assertThat(sessionService.getParticipantIds(session.getId())).containsExactly(attendeeOne.getId());
+    }
+
+    @Test
+    @WithMockUser
+    @DisplayName("participate should return not found for unknown session or user")
+    void participate_shouldReturnNotFound() throws Exception {
+        mockMvc.perform(post("/api/session/" + (session.getId() + 99) + "/participate/" + attendeeOne.getId()))
+               .andExpect(status().isNotFound());
+        mockMvc.perform(post("/api/session/" + session.getId() + "/participate/" + (attendeeTwo.getId() + 99)))
+               .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @WithMockUser
+    @DisplayName("participate should reject a join once the session is full")
+    void participate_shouldRejectWhenFull() throws Exception {
+        session.setCapacity(1);
+        sessionRepository.save(session);
+
+        mockMvc.perform(post("/api/session/" + session.getId() + "/participate/" + attendeeOne.getId()))
+               .andExpect(status().isOk());
+        mockMvc.perform(post("/api/session/" + session.getId() + "/participate/" + attendeeTwo.getId()))
+               .andExpect(status().isBadRequest());
+
+        mockMvc.perform(delete("/api/session/" + session.getId() + "/participate/" + attendeeOne.getId()))
+               .andExpect(status().isOk());
+        mockMvc.perform(post("/api/session/" + session.getId() + "/participate/" + attendeeTwo.getId()))
+               .andExpect(status().isOk());
+
+        assertThat(sessionService.getParticipantIds(session.getId())).containsExactly(attendeeTwo.getId());
+        assertThat(sessionRepository.findById(session.getId()).orElseThrow(IllegalStateException::new).getBooked()).isEqualTo(1);
+    }
+
+    @Test
+    @WithMockUser
+    @DisplayName("noLongerParticipate should keep the other participants")
+    void noLongerParticipate_shouldKeepOthers() throws Exception {
+        mockMvc.perform(post("/api/session/" + session.getId() + "/participate/" + attendeeOne.getId()));
+        mockMvc.perform(post("/api/session/" + session.getId() + "/participate/" + attendeeTwo.getId()));
+
+        mockMvc.perform(delete("/api/session/" + session.getId() + "/participate/" + attendeeOne.getId()))
+               .andExpect(status().isOk());
+
+        assertThat(sessionService.getParticipantIds(session.getId())).containsExactly(attendeeTwo.getId());
+    }
+
+    @Test
+    @WithMockUser
+    @DisplayName("noLongerParticipate should reject a user who is not participating")
+    void noLongerParticipate_shouldRejectNonParticipant() throws Exception {
+        mockMvc.perform(delete("/api/session/" + session.getId() + "/participate/" + attendeeOne.getId()))
+               .andExpect(status().isBadRequest());
+        mockMvc.perform(delete("/api/session/" + (session.getId() + 99) + "/participate/" + attendeeOne.getId()))
+               .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @WithMockUser
+    @DisplayName("participateAll should report a status per requested user")
+    void participateAll_shouldReportStatusPerUser() throws Exception {
+        mockMvc.perform(post("/api/session/" + session.getId() + "/participate/" + attendeeOne.getId()));
+        User attendeeThree = createUser("attendee3@example.com", "Carol", "Calm");
+        Long unknownId = attendeeThree.getId() + 99;
+        EnrollmentRequest request = new EnrollmentRequest();
+        request.setUserIds(List.of(attendeeOne.getId(), attendeeTwo.getId(), unknownId, attendeeThree.getId(), attendeeTwo.getId()));
+
+        mockMvc.perform(post("/api/session/" + session.getId() + "/participate")
+                       .contentType(MediaType.APPLICATION_JSON)
+                       .content(objectMapper.writeValueAsString(request)))
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$", hasSize(4)))
+               .andExpect(jsonPath("$[0].status").value("ALREADY_PRESENT"))
+               .andExpect(jsonPath("$[1].status").value("ADDED"))
+               .andExpect(jsonPath("$[2].userId").value(unknownId))
+               .andExpect(jsonPath("$[2].status").value("UNKNOWN_USER"))
+               .andExpect(jsonPath("$[3].status").value("ADDED"));
+
+        assertThat(sessionService.getParticipantIds(session.getId()))
+                .containsExactlyInAnyOrder(attendeeOne.getId(), attendeeTwo.getId(), attendeeThree.getId());
+    }
+
+    @Test
+    @WithMockUser
+    @DisplayName("participateAll should mark users past capacity as SESSION_FULL")
+    void participateAll_shouldStopAtCapacity() throws Exception {
+        session.setCapacity(1);
+        sessionRepository.save(session);
+        EnrollmentRequest request = new EnrollmentRequest();
+        request.setUserIds(List.of(attendeeOne.getId(), attendeeTwo.getId()));
+
+        mockMvc.perform(post("/api/session/" + session.getId() + "/participate")
+                       .contentType(MediaType.APPLICATION_JSON)
+                       .content(objectMapper.writeValueAsString(request)))
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$[0].status").value("ADDED"))
+               .andExpect(jsonPath("$[1].status").value("SESSION_FULL"));
+
+        assertThat(sessionService.getParticipantIds(session.getId())).containsExactly(attendeeOne.getId());
+        assertThat(sessionRepository.findById(session.getId()).orElseThrow(IllegalStateException::new).getBooked()).isEqualTo(1);
+    }
+
+    @Test
+    @WithMockUser
+    @DisplayName("participateAll should return not found for unknown session")
+    void participateAll_shouldReturnNotFound() throws Exception {
+        EnrollmentRequest request = new EnrollmentRequest();
+        request.setUserIds(List.of(attendeeOne.getId()));
+
+        mockMvc.perform(post("/api/session/" + (session.getId() + 99) + "/participate")
+                       .contentType(MediaType.APPLICATION_JSON)
+                       .content(objectMapper.writeValueAsString(request)))
+               .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @WithMockUser
+    @DisplayName("participateAll should reject an empty list")
+    void participateAll_shouldRejectEmptyList() throws Exception {
+        EnrollmentRequest request = new EnrollmentRequest();
+        request.setUserIds(List.of());
+
+        mockMvc.perform(post("/api/session/" + session.getId() + "/participate")
+                       .contentType(MediaType.APPLICATION_JSON)
+                       .content(objectMapper.writeValueAsString(request)))
+               .andExpect(status().isBadRequest());
+    }
+
     @Test
     @WithMockUser
     @DisplayName("noLongerParticipate should remove user")
@@ -272,8 +615,7 @@ class SessionControllerTest {
         mockMvc.perform(delete("/api/session/" + session.getId() + "/participate/" + userId))
                .andExpect(status().isOk());
 
-        Session updated = sessionRepository.findById(session.getId()).orElseThrow();
-        assertThat(updated.getUsers()).isEmpty();
+        assertThat(sessionService.getParticipantIds(session.getId())).isEmpty();
     }
 
     @Test
@@ -283,5 +625,57 @@ class SessionControllerTest {
         mockMvc.perform(delete("/api/session/invalid/participate/1"))
                .andExpect(status().isBadRequest());
     }
-}
 
+    @Test
+    @WithMockUser
+    @DisplayName("search should rank sessions written through the service and follow their updates")
+    void search_shouldFollowSessionWrites() throws Exception {
+        Session ashtanga = sessionService.create(Session.builder()
+                                                        .name("Ashtanga primary series")
+                                                        .description("Traditional ashtanga practice")
+                                                        .date(new Date())
+                                                        .teacher(teacher)
+                                                        .users(new ArrayList<>())
+                                                        .build());
+        Session prenatal = sessionService.create(Session.builder()
+                                                        .name("Prénatal")
+                                                        .description("Gentle class with some ashtanga postures")
+                                                        .date(new Date())
+                                                        .teacher(teacher)
+                                                        .users(new ArrayList<>(List.of(attendeeOne)))
+                                                        .build());
+
+        mockMvc.perform(get("/api/session/search").param("q", "Ashtanga"))
+               .andExpect(status().isOk())
+               .andExpect(header().string("X-Total-Count", "2"))
+               .andExpect(jsonPath("$[0].id").value(ashtanga.getId()))
+               .andExpect(jsonPath("$[1].id").value(prenatal.getId()))
+               .andExpect(jsonPath("$[1].users[0]").value(attendeeOne.getId()));
+        mockMvc.perform(get("/api/session/search").param("q", "ashtanga").param("offset", "1").param("limit", "1"))
+               .andExpect(jsonPath("$", hasSize(1)))
+               .andExpect(jsonPath("$[0].id").value(prenatal.getId()));
+
+        prenatal.setDescription("Gentle class for mothers to be");
+        sessionService.update(prenatal.getId(), prenatal);
+        mockMvc.perform(delete("/api/session/" + ashtanga.getId()))
+               .andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/session/search").param("q", "ashtanga"))
+               .andExpect(header().string("X-Total-Count", "0"))
+               .andExpect(jsonPath("$", hasSize(0)));
+        mockMvc.perform(get("/api/session/search").param("q", "prenatal mothers"))
+               .andExpect(jsonPath("$[0].id").value(prenatal.getId()));
+    }
+
+    @Test
+    @WithMockUser
+    @DisplayName("search should reject a blank query or an invalid page")
+    void search_shouldReturnBadRequest() throws Exception {
+        mockMvc.perform(get("/api/session/search").param("q", " "))
+               .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/session/search").param("q", "yoga").param("offset", "-1"))
+               .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/session/search").param("q", "yoga").param("limit", "0"))
+               .andExpect(status().isBadRequest());
+    }
+}
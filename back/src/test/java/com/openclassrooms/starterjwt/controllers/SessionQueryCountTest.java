@@ -0,0 +1,220 @@
+package com.openclassrooms.starterjwt.controllers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.Teacher;
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.repository.TeacherRepository;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.services.TeacherService;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.openclassrooms.starterjwt.datasource.SqlStatements.maxStatements;
+import static com.openclassrooms.starterjwt.datasource.SqlStatements.statements;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@DisplayName("Session endpoints SQL statement count")
+class SessionQueryCountTest {
+    private static final int SESSIONS = 12;
+    private static final int PARTICIPANTS = 15;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private SessionRepository sessionRepository;
+
+    @Autowired
+    private TeacherRepository teacherRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private TeacherService teacherService;
+
+    private Statistics statistics;
+    private Teacher teacher;
+    private List<User> users;
+    private Session session;
+    private User newcomer;
+
+    @BeforeEach
+    void setup() {
+        sessionRepository.deleteAll();
+        userRepository.deleteAll();
+        teacherRepository.deleteAll();
+
+        teacher = teacherRepository.save(Teacher.builder()
+                                                        .firstName("Margot")
+                                                        .lastName("Delahaye")
+                                                        .build());
+
+        users = new ArrayList<>();
+        for (int i = 0; i < PARTICIPANTS; i++) {
+            users.add(userRepository.save(User.builder()
+                                              .email("member" + i + "@example.com")
+                                              .firstName("Member")
+                                              .lastName("N" + i)
+                                              .password("password")
+                                              .admin(false)
+                                              .build()));
+        }
+
+        for (int i = 0; i < SESSIONS; i++) {
+            session = sessionRepository.save(Session.builder()
+                                                    .name("Session " + i)
+                                                    .description("Crowded class")
+                                                    .date(new Date(1_000_000L * (i + 1)))
+                                                    .teacher(teacher)
+                                                    .users(new ArrayList<>(users))
+                                                    .build());
+        }
+
+        newcomer = userRepository.save(User.builder()
+                                           .email("newcomer@example.com")
+                                           .firstName("New")
+                                           .lastName("Comer")
+                                           .password("password")
+                                           .admin(false)
+                                           .build());
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        sessionRepository.deleteAll();
+        userRepository.deleteAll();
+        teacherRepository.deleteAll();
+    }
+
+    @Test
+    @WithMockUser
+    @DisplayName("findAll reads the validators, then one page and its participant ids")
+    void findAll_shouldUseThreeStatements() throws Exception {
+        mockMvc.perform(get("/api/session"))
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$", hasSize(SESSIONS)))
+               .andExpect(jsonPath("$[0].users", hasSize(PARTICIPANTS)))
+               .andExpect(statements(3));
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(3);
+        assertThat(statistics.getEntityStatistics(User.class.getName()).getLoadCount()).isZero();
+        assertThat(statistics.getEntityStatistics(Teacher.class.getName()).getLoadCount()).isZero();
+    }
+
+    @Test
+    @WithMockUser
+    @DisplayName("findById reads the validators, then the session and its participant ids")
+    void findById_shouldUseThreeStatements() throws Exception {
+        mockMvc.perform(get("/api/session/" + session.getId()))
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$.users", hasSize(PARTICIPANTS)))
+               .andExpect(statements(3));
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(3);
+        assertThat(statistics.getEntityStatistics(User.class.getName()).getLoadCount()).isZero();
+        assertThat(statistics.getEntityStatistics(Teacher.class.getName()).getLoadCount()).isZero();
+    }
+
+    @Test
+    @WithMockUser
+    @DisplayName("a revalidated findAll or findById costs a single statement")
+    void notModified_shouldUseOneStatement() throws Exception {
+        String listETag = mockMvc.perform(get("/api/session")).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        String itemETag = mockMvc.perform(get("/api/session/" + session.getId()))
+                                 .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        statistics.clear();
+        mockMvc.perform(get("/api/session").header(HttpHeaders.IF_NONE_MATCH, listETag))
+               .andExpect(status().isNotModified());
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+
+        statistics.clear();
+        mockMvc.perform(get("/api/session/" + session.getId()).header(HttpHeaders.IF_NONE_MATCH, itemETag))
+               .andExpect(status().isNotModified());
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    @WithMockUser
+    @DisplayName("update resolves the teacher and every participant with a constant number of statements")
+    void update_shouldNotDependOnParticipantCount() throws Exception {
+        // the teacher catalog was invalidated by the setup, reload it outside the measurement
+        teacherService.findById(teacher.getId());
+
+        long fewStatements = countUpdateStatements(users.subList(0, 2));
+        long manyStatements = countUpdateStatements(users);
+
+        assertThat(manyStatements).isEqualTo(fewStatements);
+        assertThat(statistics.getEntityStatistics(User.class.getName()).getLoadCount()).isEqualTo(PARTICIPANTS);
+        assertThat(statistics.getEntityStatistics(Teacher.class.getName()).getLoadCount()).isZero();
+        assertThat(sessionRepository.findById(session.getId()).orElseThrow(IllegalStateException::new).getBooked()).isEqualTo(PARTICIPANTS);
+    }
+
+    private long countUpdateStatements(List<User> participants) throws Exception {
+        SessionDto dto = new SessionDto(session.getId(), session.getName(), session.getDate(), teacher.getId(),
+                session.getDescription(), participants.stream().map(User::getId).collect(Collectors.toList()),
+                null, null, null);
+
+        statistics.clear();
+        mockMvc.perform(put("/api/session/" + session.getId())
+                       .contentType(MediaType.APPLICATION_JSON)
+                       .content(objectMapper.writeValueAsString(dto)))
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$.users", hasSize(participants.size())))
+               .andExpect(maxStatements(7));
+        return statistics.getPrepareStatementCount();
+    }
+
+    @Test
+    @WithMockUser
+    @DisplayName("participate and noLongerParticipate each run a seat update and a row write")
+    void participation_shouldUseTwoStatements() throws Exception {
+        String url = "/api/session/" + session.getId() + "/participate/" + newcomer.getId();
+
+        mockMvc.perform(post(url)).andExpect(status().isOk());
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+
+        statistics.clear();
+        mockMvc.perform(delete(url)).andExpect(status().isOk());
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+    }
+}
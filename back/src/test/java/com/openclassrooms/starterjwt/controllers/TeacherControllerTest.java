@@ -9,6 +9,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
 
@@ -88,4 +89,24 @@ public class TeacherControllerTest {
                .andExpect(jsonPath("$[1].lastName").value(teacherTwo.getLastName()))
                .andExpect(jsonPath("$[1].firstName").value(teacherTwo.getFirstName()));
     }
+
+    @Test
+    @WithMockUser
+    @DisplayName("findAllTeachers should answer 304 until a teacher changes")
+    public void findAllTeachers_shouldRevalidateWithETag() throws Exception {
+        String eTag = mockMvc.perform(get("/api/teacher"))
+                             .andExpect(status().isOk())
+                             .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get("/api/teacher").header(HttpHeaders.IF_NONE_MATCH, eTag))
+               .andExpect(status().isNotModified());
+        mockMvc.perform(get("/api/teacher/" + teacherOne.getId()).header(HttpHeaders.IF_NONE_MATCH, eTag))
+               .andExpect(status().isOk());
+
+        teacherRepository.save(teacherTwo.setLastName("Smyth"));
+
+        mockMvc.perform(get("/api/teacher").header(HttpHeaders.IF_NONE_MATCH, eTag))
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$[1].lastName").value("Smyth"));
+    }
 }
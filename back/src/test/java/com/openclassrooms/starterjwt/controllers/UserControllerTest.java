@@ -1,7 +1,16 @@
 package com.openclassrooms.starterjwt.controllers;
 
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.Teacher;
 import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.RevokedUserRepository;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.repository.TeacherRepository;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.security.jwt.JwtUtils;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -9,14 +18,23 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
 
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.contains;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -34,13 +52,32 @@ class UserControllerTest {
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    @Autowired
+    private JwtUtils jwtUtils;
+
+    @Autowired
+    private RevokedUserRepository revokedUserRepository;
+
+    @Autowired
+    private SessionRepository sessionRepository;
+
+    @Autowired
+    private TeacherRepository teacherRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
     @BeforeEach
     void setup() {
+        sessionRepository.deleteAll();
+        teacherRepository.deleteAll();
         userRepository.deleteAll();
     }
 
     @AfterEach
     void tearDown() {
+        sessionRepository.deleteAll();
+        teacherRepository.deleteAll();
         userRepository.deleteAll();
         SecurityContextHolder.clearContext();
     }
@@ -85,6 +122,90 @@ class UserControllerTest {
                .andExpect(status().isBadRequest());
     }
 
+    private Session persistSession(String name, long daysFromNow, Teacher teacher, User... users) {
+        return sessionRepository.save(Session.builder()
+                                             .name(name)
+                                             .description("Yoga")
+                                             .date(new Date(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(daysFromNow)))
+                                             .teacher(teacher)
+                                             .users(new ArrayList<>(List.of(users)))
+                                             .booked(users.length)
+                                             .build());
+    }
+
+    @Test
+    @WithMockUser(username = "user@example.com")
+    @DisplayName("findSessions should page the upcoming sessions of the user in date order")
+    void findSessions_shouldPageUpcomingSessions() throws Exception {
+        User user = persistUser();
+        User other = userRepository.save(User.builder().email("other@example.com").firstName("Jane").lastName("Roe")
+                                             .password("password").admin(false).build());
+        Teacher teacher = teacherRepository.save(Teacher.builder().firstName("Margot").lastName("Delahaye").build());
+        Session third = persistSession("Third", 9, teacher, user, other);
+        Session first = persistSession("First", 1, teacher, user);
+        persistSession("Not booked", 2, teacher, other);
+        persistSession("Past", -1, teacher, user);
+        Session second = persistSession("Second", 4, teacher, user);
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        String cursor = mockMvc.perform(get("/api/user/" + user.getId() + "/sessions").param("limit", "2"))
+                               .andExpect(status().isOk())
+                               .andExpect(jsonPath("$[*].id").value(contains(first.getId().intValue(), second.getId().intValue())))
+                               .andExpect(header().exists(SessionController.NEXT_CURSOR_HEADER))
+                               .andReturn().getResponse().getHeader(SessionController.NEXT_CURSOR_HEADER);
+        // the page, then the participants of its sessions
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+
+        mockMvc.perform(get("/api/user/" + user.getId() + "/sessions").param("limit", "2").param("cursor", cursor))
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$[*].id").value(contains(third.getId().intValue())))
+               .andExpect(jsonPath("$[0].users").value(contains(user.getId().intValue(), other.getId().intValue())))
+               .andExpect(header().doesNotExist(SessionController.NEXT_CURSOR_HEADER));
+    }
+
+    @Test
+    @WithMockUser(username = "user@example.com")
+    @DisplayName("findSessions should list past sessions most recent first")
+    void findSessions_shouldListPastSessions() throws Exception {
+        User user = persistUser();
+        Teacher teacher = teacherRepository.save(Teacher.builder().firstName("Margot").lastName("Delahaye").build());
+        Session older = persistSession("Older", -30, teacher, user);
+        Session recent = persistSession("Recent", -2, teacher, user);
+        persistSession("Upcoming", 3, teacher, user);
+
+        mockMvc.perform(get("/api/user/" + user.getId() + "/sessions").param("when", "past"))
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$[*].id").value(contains(recent.getId().intValue(), older.getId().intValue())));
+    }
+
+    @Test
+    @WithMockUser(username = "user@example.com")
+    @DisplayName("findSessions should return an empty list for a user without bookings and not found for an unknown user")
+    void findSessions_shouldDistinguishUnknownUser() throws Exception {
+        User user = persistUser();
+
+        mockMvc.perform(get("/api/user/" + user.getId() + "/sessions"))
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$").isEmpty());
+        mockMvc.perform(get("/api/user/" + (user.getId() + 1) + "/sessions"))
+               .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @WithMockUser(username = "user@example.com")
+    @DisplayName("findSessions should reject an unknown filter, limit or cursor")
+    void findSessions_shouldReturnBadRequest() throws Exception {
+        mockMvc.perform(get("/api/user/1/sessions").param("when", "later"))
+               .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/user/1/sessions").param("limit", "0"))
+               .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/user/1/sessions").param("cursor", "bm90LWEtY3Vyc29y"))
+               .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/user/invalid/sessions"))
+               .andExpect(status().isBadRequest());
+    }
+
     @Test
     @WithMockUser(username = "user@example.com")
     @DisplayName("delete should remove user")
@@ -124,4 +245,21 @@ class UserControllerTest {
         mockMvc.perform(delete("/api/user/invalid"))
                .andExpect(status().isBadRequest());
     }
+
+    @Test
+    @DisplayName("delete should invalidate the cached principal of the user")
+    void delete_shouldInvalidateCachedPrincipal() throws Exception {
+        User savedUser = persistUser();
+        UserDetailsImpl principal = UserDetailsImpl.builder().id(savedUser.getId()).username(savedUser.getEmail()).build();
+        String bearer = "Bearer " + jwtUtils.generateJwtToken(new UsernamePasswordAuthenticationToken(principal, null));
+
+        mockMvc.perform(get("/api/user/" + savedUser.getId()).header("Authorization", bearer))
+               .andExpect(status().isOk());
+        mockMvc.perform(delete("/api/user/" + savedUser.getId()).header("Authorization", bearer))
+               .andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/user/" + savedUser.getId()).header("Authorization", bearer))
+               .andExpect(status().isUnauthorized());
+        assertThat(revokedUserRepository.existsById(savedUser.getId())).isTrue();
+    }
 }
@@ -0,0 +1,173 @@
+package com.openclassrooms.starterjwt.datasource;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import com.openclassrooms.starterjwt.services.SessionService;
+import com.openclassrooms.starterjwt.services.UserService;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Runs against two H2 databases, the usual test database as primary and a second one as its replica. Replication is
+ * simulated by writing the fixture to both; anything written through the application afterwards only reaches the
+ * primary, as with a lagging replica.
+ */
+@SpringBootTest(properties = {
+        "oc.app.datasource.replica.urls=" + ReplicaRoutingTest.REPLICA_URL,
+        "oc.app.datasource.replica.stickyMs=60000"
+})
+@AutoConfigureMockMvc
+@DisplayName("Replica routing")
+class ReplicaRoutingTest {
+    static final String REPLICA_URL = "jdbc:h2:mem:yoga-app-replica;MODE=MYSQL;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE";
+
+    private static final long TEACHER_ID = 9001L;
+    private static final long SESSION_ID = 9001L;
+    private static final long ALICE_ID = 9001L;
+    private static final long BOB_ID = 9002L;
+
+    private static JdbcTemplate replica;
+
+    @Autowired
+    @Qualifier("primaryDataSource")
+    private DataSource primaryDataSource;
+
+    @Autowired
+    private SessionService sessionService;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private UserService userService;
+
+    private JdbcTemplate primary;
+
+    @BeforeAll
+    static void createReplica() {
+        DriverManagerDataSource replicaDataSource = new DriverManagerDataSource(REPLICA_URL, "sa", "");
+        Flyway.configure().dataSource(replicaDataSource).load().migrate();
+        replica = new JdbcTemplate(replicaDataSource);
+    }
+
+    @BeforeEach
+    void setup() {
+        primary = new JdbcTemplate(primaryDataSource);
+        for (JdbcTemplate database : new JdbcTemplate[]{primary, replica}) {
+            database.update("INSERT INTO TEACHERS (id, first_name, last_name) VALUES (?, 'Margot', 'Delahaye')", TEACHER_ID);
+            database.update("INSERT INTO USERS (id, email, first_name, last_name, password) VALUES (?, 'alice@example.com', 'Alice', 'Flow', 'pwd')", ALICE_ID);
+            database.update("INSERT INTO USERS (id, email, first_name, last_name, password) VALUES (?, 'bob@example.com', 'Bob', 'Zen', 'pwd')", BOB_ID);
+            database.update("INSERT INTO SESSIONS (id, name, description, `date`, teacher_id, capacity) VALUES (?, 'Vinyasa', 'Flow', ?, ?, 10)",
+                            SESSION_ID, new Timestamp(System.currentTimeMillis()), TEACHER_ID);
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+        for (JdbcTemplate database : new JdbcTemplate[]{primary, replica}) {
+            database.update("DELETE FROM PARTICIPATE WHERE session_id = ?", SESSION_ID);
+            database.update("DELETE FROM SESSIONS WHERE id = ?", SESSION_ID);
+            database.update("DELETE FROM USERS WHERE id IN (?, ?)", ALICE_ID, BOB_ID);
+            database.update("DELETE FROM TEACHERS WHERE id = ?", TEACHER_ID);
+        }
+    }
+
+    private static void authenticate(long userId, String email) {
+        UserDetailsImpl principal = UserDetailsImpl.builder().id(userId).username(email).build();
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities()));
+    }
+
+    @Test
+    @DisplayName("read-only service methods should read the replica and writes should reach the primary only")
+    void readOnlyTransactions_shouldUseReplica() {
+        replica.update("UPDATE SESSIONS SET name = 'Vinyasa (replica)' WHERE id = ?", SESSION_ID);
+        replica.update("UPDATE USERS SET first_name = 'Alicia' WHERE id = ?", ALICE_ID);
+
+        Session session = sessionService.getById(SESSION_ID);
+        assertThat(session.getName()).isEqualTo("Vinyasa (replica)");
+        assertThat(userService.findById(ALICE_ID).getFirstName()).isEqualTo("Alicia");
+
+        sessionService.participate(SESSION_ID, ALICE_ID);
+
+        assertThat(primary.queryForObject("SELECT booked FROM SESSIONS WHERE id = ?", Integer.class, SESSION_ID)).isEqualTo(1);
+        assertThat(replica.queryForObject("SELECT booked FROM SESSIONS WHERE id = ?", Integer.class, SESSION_ID)).isZero();
+        // nobody is authenticated, so nobody sticks to the primary
+        assertThat(sessionService.getParticipantIds(SESSION_ID)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("after a participate the user should read from the primary while other users still read the replica")
+    void participate_shouldStickUserToPrimary() {
+        authenticate(ALICE_ID, "alice@example.com");
+        assertThat(sessionService.getParticipantIds(SESSION_ID)).isEmpty();
+
+        sessionService.participate(SESSION_ID, ALICE_ID);
+
+        assertThat(sessionService.getParticipantIds(SESSION_ID)).containsExactly(ALICE_ID);
+        assertThat(sessionService.getById(SESSION_ID).getBooked()).isEqualTo(1);
+
+        authenticate(BOB_ID, "bob@example.com");
+        assertThat(sessionService.getParticipantIds(SESSION_ID)).isEmpty();
+    }
+
+    @Test
+    @WithMockUser
+    @DisplayName("DELETE /api/session/{id} should check the replica and delete on the primary")
+    void deleteRequest_shouldWriteToPrimary() throws Exception {
+        mockMvc.perform(delete("/api/session/" + SESSION_ID))
+               .andExpect(status().isOk());
+
+        assertThat(primary.queryForObject("SELECT COUNT(*) FROM SESSIONS WHERE id = ?", Integer.class, SESSION_ID)).isZero();
+        assertThat(replica.queryForObject("SELECT COUNT(*) FROM SESSIONS WHERE id = ?", Integer.class, SESSION_ID)).isEqualTo(1);
+    }
+
+    @Test
+    @WithMockUser
+    @DisplayName("PUT /api/session/{id} should read the participants from the replica and update the primary")
+    void updateRequest_shouldWriteToPrimary() throws Exception {
+        SessionDto dto = new SessionDto(SESSION_ID, "Yin", new Date(), TEACHER_ID, "Slow",
+                Arrays.asList(ALICE_ID, BOB_ID), 10, null, null);
+
+        mockMvc.perform(put("/api/session/" + SESSION_ID)
+                       .contentType(MediaType.APPLICATION_JSON)
+                       .content(objectMapper.writeValueAsString(dto)))
+               .andExpect(status().isOk());
+
+        assertThat(primary.queryForObject("SELECT name FROM SESSIONS WHERE id = ?", String.class, SESSION_ID)).isEqualTo("Yin");
+        assertThat(primary.queryForObject("SELECT COUNT(*) FROM PARTICIPATE WHERE session_id = ?", Integer.class, SESSION_ID)).isEqualTo(2);
+        assertThat(replica.queryForObject("SELECT name FROM SESSIONS WHERE id = ?", String.class, SESSION_ID)).isEqualTo("Vinyasa");
+        assertThat(replica.queryForObject("SELECT COUNT(*) FROM PARTICIPATE WHERE session_id = ?", Integer.class, SESSION_ID)).isZero();
+    }
+}
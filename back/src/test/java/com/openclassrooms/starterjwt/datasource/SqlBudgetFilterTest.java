@@ -0,0 +1,195 @@
+package com.openclassrooms.starterjwt.datasource;
+
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.Teacher;
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.repository.TeacherRepository;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.security.jwt.JwtUtils;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.Date;
+
+import static com.openclassrooms.starterjwt.datasource.SqlStatements.authenticationStatements;
+import static com.openclassrooms.starterjwt.datasource.SqlStatements.maxStatements;
+import static com.openclassrooms.starterjwt.datasource.SqlStatements.statements;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "oc.app.sqlBudget.default=10",
+        "oc.app.sqlBudget.endpoints=GET /api/session/{id}=1, GET /api/session=3"
+})
+@AutoConfigureMockMvc
+@DisplayName("SQL budget per request")
+class SqlBudgetFilterTest {
+    private static final String TEACHER_BY_ID = "select count(*) from TEACHERS where id = ?";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private SqlBudgetFilter sqlBudgetFilter;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private SessionRepository sessionRepository;
+
+    @Autowired
+    private TeacherRepository teacherRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JwtUtils jwtUtils;
+
+    private Teacher teacher;
+    private Session session;
+
+    @BeforeEach
+    void setup() {
+        sessionRepository.deleteAll();
+        teacherRepository.deleteAll();
+        teacher = teacherRepository.save(Teacher.builder().firstName("Margot").lastName("Delahaye").build());
+        for (int i = 0; i < 3; i++) {
+            session = sessionRepository.save(Session.builder()
+                                                    .name("Session " + i)
+                                                    .description("Morning class")
+                                                    .date(new Date(1_000_000L * (i + 1)))
+                                                    .teacher(teacher)
+                                                    .build());
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        StatementStats.stop();
+        sessionRepository.deleteAll();
+        teacherRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("budgets are read per endpoint, with a default for the others")
+    void getBudget_shouldUseEndpointOverrides() {
+        assertThat(sqlBudgetFilter.getBudget("GET /api/session/{id}")).isEqualTo(1);
+        assertThat(sqlBudgetFilter.getBudget("GET /api/session")).isEqualTo(3);
+        assertThat(sqlBudgetFilter.getBudget("GET /api/teacher")).isEqualTo(10);
+    }
+
+    @Test
+    @WithMockUser
+    @DisplayName("a request counts its statements, rows and JDBC time")
+    void request_shouldCountStatementsAndRows() throws Exception {
+        MvcResult result = mockMvc.perform(get("/api/session"))
+                                  .andExpect(status().isOk())
+                                  .andExpect(statements(3))
+                                  .andReturn();
+
+        StatementStats stats = (StatementStats) result.getRequest().getAttribute(StatementStats.REQUEST_ATTRIBUTE);
+        // the validators row, then the three sessions
+        assertThat(stats.getRows()).isEqualTo(4);
+        assertThat(stats.getJdbcNanos()).isPositive();
+        assertThat(overBudget("/api/session")).isZero();
+    }
+
+    @Test
+    @WithMockUser
+    @DisplayName("a request over the budget of its endpoint is counted")
+    void request_overBudget_shouldBeCounted() throws Exception {
+        double before = overBudget("/api/session/{id}");
+
+        mockMvc.perform(get("/api/session/" + session.getId()))
+               .andExpect(status().isOk())
+               .andExpect(maxStatements(3));
+
+        assertThat(overBudget("/api/session/{id}")).isEqualTo(before + 1);
+    }
+
+    @Test
+    @DisplayName("loading the principal of a JWT request is counted apart from the endpoint budget")
+    void request_principalCacheMiss_shouldBeCountedApart() throws Exception {
+        User user = userRepository.save(User.builder()
+                                            .email("budget-" + System.nanoTime() + "@example.com")
+                                            .firstName("Bud")
+                                            .lastName("Get")
+                                            .password("password")
+                                            .admin(false)
+                                            .build());
+        UserDetailsImpl principal = UserDetailsImpl.builder().id(user.getId()).username(user.getEmail()).build();
+        String bearer = "Bearer " + jwtUtils.generateJwtToken(new UsernamePasswordAuthenticationToken(principal, null));
+        double before = overBudget("/api/session");
+
+        try {
+            mockMvc.perform(get("/api/session").header(HttpHeaders.AUTHORIZATION, bearer))
+                   .andExpect(status().isOk())
+                   .andExpect(statements(3))
+                   .andExpect(authenticationStatements(1));
+            mockMvc.perform(get("/api/session").header(HttpHeaders.AUTHORIZATION, bearer))
+                   .andExpect(status().isOk())
+                   .andExpect(statements(3))
+                   .andExpect(authenticationStatements(0));
+        } finally {
+            userRepository.delete(user);
+        }
+
+        assertThat(overBudget("/api/session")).isEqualTo(before);
+    }
+
+    @Test
+    @DisplayName("the statement repeated the most is reported")
+    void stats_shouldReportMostRepeatedStatement() {
+        StatementStats stats = StatementStats.start();
+        jdbcTemplate.queryForObject("select count(*) from SESSIONS", Long.class);
+        for (int i = 0; i < 5; i++) {
+            jdbcTemplate.queryForObject(TEACHER_BY_ID, Long.class, teacher.getId());
+        }
+        StatementStats.stop();
+
+        assertThat(stats.getStatements()).isEqualTo(6);
+        assertThat(stats.getRows()).isEqualTo(6);
+        assertThat(stats.getMostRepeatedStatement()).isEqualTo(TEACHER_BY_ID);
+        assertThat(stats.getExecutions(TEACHER_BY_ID)).isEqualTo(5);
+    }
+
+    @Test
+    @DisplayName("statements outside a request are not counted")
+    void statements_outsideRequest_shouldNotBeCounted() {
+        StatementStats stats = StatementStats.start();
+        StatementStats.stop();
+
+        jdbcTemplate.queryForObject("select count(*) from SESSIONS", Long.class);
+
+        assertThat(StatementStats.current()).isNull();
+        assertThat(stats.getStatements()).isZero();
+    }
+
+    private double overBudget(String uri) {
+        Counter counter = meterRegistry.find(SqlBudgetFilter.METRIC_PREFIX + ".budget.exceeded")
+                                       .tags("method", "GET", "uri", uri)
+                                       .counter();
+        return counter != null ? counter.count() : 0;
+    }
+}
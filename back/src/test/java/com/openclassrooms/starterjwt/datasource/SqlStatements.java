@@ -0,0 +1,46 @@
+package com.openclassrooms.starterjwt.datasource;
+
+import org.springframework.test.web.servlet.ResultMatcher;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * MockMvc matchers on the SQL run by a request, as counted by {@link SqlBudgetFilter}. Like the budgets, the statement
+ * counts leave out the loading of the principal, which {@link #authenticationStatements} checks.
+ */
+public final class SqlStatements {
+
+    private SqlStatements() {
+    }
+
+    public static ResultMatcher maxStatements(int max) {
+        return result -> {
+            StatementStats stats = statsOf(result.getRequest().getAttribute(StatementStats.REQUEST_ATTRIBUTE));
+            assertThat(stats.getEndpointStatements()).as("SQL statements of the request: %s", stats).isLessThanOrEqualTo(max);
+        };
+    }
+
+    public static ResultMatcher statements(int expected) {
+        return result -> {
+            StatementStats stats = statsOf(result.getRequest().getAttribute(StatementStats.REQUEST_ATTRIBUTE));
+            assertThat(stats.getEndpointStatements()).as("SQL statements of the request: %s", stats).isEqualTo(expected);
+        };
+    }
+
+    /**
+     * Statements loading the principal of a JWT request: one on a principal cache miss, none on a hit or with
+     * {@code @WithMockUser}.
+     */
+    public static ResultMatcher authenticationStatements(int expected) {
+        return result -> {
+            StatementStats stats = statsOf(result.getRequest().getAttribute(StatementStats.REQUEST_ATTRIBUTE));
+            assertThat(stats.getAuthenticationStatements()).as("SQL statements loading the principal: %s", stats)
+                                                           .isEqualTo(expected);
+        };
+    }
+
+    private static StatementStats statsOf(Object attribute) {
+        assertThat(attribute).as("statement statistics, is SqlBudgetFilter enabled?").isInstanceOf(StatementStats.class);
+        return (StatementStats) attribute;
+    }
+}
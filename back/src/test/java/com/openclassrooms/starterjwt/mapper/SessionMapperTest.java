@@ -1,6 +1,7 @@
 package com.openclassrooms.starterjwt.mapper;
 
 import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.exception.BadRequestException;
 import com.openclassrooms.starterjwt.models.Session;
 import com.openclassrooms.starterjwt.models.Teacher;
 import com.openclassrooms.starterjwt.models.User;
@@ -15,12 +16,15 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -45,14 +49,13 @@ class SessionMapperTest {
     @DisplayName("toEntity maps dto to entity with teacher and users")
     void toEntity_shouldMapAllFields() {
         Date date = new Date();
-        SessionDto dto = new SessionDto(1L, "Morning flow", date, 42L, "Relax", Arrays.asList(10L, 11L), null, null);
+        SessionDto dto = new SessionDto(1L, "Morning flow", date, 42L, "Relax", Arrays.asList(10L, 11L), 20, null, null);
         Teacher teacher = Teacher.builder().id(42L).firstName("John").lastName("Doe").build();
         User userA = User.builder().id(10L).email("a@example.com").firstName("A").lastName("User").password("pwd").admin(false).build();
         User userB = User.builder().id(11L).email("b@example.com").firstName("B").lastName("User").password("pwd").admin(false).build();
 
         when(teacherService.findById(42L)).thenReturn(teacher);
-        when(userService.findById(10L)).thenReturn(userA);
-        when(userService.findById(11L)).thenReturn(userB);
+        when(userService.findAllById(Arrays.asList(10L, 11L))).thenReturn(Arrays.asList(userA, userB));
 
         Session entity = mapper.toEntity(dto);
 
@@ -61,6 +64,16 @@ class SessionMapperTest {
         assertThat(entity.getDescription()).isEqualTo("Relax");
         assertThat(entity.getTeacher()).isEqualTo(teacher);
         assertThat(entity.getUsers()).containsExactly(userA, userB);
+        assertThat(entity.getCapacity()).isEqualTo(20);
+    }
+
+    @Test
+    @DisplayName("toEntity rejects an unknown teacher")
+    void toEntity_shouldRejectUnknownTeacher() {
+        SessionDto dto = new SessionDto(1L, "Morning flow", new Date(), 42L, "Relax", null, null, null, null);
+        when(teacherService.findById(42L)).thenReturn(null);
+
+        assertThrows(BadRequestException.class, () -> mapper.toEntity(dto));
     }
 
     @Test
@@ -89,6 +102,22 @@ class SessionMapperTest {
         assertThat(dto.getUsers()).containsExactly(1L, 2L);
     }
 
+    @Test
+    @DisplayName("toDto with participant ids leaves the users collection untouched")
+    void toDto_withParticipantIds_shouldNotReadUsers() {
+        Teacher teacher = Teacher.builder().id(7L).firstName("Jane").lastName("Doe").build();
+        Session first = Session.builder().id(1L).name("First").teacher(teacher).build();
+        Session second = Session.builder().id(2L).name("Second").build();
+
+        List<SessionDto> dtos = mapper.toDto(List.of(first, second), Map.of(1L, List.of(10L, 11L)));
+
+        assertThat(dtos).extracting(SessionDto::getId).containsExactly(1L, 2L);
+        assertThat(dtos.get(0).getTeacher_id()).isEqualTo(7L);
+        assertThat(dtos.get(0).getUsers()).containsExactly(10L, 11L);
+        assertThat(dtos.get(1).getUsers()).isEmpty();
+        assertThat(mapper.toDto((Session) null, List.of(1L))).isNull();
+    }
+
     @Test
     @DisplayName("toEntity handles null collections and teacher")
     void toEntity_shouldHandleNullCollections() {
@@ -96,6 +125,7 @@ class SessionMapperTest {
         dto.setName("Solo");
         dto.setDescription("Desc");
         dto.setDate(new Date());
+        when(userService.findAllById(Collections.emptyList())).thenReturn(new ArrayList<>());
 
         Session entity = mapper.toEntity(dto);
 
@@ -107,7 +137,7 @@ class SessionMapperTest {
     @DisplayName("list helpers delegate to the single mapping methods")
     void listHelpers_shouldMapCollections() {
         Date date = new Date();
-        SessionDto dto = new SessionDto(1L, "Morning flow", date, null, "Relax", null, null, null);
+        SessionDto dto = new SessionDto(1L, "Morning flow", date, null, "Relax", null, null, null, null);
         Session session = Session.builder()
                 .id(9L)
                 .name("Focus")
@@ -116,6 +146,8 @@ class SessionMapperTest {
                 .users(List.of())
                 .build();
 
+        when(userService.findAllById(Collections.emptyList())).thenReturn(new ArrayList<>());
+
         List<Session> entities = mapper.toEntity(List.of(dto));
         List<SessionDto> dtos = mapper.toDto(List.of(session));
 
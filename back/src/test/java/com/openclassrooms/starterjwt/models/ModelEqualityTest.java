@@ -90,7 +90,7 @@ class ModelEqualityTest {
         User user = new User(6L, "m@yoga.com", "Last", "First", "pwd", false, created, created);
         Date date = new Date();
 
-        Session session = new Session(20L, "Name", date, "Desc", teacher, Collections.singletonList(user), created, created);
+        Session session = new Session(20L, "Name", date, "Desc", teacher, Collections.singletonList(user), 10, 1, created, created);
 
         assertThat(session.getId()).isEqualTo(20L);
         assertThat(session.getTeacher()).isEqualTo(teacher);
@@ -0,0 +1,82 @@
+package com.openclassrooms.starterjwt.repository;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Upgrades a database created by the legacy {@code script.sql}, which has the V1 tables and data but no Flyway
+ * history, the way the application does at startup.
+ */
+@DisplayName("Migrations of a legacy database")
+class MigrationUpgradeTest {
+    private static final String URL = "jdbc:h2:mem:yoga-app-legacy;MODE=MYSQL;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE";
+
+    private DriverManagerDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void createLegacyDatabase() {
+        dataSource = new DriverManagerDataSource(URL, "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("DROP ALL OBJECTS");
+
+        Flyway.configure().dataSource(dataSource).target("1").load().migrate();
+        jdbcTemplate.execute("DROP TABLE \"flyway_schema_history\"");
+        jdbcTemplate.update("INSERT INTO TEACHERS (first_name, last_name) VALUES ('Margot', 'DELAHAYE'), ('Hélène', 'THIERCELIN')");
+        jdbcTemplate.update("INSERT INTO USERS (first_name, last_name, admin, email, password)"
+                + " VALUES ('Admin', 'Admin', true, 'yoga@studio.com', 'hash'), ('Jane', 'Doe', false, 'jane@example.com', 'hash')");
+        jdbcTemplate.update("INSERT INTO SESSIONS (name, description, `date`, teacher_id) VALUES ('Vinyasa', 'Flow', '2024-01-10 10:00:00', 1)");
+        jdbcTemplate.update("INSERT INTO PARTICIPATE (user_id, session_id) VALUES (1, 1), (2, 1), (2, 1), (NULL, 1)");
+    }
+
+    private void migrate() {
+        Flyway.configure()
+              .dataSource(dataSource)
+              .locations("classpath:db/migration", "classpath:db/seed")
+              .baselineOnMigrate(true)
+              .baselineVersion("1")
+              .load()
+              .migrate();
+    }
+
+    @Test
+    @DisplayName("the legacy data survives the upgrade without being seeded twice")
+    void migrate_shouldKeepLegacyData() {
+        migrate();
+
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM TEACHERS", Integer.class)).isEqualTo(2);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM USERS WHERE email = 'yoga@studio.com'", Integer.class)).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM REVOKED_USERS", Integer.class)).isZero();
+    }
+
+    @Test
+    @DisplayName("participations are deduplicated, keyed and counted into booked")
+    void migrate_shouldKeyParticipations() {
+        migrate();
+
+        assertThat(jdbcTemplate.queryForList("SELECT user_id FROM PARTICIPATE ORDER BY user_id", Long.class)).containsExactly(1L, 2L);
+        assertThat(jdbcTemplate.queryForObject("SELECT booked FROM SESSIONS WHERE id = 1", Integer.class)).isEqualTo(2);
+        assertThat(jdbcTemplate.queryForObject("SELECT capacity FROM SESSIONS WHERE id = 1", Integer.class)).isNull();
+        assertThatThrownBy(() -> jdbcTemplate.update("INSERT INTO PARTICIPATE (user_id, session_id) VALUES (1, 1)"))
+                .isInstanceOf(DuplicateKeyException.class);
+    }
+
+    @Test
+    @DisplayName("identifiers hold values beyond the INT range")
+    void migrate_shouldWidenIdentifiers() {
+        migrate();
+
+        jdbcTemplate.update("INSERT INTO USERS (id, email, password) VALUES (3000000000, 'big@example.com', 'hash')");
+        jdbcTemplate.update("INSERT INTO PARTICIPATE (user_id, session_id) VALUES (3000000000, 1)");
+
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM PARTICIPATE WHERE user_id = 3000000000", Integer.class)).isEqualTo(1);
+    }
+}
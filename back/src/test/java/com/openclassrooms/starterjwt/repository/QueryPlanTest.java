@@ -0,0 +1,156 @@
+package com.openclassrooms.starterjwt.repository;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs {@code EXPLAIN} on the SQL Hibernate generates for the hot query paths, so that a schema or query change
+ * dropping one of their indexes fails here instead of turning into a full scan in production.
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+        + "com.openclassrooms.starterjwt.repository.QueryPlanTest$RecordingInspector")
+@DisplayName("Query plans")
+class QueryPlanTest {
+    private static final int ROWS = 200;
+
+    private static final Date AFTER = Timestamp.valueOf("2024-01-10 00:00:00");
+    private static final Date BEFORE = Timestamp.valueOf("2024-01-12 00:00:00");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private SessionRepository sessionRepository;
+
+    @Autowired
+    private ParticipationRepository participationRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    /**
+     * Keeps the SQL of every statement Hibernate prepares.
+     */
+    public static class RecordingInspector implements StatementInspector {
+        static final List<String> STATEMENTS = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public String inspect(String sql) {
+            STATEMENTS.add(sql);
+            return sql;
+        }
+    }
+
+    @BeforeEach
+    void setup() {
+        tearDown();
+
+        jdbcTemplate.update("INSERT INTO TEACHERS (id, first_name, last_name) VALUES (1, 'Margot', 'Delahaye'), (2, 'Hélène', 'Thiercelin')");
+        List<Object[]> sessions = new ArrayList<>();
+        List<Object[]> users = new ArrayList<>();
+        List<Object[]> participations = new ArrayList<>();
+        for (int i = 1; i <= ROWS; i++) {
+            sessions.add(new Object[]{i, "Session " + i, "2024-01-" + String.format("%02d", 1 + i % 28) + " 10:00:00", 1 + i % 2});
+            users.add(new Object[]{i, "user" + i + "@example.com"});
+            participations.add(new Object[]{1 + i % ROWS, i});
+            participations.add(new Object[]{1 + (i + 1) % ROWS, i});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO SESSIONS (id, name, description, `date`, teacher_id) VALUES (?, ?, 'Yoga', ?, ?)", sessions);
+        jdbcTemplate.batchUpdate("INSERT INTO USERS (id, email, first_name, last_name, password) VALUES (?, ?, 'Jane', 'Doe', 'pwd')", users);
+        jdbcTemplate.batchUpdate("INSERT INTO PARTICIPATE (session_id, user_id) VALUES (?, ?)", participations);
+        jdbcTemplate.execute("ANALYZE");
+        RecordingInspector.STATEMENTS.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM PARTICIPATE");
+        jdbcTemplate.update("DELETE FROM SESSIONS");
+        jdbcTemplate.update("DELETE FROM USERS");
+        jdbcTemplate.update("DELETE FROM TEACHERS");
+    }
+
+    /**
+     * Explains the single statement recorded since the last call; its parameters are left unbound, so the plan is
+     * the one chosen at prepare time.
+     */
+    private String explainRecorded() {
+        assertThat(RecordingInspector.STATEMENTS).as("statements generated by Hibernate").hasSize(1);
+        String sql = RecordingInspector.STATEMENTS.remove(0);
+        String plan = String.join("\n", jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement("EXPLAIN " + sql);
+            for (int i = 1; i <= statement.getParameterMetaData().getParameterCount(); i++) {
+                statement.setObject(i, null);
+            }
+            return statement;
+        }, (ResultSet rs, int row) -> rs.getString(1)));
+        assertThat(plan).as(plan).doesNotContainIgnoringCase("tableScan");
+        return plan.toUpperCase();
+    }
+
+    @Test
+    @DisplayName("session pages by date range should seek on idx_sessions_date")
+    void sessionPage_shouldUseDateIndex() {
+        sessionRepository.findPage(AFTER, 0L, BEFORE, PageRequest.of(0, 20));
+
+        assertThat(explainRecorded()).contains("IDX_SESSIONS_DATE");
+    }
+
+    @Test
+    @DisplayName("session pages of a teacher should seek on idx_sessions_teacher_date")
+    void teacherSessionPage_shouldUseTeacherIndex() {
+        sessionRepository.findPageByTeacher(1L, AFTER, 0L, BEFORE, PageRequest.of(0, 20));
+
+        assertThat(explainRecorded()).contains("IDX_SESSIONS_TEACHER_DATE");
+    }
+
+    @Test
+    @DisplayName("sessions of a user should seek on idx_participate_user")
+    void userSessions_shouldUseReverseParticipationIndex() {
+        sessionRepository.findUpcomingPageByUser(7L, AFTER, 0L, PageRequest.of(0, 20));
+
+        assertThat(explainRecorded()).contains("IDX_PARTICIPATE_USER");
+    }
+
+    @Test
+    @DisplayName("participants of sessions should seek on the PARTICIPATE primary key")
+    void sessionParticipants_shouldUsePrimaryKey() {
+        participationRepository.findUserIds(Arrays.asList(3L, 4L, 5L));
+
+        assertThat(explainRecorded()).contains("PRIMARY_KEY");
+    }
+
+    @Test
+    @DisplayName("the session list change stamp should read idx_sessions_updated_at")
+    void sessionChangeStamp_shouldUseUpdatedAtIndex() {
+        sessionRepository.findChangeStamp();
+
+        assertThat(explainRecorded()).contains("IDX_SESSIONS_UPDATED_AT");
+    }
+
+    @Test
+    @DisplayName("user lookups by email should seek on uq_users_email")
+    void userByEmail_shouldUseEmailIndex() {
+        userRepository.findByEmail("user7@example.com");
+
+        assertThat(explainRecorded()).contains("UQ_USERS_EMAIL");
+    }
+}
@@ -1,6 +1,11 @@
 package com.openclassrooms.starterjwt.security.jwt;
 
+import com.openclassrooms.starterjwt.repository.RevokedUserRepository;
+import com.openclassrooms.starterjwt.security.services.UserDetailsCache;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
 import com.openclassrooms.starterjwt.security.services.UserDetailsServiceImpl;
+import io.jsonwebtoken.impl.DefaultClaims;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -15,8 +20,10 @@ import javax.servlet.FilterChain;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.util.Collections;
+import java.util.Date;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
@@ -44,11 +51,19 @@ class AuthTokenFilterTest {
     @Mock
     private UserDetails userDetails;
 
+    @Mock
+    private RevokedUserRepository revokedUserRepository;
+
+    private TokenRevocations tokenRevocations;
+
     @BeforeEach
     void setUp() {
         filter = new AuthTokenFilter();
         ReflectionTestUtils.setField(filter, "jwtUtils", jwtUtils);
         ReflectionTestUtils.setField(filter, "userDetailsService", userDetailsService);
+        ReflectionTestUtils.setField(filter, "userDetailsCache", new UserDetailsCache(60_000, 100, new SimpleMeterRegistry()));
+        tokenRevocations = new TokenRevocations(60_000, revokedUserRepository);
+        ReflectionTestUtils.setField(filter, "tokenRevocations", tokenRevocations);
         SecurityContextHolder.clearContext();
     }
 
@@ -56,8 +71,7 @@ class AuthTokenFilterTest {
     @DisplayName("doFilterInternal sets authentication when token is valid")
     void doFilterInternal_shouldSetAuthentication() throws Exception {
         when(request.getHeader("Authorization")).thenReturn("Bearer token-value");
-        when(jwtUtils.validateJwtToken("token-value")).thenReturn(true);
-        when(jwtUtils.getUserNameFromJwtToken("token-value")).thenReturn("user@example.com");
+        when(jwtUtils.verifyJwtToken("token-value")).thenReturn(new DefaultClaims().setSubject("user@example.com"));
         when(userDetailsService.loadUserByUsername("user@example.com")).thenReturn(userDetails);
         when(userDetails.getAuthorities()).thenReturn(Collections.emptyList());
 
@@ -68,6 +82,55 @@ class AuthTokenFilterTest {
         assertThat(SecurityContextHolder.getContext().getAuthentication().getPrincipal()).isEqualTo(userDetails);
     }
 
+    @Test
+    @DisplayName("doFilterInternal reuses the cached principal on the next request")
+    void doFilterInternal_shouldLoadPrincipalOnce() throws Exception {
+        when(request.getHeader("Authorization")).thenReturn("Bearer token-value");
+        when(jwtUtils.verifyJwtToken("token-value")).thenReturn(new DefaultClaims().setSubject("user@example.com"));
+        when(userDetailsService.loadUserByUsername("user@example.com")).thenReturn(userDetails);
+        when(userDetails.getAuthorities()).thenReturn(Collections.emptyList());
+
+        filter.doFilterInternal(request, response, filterChain);
+        SecurityContextHolder.clearContext();
+        filter.doFilterInternal(request, response, filterChain);
+
+        verify(userDetailsService, times(1)).loadUserByUsername("user@example.com");
+        assertThat(SecurityContextHolder.getContext().getAuthentication().getPrincipal()).isEqualTo(userDetails);
+    }
+
+    @Test
+    @DisplayName("doFilterInternal builds the principal from the claims in stateless mode")
+    void doFilterInternal_shouldUseClaimsWhenStateless() throws Exception {
+        ReflectionTestUtils.setField(filter, "stateless", true);
+        DefaultClaims claims = new DefaultClaims();
+        UserDetailsImpl principal = UserDetailsImpl.builder().id(5L).username("user@example.com").build();
+        when(request.getHeader("Authorization")).thenReturn("Bearer token-value");
+        when(jwtUtils.verifyJwtToken("token-value")).thenReturn(claims);
+        when(jwtUtils.getPrincipalFromClaims(claims)).thenReturn(principal);
+
+        filter.doFilterInternal(request, response, filterChain);
+
+        verifyNoInteractions(userDetailsService);
+        assertThat(SecurityContextHolder.getContext().getAuthentication().getPrincipal()).isEqualTo(principal);
+    }
+
+    @Test
+    @DisplayName("doFilterInternal rejects a token issued before the user was revoked")
+    void doFilterInternal_shouldRejectRevokedToken() throws Exception {
+        DefaultClaims claims = new DefaultClaims();
+        claims.put("id", 5L);
+        claims.setIssuedAt(new Date(System.currentTimeMillis() - 5000));
+        tokenRevocations.revokeUser(5L);
+        when(request.getHeader("Authorization")).thenReturn("Bearer token-value");
+        when(jwtUtils.verifyJwtToken("token-value")).thenReturn(claims);
+
+        filter.doFilterInternal(request, response, filterChain);
+
+        verifyNoInteractions(userDetailsService);
+        verify(filterChain).doFilter(request, response);
+        assertThat(SecurityContextHolder.getContext().getAuthentication()).isNull();
+    }
+
     @Test
     @DisplayName("doFilterInternal leaves context untouched when header missing")
     void doFilterInternal_shouldSkipWhenHeaderMissing() throws Exception {
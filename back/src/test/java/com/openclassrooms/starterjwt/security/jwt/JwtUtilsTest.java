@@ -1,24 +1,31 @@
 package com.openclassrooms.starterjwt.security.jwt;
 
 import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
-import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Date;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
 class JwtUtilsTest {
+    private static final String SECRET = "testSecretKeyForJwtUtils1234567890";
+
+    private SimpleMeterRegistry meterRegistry;
 
     private JwtUtils jwtUtils;
 
     @BeforeEach
     void setUp() {
-        jwtUtils = new JwtUtils();
-        ReflectionTestUtils.setField(jwtUtils, "jwtSecret", "testSecretKeyForJwtUtils1234567890");
-        ReflectionTestUtils.setField(jwtUtils, "jwtExpirationMs", 3600000);
+        meterRegistry = new SimpleMeterRegistry();
+        jwtUtils = new JwtUtils(JwtKeys.hmac(SECRET), 3600000, 100, meterRegistry);
     }
 
     @Test
@@ -43,14 +50,33 @@ class JwtUtilsTest {
         boolean result = jwtUtils.validateJwtToken("invalid.token.value");
 
         assertThat(result).isFalse();
+        assertThat(verifications("rejected")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("verifyJwtToken times full checks apart from cached tokens")
+    void verifyJwtToken_shouldTimeVerifiedAndCachedTokens() {
+        UserDetailsImpl principal = UserDetailsImpl.builder()
+                .id(4L)
+                .username("timed@example.com")
+                .password("pwd")
+                .build();
+        String token = jwtUtils.generateJwtToken(
+                new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities()));
+
+        jwtUtils.verifyJwtToken(token);
+        jwtUtils.verifyJwtToken(token);
+        jwtUtils.verifyJwtToken(token);
+
+        assertThat(verifications("verified")).isEqualTo(1);
+        assertThat(verifications("cached")).isEqualTo(2);
+        assertThat(verifications("rejected")).isZero();
     }
 
     @Test
     @DisplayName("validateJwtToken returns false when signature differs")
     void validateJwtToken_shouldReturnFalseForBadSignature() {
-        JwtUtils otherSigner = new JwtUtils();
-        ReflectionTestUtils.setField(otherSigner, "jwtSecret", "anotherSecretKey12345678901");
-        ReflectionTestUtils.setField(otherSigner, "jwtExpirationMs", 3600000);
+        JwtUtils otherSigner = new JwtUtils(JwtKeys.hmac("anotherSecretKey12345678901"), 3600000, 100, new SimpleMeterRegistry());
         UserDetailsImpl principal = UserDetailsImpl.builder()
                 .id(3L)
                 .username("signed@example.com")
@@ -72,9 +98,7 @@ class JwtUtilsTest {
     @Test
     @DisplayName("validateJwtToken returns false when token is expired")
     void validateJwtToken_shouldReturnFalseWhenExpired() {
-        JwtUtils expiredJwtUtils = new JwtUtils();
-        ReflectionTestUtils.setField(expiredJwtUtils, "jwtSecret", "testSecretKeyForJwtUtils1234567890");
-        ReflectionTestUtils.setField(expiredJwtUtils, "jwtExpirationMs", -1000);
+        JwtUtils expiredJwtUtils = new JwtUtils(JwtKeys.hmac(SECRET), -1000, 100, new SimpleMeterRegistry());
         UserDetailsImpl principal = UserDetailsImpl.builder()
                 .id(2L)
                 .username("expired@example.com")
@@ -86,4 +110,99 @@ class JwtUtilsTest {
 
         assertThat(expiredJwtUtils.validateJwtToken(token)).isFalse();
     }
+
+    private String tokenFor(JwtUtils signer, String username) {
+        UserDetailsImpl principal = UserDetailsImpl.builder()
+                .id(4L)
+                .username(username)
+                .password("pwd")
+                .build();
+        return signer.generateJwtToken(new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities()));
+    }
+
+    @Test
+    @DisplayName("verifyJwtToken returns the claims and serves repeated checks from the cache")
+    void verifyJwtToken_shouldReturnCachedClaims() {
+        String token = tokenFor(jwtUtils, "user@example.com");
+
+        Claims first = jwtUtils.verifyJwtToken(token);
+        Claims second = jwtUtils.verifyJwtToken(token);
+
+        assertThat(first.getSubject()).isEqualTo("user@example.com");
+        assertThat(second).isSameAs(first);
+    }
+
+    @Test
+    @DisplayName("verifyJwtToken accepts tokens signed with the raw secret string")
+    void verifyJwtToken_shouldAcceptLegacySignedTokens() {
+        String token = Jwts.builder()
+                .setSubject("legacy@example.com")
+                .setExpiration(new Date(System.currentTimeMillis() + 60000))
+                .signWith(SignatureAlgorithm.HS512, SECRET)
+                .compact();
+
+        assertThat(jwtUtils.verifyJwtToken(token).getSubject()).isEqualTo("legacy@example.com");
+    }
+
+    @Test
+    @DisplayName("verifyJwtToken stops accepting a cached token once it expires")
+    void verifyJwtToken_shouldNotServeExpiredTokenFromCache() throws InterruptedException {
+        JwtUtils shortLived = new JwtUtils(JwtKeys.hmac(SECRET), 1000, 100, new SimpleMeterRegistry());
+        String token = tokenFor(shortLived, "brief@example.com");
+        assertThat(shortLived.verifyJwtToken(token)).isNotNull();
+
+        Thread.sleep(1200);
+
+        assertThat(shortLived.verifyJwtToken(token)).isNull();
+    }
+
+    @Test
+    @DisplayName("verifyJwtToken does not cache rejected tokens")
+    void verifyJwtToken_shouldRejectTamperedToken() {
+        String token = tokenFor(jwtUtils, "user@example.com");
+        assertThat(jwtUtils.verifyJwtToken(token)).isNotNull();
+
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("AA") ? "BB" : "AA");
+
+        assertThat(jwtUtils.verifyJwtToken(tampered)).isNull();
+    }
+
+    @Test
+    @DisplayName("getPrincipalFromClaims rebuilds the principal from the identity claims")
+    void getPrincipalFromClaims_shouldRestoreIdentity() {
+        UserDetailsImpl principal = UserDetailsImpl.builder()
+                .id(8L)
+                .username("admin@example.com")
+                .firstName("Ada")
+                .lastName("Admin")
+                .admin(true)
+                .password("pwd")
+                .build();
+        String token = jwtUtils.generateJwtToken(new UsernamePasswordAuthenticationToken(principal, null));
+
+        UserDetailsImpl restored = jwtUtils.getPrincipalFromClaims(jwtUtils.verifyJwtToken(token));
+
+        assertThat(restored.getId()).isEqualTo(8L);
+        assertThat(restored.getUsername()).isEqualTo("admin@example.com");
+        assertThat(restored.getFirstName()).isEqualTo("Ada");
+        assertThat(restored.getLastName()).isEqualTo("Admin");
+        assertThat(restored.getAdmin()).isTrue();
+        assertThat(restored.getPassword()).isNull();
+    }
+
+    @Test
+    @DisplayName("getPrincipalFromClaims returns null for tokens without identity claims")
+    void getPrincipalFromClaims_shouldReturnNullForLegacyToken() {
+        String token = Jwts.builder()
+                .setSubject("legacy@example.com")
+                .setExpiration(new Date(System.currentTimeMillis() + 60000))
+                .signWith(SignatureAlgorithm.HS512, SECRET)
+                .compact();
+
+        assertThat(jwtUtils.getPrincipalFromClaims(jwtUtils.verifyJwtToken(token))).isNull();
+    }
+
+    private long verifications(String result) {
+        return meterRegistry.get(JwtUtils.METRIC_NAME).tag("result", result).timer().count();
+    }
 }
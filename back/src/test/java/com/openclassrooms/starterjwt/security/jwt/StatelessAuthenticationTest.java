@@ -0,0 +1,94 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "oc.app.jwtStateless=true")
+@AutoConfigureMockMvc
+@DisplayName("Stateless JWT authentication")
+class StatelessAuthenticationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JwtUtils jwtUtils;
+
+    @SpyBean
+    private UserRepository userRepository;
+
+    private User user;
+    private String bearer;
+
+    @BeforeEach
+    void setup() {
+        userRepository.deleteAll();
+        user = userRepository.save(User.builder()
+                                       .email("stateless@example.com")
+                                       .firstName("Sam")
+                                       .lastName("Less")
+                                       .password("password")
+                                       .admin(false)
+                                       .build());
+        UserDetailsImpl principal = UserDetailsImpl.builder()
+                                                   .id(user.getId())
+                                                   .username(user.getEmail())
+                                                   .firstName(user.getFirstName())
+                                                   .lastName(user.getLastName())
+                                                   .admin(false)
+                                                   .build();
+        bearer = "Bearer " + jwtUtils.generateJwtToken(new UsernamePasswordAuthenticationToken(principal, null));
+        Mockito.clearInvocations(userRepository);
+    }
+
+    @AfterEach
+    void tearDown() {
+        userRepository.deleteAll();
+        Mockito.reset(userRepository);
+    }
+
+    @Test
+    @DisplayName("an authenticated request does not load the user")
+    void request_shouldNotLoadUser() throws Exception {
+        mockMvc.perform(get("/api/session").header("Authorization", bearer))
+               .andExpect(status().isOk());
+
+        verify(userRepository, never()).findByEmail(anyString());
+    }
+
+    @Test
+    @DisplayName("tokens issued before a password change are rejected")
+    void request_shouldRejectTokenAfterPasswordChange() throws Exception {
+        userRepository.save(user.setPassword("other-hash"));
+
+        mockMvc.perform(get("/api/session").header("Authorization", bearer))
+               .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    @DisplayName("tokens stay valid after a change of name")
+    void request_shouldAcceptTokenAfterNameChange() throws Exception {
+        userRepository.save(user.setFirstName("Samuel"));
+
+        mockMvc.perform(get("/api/session").header("Authorization", bearer))
+               .andExpect(status().isOk());
+    }
+}
@@ -0,0 +1,128 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import com.openclassrooms.starterjwt.models.RevokedUser;
+import com.openclassrooms.starterjwt.repository.RevokedUserRepository;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.impl.DefaultClaims;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.longThat;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class TokenRevocationsTest {
+    private static final long LIFETIME_MS = 3_600_000;
+
+    @Mock
+    private RevokedUserRepository revokedUserRepository;
+
+    private TokenRevocations tokenRevocations;
+
+    @BeforeEach
+    void setUp() {
+        tokenRevocations = new TokenRevocations(LIFETIME_MS, revokedUserRepository);
+    }
+
+    private static Claims claims(long userId, long issuedAtMillis) {
+        DefaultClaims claims = new DefaultClaims();
+        claims.put(JwtUtils.ID_CLAIM, userId);
+        claims.setIssuedAt(new Date(issuedAtMillis));
+        return claims;
+    }
+
+    @Test
+    @DisplayName("revokeUser rejects earlier tokens of that user only and persists the cut-off")
+    void revokeUser_shouldRejectEarlierTokens() {
+        long now = System.currentTimeMillis();
+
+        tokenRevocations.revokeUser(5L);
+
+        assertThat(tokenRevocations.isRevoked(claims(5L, now - 10_000))).isTrue();
+        assertThat(tokenRevocations.isRevoked(claims(5L, now + 10_000))).isFalse();
+        assertThat(tokenRevocations.isRevoked(claims(6L, now - 10_000))).isFalse();
+        verify(revokedUserRepository).upsert(eq(5L), anyLong());
+    }
+
+    @Test
+    @DisplayName("a token issued right after the revocation is accepted, even within the same second")
+    void revokeUser_shouldAcceptTokenIssuedJustAfter() throws Exception {
+        tokenRevocations.revokeUser(5L);
+        Thread.sleep(2);
+        Claims reissued = claims(5L, System.currentTimeMillis());
+        reissued.put(JwtUtils.ISSUED_AT_MS_CLAIM, System.currentTimeMillis());
+        Claims before = claims(5L, System.currentTimeMillis());
+        before.put(JwtUtils.ISSUED_AT_MS_CLAIM, System.currentTimeMillis() - 1_000);
+
+        assertThat(tokenRevocations.isRevoked(reissued)).isFalse();
+        assertThat(tokenRevocations.isRevoked(before)).isTrue();
+    }
+
+    @Test
+    @DisplayName("revokeUser only applies the cut-off once the transaction commits")
+    void revokeUser_shouldWaitForCommit() {
+        long now = System.currentTimeMillis();
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            tokenRevocations.revokeUser(5L);
+
+            assertThat(tokenRevocations.isRevoked(claims(5L, now - 10_000))).isFalse();
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(tokenRevocations.isRevoked(claims(5L, now - 10_000))).isTrue();
+    }
+
+    @Test
+    @DisplayName("load restores persisted cut-offs after purging the expired ones")
+    void load_shouldRestorePersistedCutOffs() {
+        long now = System.currentTimeMillis();
+        when(revokedUserRepository.findAll()).thenReturn(List.of(new RevokedUser(7L, now)));
+
+        tokenRevocations.load();
+
+        verify(revokedUserRepository).deleteRevokedBefore(longThat(limit -> limit >= now - LIFETIME_MS && limit <= System.currentTimeMillis() - LIFETIME_MS));
+        assertThat(tokenRevocations.isRevoked(claims(7L, System.currentTimeMillis() - 60_000))).isTrue();
+    }
+
+    @Test
+    @DisplayName("cut-offs older than a token lifetime are dropped")
+    void isRevoked_shouldIgnoreExpiredCutOff() {
+        long longAgo = System.currentTimeMillis() - 2 * LIFETIME_MS;
+        when(revokedUserRepository.findAll()).thenReturn(List.of(new RevokedUser(8L, longAgo)));
+        tokenRevocations.load();
+
+        assertThat(tokenRevocations.isRevoked(claims(8L, System.currentTimeMillis() - 3 * LIFETIME_MS))).isFalse();
+    }
+
+    @Test
+    @DisplayName("the bloom filter never misses a revoked user")
+    void bloomFilter_shouldHaveNoFalseNegatives() {
+        CountingBloomFilter filter = new CountingBloomFilter(10);
+        for (long id = 0; id < 300; id++) {
+            filter.add(id);
+        }
+        filter.remove(0);
+
+        for (long id = 1; id < 300; id++) {
+            assertThat(filter.mightContain(id)).isTrue();
+        }
+        assertThat(new CountingBloomFilter(10).mightContain(42)).isFalse();
+    }
+}
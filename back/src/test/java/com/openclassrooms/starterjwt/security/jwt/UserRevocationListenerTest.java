@@ -0,0 +1,90 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.impl.DefaultClaims;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Date;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class UserRevocationListenerTest {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TokenRevocations tokenRevocations;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private Long userId;
+
+    @BeforeEach
+    void setUp() {
+        userId = userRepository.save(User.builder()
+                .email("revocation-" + System.nanoTime() + "@example.com")
+                .firstName("Ada")
+                .lastName("Lovelace")
+                .password("hash")
+                .admin(false)
+                .build()).getId();
+    }
+
+    private Claims issuedBefore() {
+        Claims claims = new DefaultClaims().setIssuedAt(new Date(System.currentTimeMillis() - 1_000));
+        claims.put(JwtUtils.ID_CLAIM, userId);
+        return claims;
+    }
+
+    private void update(Consumer<User> change) {
+        transactionTemplate.executeWithoutResult(status ->
+                change.accept(userRepository.findById(userId).orElseThrow(IllegalStateException::new)));
+    }
+
+    @Test
+    @DisplayName("a new name leaves the tokens of the user valid")
+    void nameChange_shouldNotRevoke() {
+        update(user -> user.setFirstName("Augusta"));
+
+        assertThat(tokenRevocations.isRevoked(issuedBefore())).isFalse();
+    }
+
+    @Test
+    @DisplayName("a new password revokes the tokens of the user")
+    void passwordChange_shouldRevoke() {
+        update(user -> user.setPassword("other-hash"));
+
+        assertThat(tokenRevocations.isRevoked(issuedBefore())).isTrue();
+    }
+
+    @Test
+    @DisplayName("a rolled back admin change revokes nothing")
+    void rolledBackChange_shouldNotRevoke() {
+        transactionTemplate.executeWithoutResult(status -> {
+            userRepository.findById(userId).orElseThrow(IllegalStateException::new).setAdmin(true);
+            userRepository.flush();
+            status.setRollbackOnly();
+        });
+
+        assertThat(tokenRevocations.isRevoked(issuedBefore())).isFalse();
+    }
+
+    @Test
+    @DisplayName("deleting a user revokes its tokens")
+    void delete_shouldRevoke() {
+        userRepository.deleteById(userId);
+
+        assertThat(tokenRevocations.isRevoked(issuedBefore())).isTrue();
+    }
+}
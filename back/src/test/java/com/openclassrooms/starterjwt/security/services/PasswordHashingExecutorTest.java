@@ -0,0 +1,77 @@
+package com.openclassrooms.starterjwt.security.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PasswordHashingExecutorTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private PasswordHashingExecutor executor;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        executor = new PasswordHashingExecutor(1, 1, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.destroy();
+    }
+
+    @Test
+    @DisplayName("submit completes the future with the task result and records its duration")
+    void submit_shouldCompleteFuture() throws Exception {
+        CompletableFuture<String> future = executor.submit(() -> "hash");
+
+        assertThat(future.get(5, TimeUnit.SECONDS)).isEqualTo("hash");
+        assertThat(meterRegistry.get("auth.hashing.duration").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("submit propagates task failures through the future")
+    void submit_shouldCompleteExceptionally() {
+        CompletableFuture<String> future = executor.submit(() -> {
+            throw new IllegalStateException("boom");
+        });
+
+        assertThatThrownBy(() -> future.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    @DisplayName("submit rejects work once the worker and the queue are taken")
+    void submit_shouldRejectWhenSaturated() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Boolean> running = executor.submit(() -> {
+            started.countDown();
+            try {
+                return release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        });
+        started.await(5, TimeUnit.SECONDS);
+        CompletableFuture<String> queued = executor.submit(() -> "queued");
+
+        assertThat(meterRegistry.get("auth.hashing.queue.depth").gauge().value()).isEqualTo(1);
+        assertThatThrownBy(() -> executor.submit(() -> "rejected")).isInstanceOf(RejectedExecutionException.class);
+        assertThat(meterRegistry.get("auth.hashing.rejected").counter().count()).isEqualTo(1);
+
+        release.countDown();
+        assertThat(running.get(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(queued.get(5, TimeUnit.SECONDS)).isEqualTo("queued");
+    }
+}
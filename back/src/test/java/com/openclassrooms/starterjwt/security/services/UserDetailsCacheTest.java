@@ -0,0 +1,69 @@
+package com.openclassrooms.starterjwt.security.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class UserDetailsCacheTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private UserDetailsCache cache;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new UserDetailsCache(60_000, 100, meterRegistry);
+        loads = new AtomicInteger();
+    }
+
+    private UserDetails load(String username) {
+        loads.incrementAndGet();
+        return UserDetailsImpl.builder().id(7L).username(username).password("hash").build();
+    }
+
+    @Test
+    @DisplayName("get loads a principal once and counts hits and misses")
+    void get_shouldCachePrincipal() {
+        UserDetails first = cache.get("user@example.com", this::load);
+        UserDetails second = cache.get("user@example.com", this::load);
+
+        assertThat(second).isSameAs(first);
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(cache.stats().hitCount()).isEqualTo(1);
+        assertThat(cache.stats().missCount()).isEqualTo(1);
+        assertThat(meterRegistry.get("cache.gets").tag("cache", "principals").tag("result", "hit")
+                                .functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("evictUser drops the principal of that user")
+    void evictUser_shouldForcePrincipalReload() {
+        cache.get("user@example.com", this::load);
+
+        cache.evictUser(7L);
+        cache.get("user@example.com", this::load);
+
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("get does not cache unknown users")
+    void get_shouldNotCacheFailures() {
+        assertThatThrownBy(() -> cache.get("ghost@example.com", username -> {
+            throw new UsernameNotFoundException(username);
+        })).isInstanceOf(UsernameNotFoundException.class);
+
+        cache.get("ghost@example.com", this::load);
+
+        assertThat(loads.get()).isEqualTo(1);
+    }
+}
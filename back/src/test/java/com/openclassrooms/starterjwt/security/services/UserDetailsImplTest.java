@@ -2,6 +2,7 @@ package com.openclassrooms.starterjwt.security.services;
 
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.springframework.security.core.GrantedAuthority;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -72,5 +73,7 @@ class UserDetailsImplTest {
                 .build();
 
         assertThat(details.getAdmin()).isTrue();
+        assertThat(details.getAuthorities()).extracting(GrantedAuthority::getAuthority)
+                                            .containsExactly(UserDetailsImpl.ROLE_ADMIN);
     }
 }
@@ -2,12 +2,14 @@ package com.openclassrooms.starterjwt.security.services;
 
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 
@@ -23,11 +25,14 @@ class UserDetailsServiceImplTest {
     @Mock
     private UserRepository userRepository;
 
+    private SimpleMeterRegistry meterRegistry;
+
     private UserDetailsServiceImpl userDetailsService;
 
     @BeforeEach
     void setUp() {
-        userDetailsService = new UserDetailsServiceImpl(userRepository);
+        meterRegistry = new SimpleMeterRegistry();
+        userDetailsService = new UserDetailsServiceImpl(userRepository, meterRegistry);
     }
 
     @Test
@@ -47,6 +52,11 @@ class UserDetailsServiceImplTest {
 
         assertThat(userDetails.getUsername()).isEqualTo("user@example.com");
         assertThat(userDetails.getPassword()).isEqualTo("pwd");
+        assertThat(((UserDetailsImpl) userDetails).getAdmin()).isTrue();
+        assertThat(userDetails.getAuthorities()).extracting(GrantedAuthority::getAuthority)
+                                                .containsExactly("ROLE_ADMIN");
+        assertThat(meterRegistry.get(UserDetailsServiceImpl.METRIC_NAME).tag("result", "found").timer().count())
+                .isEqualTo(1);
     }
 
     @Test
@@ -57,5 +67,7 @@ class UserDetailsServiceImplTest {
         assertThatThrownBy(() -> userDetailsService.loadUserByUsername("absent@example.com"))
                 .isInstanceOf(UsernameNotFoundException.class)
                 .hasMessageContaining("absent@example.com");
+        assertThat(meterRegistry.get(UserDetailsServiceImpl.METRIC_NAME).tag("result", "not_found").timer().count())
+                .isEqualTo(1);
     }
 }
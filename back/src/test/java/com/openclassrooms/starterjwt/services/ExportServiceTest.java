@@ -0,0 +1,53 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.repository.ParticipantExportRow;
+import com.openclassrooms.starterjwt.repository.ParticipationRepository;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.TransactionTimedOutException;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("ExportService")
+class ExportServiceTest {
+    @Mock
+    private SessionRepository sessionRepository;
+
+    @Mock
+    private ParticipationRepository participationRepository;
+
+    @Test
+    @DisplayName("an export running past its maximum duration is aborted and its cursor closed")
+    void exportRosters_shouldAbortPastMaxDuration() {
+        AtomicBoolean closed = new AtomicBoolean();
+        Stream<ParticipantExportRow> rows = Stream.generate(() -> mock(ParticipantExportRow.class))
+                                                  .peek(row -> sleep())
+                                                  .onClose(() -> closed.set(true));
+        when(participationRepository.streamRostersForExport()).thenReturn(rows);
+        ExportService exportService = new ExportService(sessionRepository, participationRepository, 5);
+
+        assertThrows(TransactionTimedOutException.class,
+                     () -> exportService.exportRosters(RowFormat.CSV, new ByteArrayOutputStream()));
+        assertThat(closed).isTrue();
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
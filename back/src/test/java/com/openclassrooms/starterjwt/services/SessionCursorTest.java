@@ -0,0 +1,32 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.models.Session;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SessionCursorTest {
+
+    @Test
+    @DisplayName("encode and decode round trip the keyset position")
+    void encodeDecode_shouldRoundTrip() {
+        Session session = Session.builder().id(12L).date(new Date(1_700_000_000_000L)).build();
+
+        SessionCursor decoded = SessionCursor.decode(SessionCursor.of(session).encode());
+
+        assertThat(decoded.getId()).isEqualTo(12L);
+        assertThat(decoded.getDate()).isEqualTo(session.getDate());
+    }
+
+    @Test
+    @DisplayName("decode rejects tokens it did not produce")
+    void decode_shouldRejectMalformedTokens() {
+        assertThatThrownBy(() -> SessionCursor.decode("%%%")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> SessionCursor.decode("bm9wZQ")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> SessionCursor.decode("YTpi")).isInstanceOf(IllegalArgumentException.class);
+    }
+}
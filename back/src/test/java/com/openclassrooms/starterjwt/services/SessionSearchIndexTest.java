@@ -0,0 +1,137 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.repository.SessionSearchRow;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("SessionSearchIndex")
+class SessionSearchIndexTest {
+    @Mock
+    private SessionRepository sessionRepository;
+
+    private SessionSearchIndex index;
+
+    @BeforeEach
+    void setup() {
+        index = new SessionSearchIndex(sessionRepository, new SimpleMeterRegistry());
+    }
+
+    private static Session session(long id, String name, String description) {
+        return Session.builder().id(id).name(name).description(description).build();
+    }
+
+    private static SessionSearchRow row(long id, String name, String description) {
+        return new SessionSearchRow() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public String getDescription() {
+                return description;
+            }
+        };
+    }
+
+    @Test
+    @DisplayName("tokenize should fold case and accents and drop single letters")
+    void tokenize_shouldNormalizeTerms() {
+        assertThat(SessionSearchIndex.tokenize("Yoga PRÉNATAL: l'Ashtanga, niveau 2-3"))
+                .containsExactly("yoga", "prenatal", "ashtanga", "niveau");
+    }
+
+    @Test
+    @DisplayName("rebuild should index every session of the repository")
+    void rebuild_shouldLoadRepository() {
+        when(sessionRepository.findAllForSearch()).thenReturn(Arrays.asList(
+                row(1L, "Vinyasa flow", "Dynamic"), row(2L, "Yin", "Slow and deep")));
+
+        index.rebuild();
+
+        assertThat(index.size()).isEqualTo(2);
+        assertThat(index.search("slow", 0, 10).getIds()).containsExactly(2L);
+    }
+
+    @Test
+    @DisplayName("search should rank name matches and rarer terms first")
+    void search_shouldRankWithBm25() {
+        index.index(Arrays.asList(
+                session(1L, "Morning flow", "A gentle vinyasa sequence to start the day"),
+                session(2L, "Vinyasa", "Power class"),
+                session(3L, "Prenatal yoga", "Gentle yoga for mothers to be"),
+                session(4L, "Yin", "Long holds")));
+
+        assertThat(index.search("vinyasa", 0, 10).getIds()).containsExactly(2L, 1L);
+        // "prenatal" is rarer than "gentle", so it outweighs it
+        assertThat(index.search("gentle prénatal", 0, 10).getIds()).containsExactly(3L, 1L);
+        assertThat(index.search("pilates", 0, 10).getTotal()).isZero();
+        assertThat(index.search(" - ", 0, 10).getIds()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("search should page through the ranking and report the total")
+    void search_shouldPaginate() {
+        for (long id = 1; id <= 5; id++) {
+            index.index(session(id, "Yoga " + id, "Yoga"));
+        }
+
+        SessionSearchIndex.Hits hits = index.search("yoga", 2, 2);
+
+        assertThat(hits.getTotal()).isEqualTo(5);
+        assertThat(hits.getIds()).containsExactly(3L, 4L);
+    }
+
+    @Test
+    @DisplayName("index should replace the previous text of a session and remove should drop it")
+    void index_shouldUpdateIncrementally() {
+        index.index(session(1L, "Hatha", "Classic postures"));
+        index.index(session(1L, "Kundalini", "Breathing"));
+
+        assertThat(index.search("hatha", 0, 10).getIds()).isEmpty();
+        assertThat(index.search("breathing", 0, 10).getIds()).containsExactly(1L);
+
+        index.remove(1L);
+
+        assertThat(index.search("kundalini", 0, 10).getIds()).isEmpty();
+        assertThat(index.size()).isZero();
+    }
+
+    @Test
+    @DisplayName("index should wait for the surrounding transaction to commit")
+    void index_shouldApplyAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            index.index(session(1L, "Restorative", "Props"));
+
+            assertThat(index.size()).isZero();
+            List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+            synchronizations.forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(index.search("restorative", 0, 10).getIds()).containsExactly(1L);
+    }
+}
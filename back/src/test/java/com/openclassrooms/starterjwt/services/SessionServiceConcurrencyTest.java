@@ -0,0 +1,131 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.Teacher;
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.repository.TeacherRepository;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@DisplayName("SessionService under concurrent bookings")
+class SessionServiceConcurrencyTest {
+    private static final Logger logger = LoggerFactory.getLogger(SessionServiceConcurrencyTest.class);
+    private static final int CAPACITY = 25;
+    private static final int CANDIDATES = 200;
+    private static final int THREADS = 32;
+
+    @Autowired
+    private SessionService sessionService;
+
+    @Autowired
+    private SessionRepository sessionRepository;
+
+    @Autowired
+    private TeacherRepository teacherRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private Session session;
+    private List<User> candidates;
+
+    @BeforeEach
+    void setup() {
+        sessionRepository.deleteAll();
+        userRepository.deleteAll();
+        teacherRepository.deleteAll();
+
+        Teacher teacher = teacherRepository.save(Teacher.builder()
+                                                        .firstName("Margot")
+                                                        .lastName("Delahaye")
+                                                        .build());
+        session = sessionRepository.save(Session.builder()
+                                                .name("Sold out class")
+                                                .description("Everybody wants in")
+                                                .date(new Date())
+                                                .teacher(teacher)
+                                                .capacity(CAPACITY)
+                                                .users(new ArrayList<>())
+                                                .build());
+
+        candidates = new ArrayList<>();
+        for (int i = 0; i < CANDIDATES; i++) {
+            candidates.add(userRepository.save(User.builder()
+                                                   .email("candidate" + i + "@example.com")
+                                                   .firstName("Candidate")
+                                                   .lastName("N" + i)
+                                                   .password("password")
+                                                   .admin(false)
+                                                   .build()));
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        sessionRepository.deleteAll();
+        userRepository.deleteAll();
+        teacherRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("participate should never book more seats than the capacity")
+    void participate_shouldNotOversell() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger accepted = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (User candidate : candidates) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                try {
+                    sessionService.participate(session.getId(), candidate.getId());
+                    accepted.incrementAndGet();
+                } catch (BadRequestException e) {
+                    rejected.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        long elapsed = System.nanoTime() - begin;
+        executor.shutdown();
+
+        logger.info("{} booking attempts on {} threads in {} ms ({} attempts/sec, {} accepted)",
+                CANDIDATES, THREADS, TimeUnit.NANOSECONDS.toMillis(elapsed),
+                Math.round(CANDIDATES / (elapsed / 1e9)), accepted.get());
+
+        assertThat(accepted.get()).isEqualTo(CAPACITY);
+        assertThat(rejected.get()).isEqualTo(CANDIDATES - CAPACITY);
+        assertThat(sessionService.getParticipantIds(session.getId())).hasSize(CAPACITY);
+        assertThat(sessionRepository.findById(session.getId()).orElseThrow(IllegalStateException::new).getBooked()).isEqualTo(CAPACITY);
+    }
+}
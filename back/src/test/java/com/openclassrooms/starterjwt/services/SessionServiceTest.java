@@ -1,23 +1,35 @@
 package com.openclassrooms.starterjwt.services;
 
+import com.openclassrooms.starterjwt.datasource.ReplicaLagGuard;
 import com.openclassrooms.starterjwt.exception.BadRequestException;
 import com.openclassrooms.starterjwt.exception.NotFoundException;
 import com.openclassrooms.starterjwt.models.Session;
 import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.payload.response.EnrollmentResult;
+import com.openclassrooms.starterjwt.repository.ParticipationRepository;
 import com.openclassrooms.starterjwt.repository.SessionRepository;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -33,6 +45,18 @@ public class SessionServiceTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private ParticipationRepository participationRepository;
+
+    @Mock
+    private SessionSearchIndex sessionSearchIndex;
+
+    @Mock
+    private ReplicaLagGuard replicaLagGuard;
+
+    @Spy
+    private SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
     @InjectMocks
     private SessionService sessionService;
 
@@ -68,6 +92,30 @@ public class SessionServiceTest {
         assertThat(createdSession).usingRecursiveComparison()
                                   .isEqualTo(session);
         verify(sessionRepository, times(1)).save(session);
+        verify(sessionSearchIndex).index(session);
+    }
+
+    @Test
+    @DisplayName("create should count participants as booked seats")
+    public void create_shouldCountBookedSeats() {
+        session.getUsers().add(user);
+        session.setCapacity(5);
+        when(sessionRepository.save(session)).thenReturn(session);
+
+        sessionService.create(session);
+
+        assertThat(session.getBooked()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("create should throw BadRequestException when participants exceed capacity")
+    public void create_shouldRejectParticipantsOverCapacity() {
+        session.getUsers().add(user);
+        session.getUsers().add(User.builder().id(2L).email("b@example.com").firstName("B").lastName("B").password("p").admin(false).build());
+        session.setCapacity(1);
+
+        assertThrows(BadRequestException.class, () -> sessionService.create(session));
+        verify(sessionRepository, never()).save(any());
     }
 
     @Test
@@ -78,6 +126,7 @@ public class SessionServiceTest {
         sessionService.delete(sessionId);
 
         verify(sessionRepository, times(1)).deleteById(sessionId);
+        verify(sessionSearchIndex).remove(sessionId);
     }
 
     @Test
@@ -92,6 +141,61 @@ public class SessionServiceTest {
         verify(sessionRepository, times(1)).findAll();
     }
 
+    @Test
+    @DisplayName("findPage should start after the cursor when it lies inside the range")
+    public void findPage_shouldStartAfterCursor() {
+        Date from = new Date(1_000L);
+        Date to = new Date(9_000L);
+        SessionCursor cursor = new SessionCursor(new Date(5_000L), 42L);
+        Slice<Session> slice = new SliceImpl<>(List.of(session));
+        when(sessionRepository.findPage(cursor.getDate(), 42L, to, PageRequest.of(0, 10))).thenReturn(slice);
+
+        Slice<Session> result = sessionService.findPage(cursor, from, to, null, 10);
+
+        assertThat(result).isSameAs(slice);
+    }
+
+    @Test
+    @DisplayName("findPage should ignore a cursor that precedes the lower bound")
+    public void findPage_shouldIgnoreCursorBeforeLowerBound() {
+        Date from = new Date(5_000L);
+        SessionCursor cursor = new SessionCursor(new Date(1_000L), 42L);
+        Slice<Session> slice = new SliceImpl<>(List.of(session));
+        when(sessionRepository.findPageByTeacher(eq(7L), eq(from), eq(Long.MIN_VALUE), any(Date.class), eq(PageRequest.of(0, 5))))
+                .thenReturn(slice);
+
+        Slice<Session> result = sessionService.findPage(cursor, from, null, 7L, 5);
+
+        assertThat(result).isSameAs(slice);
+        verify(sessionRepository, never()).findPage(any(), any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("getParticipantIds should group participant ids by session")
+    public void getParticipantIds_shouldGroupBySession() {
+        when(participationRepository.findUserIds(List.of(10L, 11L)))
+                .thenReturn(List.of(new Object[]{10L, 1L}, new Object[]{10L, 2L}, new Object[]{11L, 3L}));
+
+        Map<Long, List<Long>> result = sessionService.getParticipantIds(List.of(10L, 11L));
+
+        assertThat(result).containsEntry(10L, List.of(1L, 2L)).containsEntry(11L, List.of(3L));
+    }
+
+    @Test
+    @DisplayName("getParticipantIds should skip the query when no session is requested")
+    public void getParticipantIds_shouldSkipQueryWhenEmpty() {
+        assertThat(sessionService.getParticipantIds(List.of())).isEmpty();
+        verifyNoInteractions(participationRepository);
+    }
+
+    @Test
+    @DisplayName("getParticipantIds should return an empty list for a session without participants")
+    public void getParticipantIds_shouldReturnEmptyListForSingleSession() {
+        when(participationRepository.findUserIds(List.of(10L))).thenReturn(List.of());
+
+        assertThat(sessionService.getParticipantIds(10L)).isEmpty();
+    }
+
     @Test
     @DisplayName("findById should return session by id")
     public void findById_shouldReturnSessionById() {
@@ -118,60 +222,122 @@ public class SessionServiceTest {
     }
 
     @Test
-    @DisplayName("participate should add user to session when user and session exist")
-    public void participate_shouldAddUserToSessionWhenUserAndSessionExist() {
-        when(sessionRepository.findById(session.getId())).thenReturn(Optional.ofNullable(session));
-        when(userRepository.findById(user.getId())).thenReturn(Optional.ofNullable(user));
+    @DisplayName("participate should take a seat and insert the participation row")
+    public void participate_shouldInsertParticipation() {
+        when(sessionRepository.reserveSeat(eq(session.getId()), any())).thenReturn(1);
 
         sessionService.participate(session.getId(), user.getId());
 
-        assertThat(session.getUsers()).contains(user);
-        verify(sessionRepository, times(1)).save(session);
+        verify(participationRepository, times(1)).insert(session.getId(), user.getId());
+        verify(sessionRepository, never()).existsById(any());
+        verifyNoInteractions(userRepository);
     }
 
     @Test
     @DisplayName("participate should throw NotFoundException when user does not exist")
     public void participate_shouldThrowNotFoundExceptionWhenUserDoesNotExist() {
-        when(sessionRepository.findById(session.getId())).thenReturn(Optional.ofNullable(session));
-        when(userRepository.findById(user.getId())).thenReturn(Optional.empty());
+        when(sessionRepository.reserveSeat(eq(session.getId()), any())).thenReturn(1);
+        when(participationRepository.insert(session.getId(), user.getId())).thenThrow(new DataIntegrityViolationException("fk"));
+        when(userRepository.existsById(user.getId())).thenReturn(false);
 
         assertThrows(NotFoundException.class, () -> sessionService.participate(session.getId(), user.getId()));
-        verify(sessionRepository, never()).save(any());
+        assertThat(conflicts("participate", "NotFoundException")).isEqualTo(1);
     }
 
     @Test
     @DisplayName("participate should throw NotFoundException when session does not exist")
     public void participate_shouldThrowNotFoundExceptionWhenSessionDoesNotExist() {
-        when(sessionRepository.findById(session.getId())).thenReturn(Optional.empty());
-        when(userRepository.findById(user.getId())).thenReturn(Optional.ofNullable(user));
+        when(sessionRepository.reserveSeat(eq(session.getId()), any())).thenReturn(0);
+        when(sessionRepository.existsById(session.getId())).thenReturn(false);
 
         assertThrows(NotFoundException.class, () -> sessionService.participate(session.getId(), user.getId()));
-        verify(sessionRepository, never()).save(any());
+        verifyNoInteractions(participationRepository);
+    }
+
+    @Test
+    @DisplayName("participate should throw BadRequestException when session is full")
+    public void participate_shouldThrowBadRequestExceptionWhenSessionFull() {
+        when(sessionRepository.reserveSeat(eq(session.getId()), any())).thenReturn(0);
+        when(sessionRepository.existsById(session.getId())).thenReturn(true);
+
+        assertThrows(BadRequestException.class, () -> sessionService.participate(session.getId(), user.getId()));
+        verifyNoInteractions(participationRepository);
+        assertThat(conflicts("participate", "BadRequestException")).isEqualTo(1);
     }
 
     @Test
     @DisplayName("participate should throw BadRequestException when user already participating")
     public void participate_shouldThrowBadRequestExceptionWhenUserAlreadyParticipating() {
-        session.getUsers()
-               .add(user);
-        when(sessionRepository.findById(session.getId())).thenReturn(Optional.ofNullable(session));
-        when(userRepository.findById(user.getId())).thenReturn(Optional.ofNullable(user));
+        when(sessionRepository.reserveSeat(eq(session.getId()), any())).thenReturn(1);
+        when(participationRepository.insert(session.getId(), user.getId())).thenThrow(new DataIntegrityViolationException("pk"));
+        when(userRepository.existsById(user.getId())).thenReturn(true);
 
         assertThrows(BadRequestException.class, () -> sessionService.participate(session.getId(), user.getId()));
     }
 
     @Test
-    @DisplayName("noLongerParticipate should remove user from session")
-    public void noLongerParticipate_shouldRemoveUserFromSession() {
-        session.getUsers()
-               .add(user);
+    @DisplayName("participateAll should batch insert only known users not yet enrolled")
+    public void participateAll_shouldInsertOnlyNewKnownUsers() {
+        User other = User.builder().id(2L).email("other@example.com").firstName("Jane").lastName("Doe").password("pwd").admin(false).build();
+        when(sessionRepository.findByIdForUpdate(session.getId())).thenReturn(Optional.of(session));
+        when(userRepository.findAllById(Set.of(1L, 2L, 3L))).thenReturn(List.of(user, other));
+        when(participationRepository.findUserIdsAmong(session.getId(), Set.of(1L, 2L))).thenReturn(List.of(1L));
+
+        List<EnrollmentResult> results = sessionService.participateAll(session.getId(), List.of(1L, 2L, 3L));
+
+        assertThat(results).extracting(EnrollmentResult::getStatus).containsExactly(
+                EnrollmentResult.Status.ALREADY_PRESENT, EnrollmentResult.Status.ADDED, EnrollmentResult.Status.UNKNOWN_USER);
+        verify(participationRepository, times(1)).insertAll(session.getId(), List.of(2L));
+        assertThat(session.getBooked()).isEqualTo(1);
+    }
 
-        when(sessionRepository.findById(session.getId())).thenReturn(Optional.ofNullable(session));
+    @Test
+    @DisplayName("participateAll should only fill the remaining seats")
+    public void participateAll_shouldStopAtCapacity() {
+        User other = User.builder().id(2L).email("other@example.com").firstName("Jane").lastName("Doe").password("pwd").admin(false).build();
+        session.setCapacity(3).setBooked(2);
+        when(sessionRepository.findByIdForUpdate(session.getId())).thenReturn(Optional.of(session));
+        when(userRepository.findAllById(Set.of(1L, 2L))).thenReturn(List.of(user, other));
+        when(participationRepository.findUserIdsAmong(session.getId(), Set.of(1L, 2L))).thenReturn(List.of());
+
+        List<EnrollmentResult> results = sessionService.participateAll(session.getId(), List.of(1L, 2L));
+
+        assertThat(results).extracting(EnrollmentResult::getStatus).containsExactly(
+                EnrollmentResult.Status.ADDED, EnrollmentResult.Status.SESSION_FULL);
+        verify(participationRepository, times(1)).insertAll(session.getId(), List.of(1L));
+        assertThat(session.getBooked()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("participateAll should throw NotFoundException when session does not exist")
+    public void participateAll_shouldThrowNotFoundWhenSessionMissing() {
+        when(sessionRepository.findByIdForUpdate(session.getId())).thenReturn(Optional.empty());
+
+        assertThrows(NotFoundException.class, () -> sessionService.participateAll(session.getId(), List.of(1L)));
+        verifyNoInteractions(userRepository, participationRepository);
+    }
+
+    @Test
+    @DisplayName("participateAll should throw BadRequestException when a row appeared since the lookup")
+    public void participateAll_shouldThrowBadRequestOnConcurrentJoin() {
+        when(sessionRepository.findByIdForUpdate(session.getId())).thenReturn(Optional.of(session));
+        when(userRepository.findAllById(Set.of(1L))).thenReturn(List.of(user));
+        when(participationRepository.findUserIdsAmong(session.getId(), Set.of(1L))).thenReturn(List.of());
+        doThrow(new DataIntegrityViolationException("pk")).when(participationRepository).insertAll(session.getId(), List.of(1L));
+
+        assertThrows(BadRequestException.class, () -> sessionService.participateAll(session.getId(), List.of(1L)));
+    }
+
+    @Test
+    @DisplayName("noLongerParticipate should delete the participation row")
+    public void noLongerParticipate_shouldRemoveUserFromSession() {
+        when(participationRepository.remove(session.getId(), user.getId())).thenReturn(1);
 
         sessionService.noLongerParticipate(session.getId(), user.getId());
 
-        assertThat(session.getUsers()).doesNotContain(user);
-        verify(sessionRepository, times(1)).save(session);
+        verify(participationRepository, times(1)).remove(session.getId(), user.getId());
+        verify(sessionRepository, times(1)).releaseSeat(eq(session.getId()), any());
+        verify(sessionRepository, never()).existsById(any());
     }
 
     @Test
@@ -179,7 +345,8 @@ public class SessionServiceTest {
     public void noLongerParticipate_shouldThrowNotFoundExceptionWhenSessionDoesNotExist() {
         Long wrongSessionId = session.getId() + 1;
 
-        when(sessionRepository.findById(wrongSessionId)).thenReturn(Optional.empty());
+        when(participationRepository.remove(wrongSessionId, user.getId())).thenReturn(0);
+        when(sessionRepository.existsById(wrongSessionId)).thenReturn(false);
 
         assertThrows(NotFoundException.class, () -> sessionService.noLongerParticipate(wrongSessionId, user.getId()));
     }
@@ -187,10 +354,15 @@ public class SessionServiceTest {
     @Test
     @DisplayName("noLongerParticipate should throw BadRequestException when user not participating")
     public void noLongerParticipate_shouldThrowBadRequestExceptionWhenUserNotParticipating() {
-        when(sessionRepository.findById(session.getId())).thenReturn(Optional.ofNullable(session));
+        when(participationRepository.remove(session.getId(), user.getId())).thenReturn(0);
+        when(sessionRepository.existsById(session.getId())).thenReturn(true);
 
         assertThrows(BadRequestException.class, () -> sessionService.noLongerParticipate(session.getId(), user.getId()));
     }
 
-
+    private double conflicts(String operation, String exception) {
+        return meterRegistry.get(SessionService.METRIC_PREFIX + ".conflicts")
+                            .tags("operation", operation, "exception", exception)
+                            .counter().count();
+    }
 }
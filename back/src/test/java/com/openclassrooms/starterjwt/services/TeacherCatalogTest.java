@@ -0,0 +1,114 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.datasource.ReplicaLagGuard;
+import com.openclassrooms.starterjwt.models.Teacher;
+import com.openclassrooms.starterjwt.repository.TeacherRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("TeacherCatalog")
+class TeacherCatalogTest {
+
+    @Mock
+    private TeacherRepository teacherRepository;
+
+    private MeterRegistry meterRegistry;
+
+    private TeacherCatalog teacherCatalog;
+
+    private final Teacher margot = Teacher.builder().id(1L).firstName("Margot").lastName("Delahaye").build();
+
+    private final Teacher helene = Teacher.builder().id(2L).firstName("Hélène").lastName("Thiercelin").build();
+
+    @BeforeEach
+    void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        teacherCatalog = new TeacherCatalog(teacherRepository, new ReplicaLagGuard(5000, 100), 0, meterRegistry);
+    }
+
+    @Test
+    @DisplayName("reads are served from one snapshot until it is invalidated")
+    void current_shouldReloadOnlyAfterInvalidation() {
+        when(teacherRepository.findAll()).thenReturn(List.of(margot), List.of(margot, helene));
+        teacherCatalog.start();
+
+        TeacherCatalog.Snapshot first = teacherCatalog.current();
+        assertThat(teacherCatalog.findById(1L)).isEqualTo(margot);
+        assertThat(teacherCatalog.findAll()).containsExactly(margot);
+        assertThat(teacherCatalog.current()).isSameAs(first);
+        verify(teacherRepository, times(1)).findAll();
+
+        teacherCatalog.invalidate();
+
+        TeacherCatalog.Snapshot second = teacherCatalog.current();
+        assertThat(second.getVersion()).isEqualTo(first.getVersion() + 1);
+        assertThat(second.getTeachers()).containsExactly(margot, helene);
+        assertThat(first.getTeachers()).containsExactly(margot);
+        verify(teacherRepository, times(2)).findAll();
+    }
+
+    @Test
+    @DisplayName("an invalidation inside a transaction only applies after commit")
+    void invalidate_shouldWaitForCommit() {
+        when(teacherRepository.findAll()).thenReturn(List.of(margot));
+        TeacherCatalog.Snapshot before = teacherCatalog.current();
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            teacherCatalog.invalidate();
+            assertThat(teacherCatalog.current()).isSameAs(before);
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(teacherCatalog.current()).isNotSameAs(before);
+    }
+
+    @Test
+    @DisplayName("a teacher created elsewhere is picked up on the first miss")
+    void findById_shouldRefreshWhenMissingIdExists() {
+        when(teacherRepository.findAll()).thenReturn(List.of(margot), List.of(margot, helene));
+        when(teacherRepository.existsById(2L)).thenReturn(true);
+        when(teacherRepository.existsById(3L)).thenReturn(false);
+
+        assertThat(teacherCatalog.findById(2L)).isEqualTo(helene);
+        assertThat(teacherCatalog.findById(3L)).isNull();
+        assertThat(teacherCatalog.findById(2L)).isEqualTo(helene);
+
+        verify(teacherRepository, times(2)).findAll();
+        assertThat(meterRegistry.get("teacher.catalog.lookups").tag("result", "hit").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("teacher.catalog.lookups").tag("result", "miss").counter().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("teacher.catalog.refresh").timer().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("teacher.catalog.size").gauge().value()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("snapshots hold read-only copies")
+    void snapshot_shouldBeImmutable() {
+        when(teacherRepository.findAll()).thenReturn(List.of(margot));
+
+        List<Teacher> teachers = teacherCatalog.findAll();
+        margot.setLastName("Changed");
+
+        assertThat(teachers.get(0).getLastName()).isEqualTo("Delahaye");
+        assertThat(teachers.get(0)).isNotSameAs(margot);
+        assertThrows(UnsupportedOperationException.class, () -> teachers.add(helene));
+    }
+}
@@ -1,18 +1,19 @@
 package com.openclassrooms.starterjwt.services;
 
+import com.openclassrooms.starterjwt.datasource.ReplicaLagGuard;
 import com.openclassrooms.starterjwt.models.Teacher;
 import com.openclassrooms.starterjwt.repository.TeacherRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.*;
@@ -24,17 +25,18 @@ public class TeacherServiceTest {
     @Mock
     private TeacherRepository teacherRepository;
 
-    @InjectMocks
     private TeacherService teacherService;
 
     private Teacher teacher;
 
     @BeforeEach
     public void setup() {
+        teacherService = new TeacherService(new TeacherCatalog(teacherRepository, new ReplicaLagGuard(5000, 100), 0, new SimpleMeterRegistry()));
         teacher = Teacher.builder()
                          .id(1L)
                          .firstName("Jane")
                          .lastName("Doe")
+                         .updatedAt(LocalDateTime.of(2024, 1, 1, 9, 0))
                          .build();
     }
 
@@ -55,23 +57,34 @@ public class TeacherServiceTest {
     @Test
     @DisplayName("findById should return teacher by id")
     public void findById_shouldReturnTeacherById() {
-        when(teacherRepository.findById(teacher.getId())).thenReturn(Optional.of(teacher));
+        when(teacherRepository.findAll()).thenReturn(List.of(teacher));
 
         Teacher result = teacherService.findById(teacher.getId());
 
         assertThat(result).isEqualTo(teacher);
-        verify(teacherRepository, times(1)).findById(teacher.getId());
+        verify(teacherRepository, never()).findById(any());
     }
 
     @Test
     @DisplayName("findById should return null when teacher does not exist")
     public void findById_shouldReturnNullWhenTeacherDoesNotExist() {
         Long unknownId = 999L;
-        when(teacherRepository.findById(unknownId)).thenReturn(Optional.empty());
+        when(teacherRepository.findAll()).thenReturn(List.of(teacher));
+        when(teacherRepository.existsById(unknownId)).thenReturn(false);
 
         Teacher result = teacherService.findById(unknownId);
 
         assertThat(result).isNull();
-        verify(teacherRepository, times(1)).findById(unknownId);
+        verify(teacherRepository, times(1)).findAll();
+    }
+
+    @Test
+    @DisplayName("getVersion should match the validators of a count / max(updated_at) query")
+    public void getVersion_shouldMatchAggregateValidators() {
+        when(teacherRepository.findAll()).thenReturn(List.of(teacher));
+
+        assertThat(teacherService.getVersion()).isEqualTo(ResourceVersion.of(1, teacher.getUpdatedAt()));
+        assertThat(teacherService.getVersion(1L)).isEqualTo(ResourceVersion.of(1L, teacher.getUpdatedAt()));
+        assertThat(teacherService.getVersion(2L)).isNull();
     }
 }
@@ -1,5 +1,6 @@
 package com.openclassrooms.starterjwt.services;
 
+import com.openclassrooms.starterjwt.exception.BadRequestException;
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.repository.UserRepository;
 import org.junit.jupiter.api.BeforeEach;
@@ -10,9 +11,12 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -50,6 +54,26 @@ public class UserServiceTest {
         verify(userRepository, times(1)).findById(user.getId());
     }
 
+    @Test
+    @DisplayName("findAllById should load the users once, in request order")
+    void findAllById_shouldKeepRequestOrder() {
+        User other = User.builder().id(2L).email("other@example.com").firstName("Jane").lastName("Doe").password("pwd").admin(false).build();
+        when(userRepository.findAllById(Set.of(1L, 2L))).thenReturn(List.of(user, other));
+
+        List<User> users = userService.findAllById(List.of(2L, 1L, 2L));
+
+        assertThat(users).containsExactly(other, user);
+        verify(userRepository, times(1)).findAllById(any());
+    }
+
+    @Test
+    @DisplayName("findAllById should reject unknown ids")
+    void findAllById_shouldThrowBadRequestWhenUserMissing() {
+        when(userRepository.findAllById(Set.of(1L, 3L))).thenReturn(List.of(user));
+
+        assertThrows(BadRequestException.class, () -> userService.findAllById(List.of(1L, 3L)));
+    }
+
     @Test
     @DisplayName("delete should delete user by id")
     void delete_shouldDeleteUserById() {
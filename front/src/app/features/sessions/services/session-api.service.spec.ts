@@ -35,11 +35,29 @@ describe('SessionApiService', () => {
   it('should request all sessions', () => {
     service.all().subscribe(response => expect(response).toEqual([session]));
 
-    const req = httpMock.expectOne('api/session');
+    const req = httpMock.expectOne(request => request.url === 'api/session');
     expect(req.request.method).toBe('GET');
+    expect(req.request.params.get('limit')).toBe('100');
+    expect(req.request.params.has('cursor')).toBe(false);
     req.flush([session]);
   });
 
+  it('should follow the next cursor until the last page', () => {
+    const next: Session = { ...session, id: 2, name: 'Evening Flow' };
+    let result: Session[] | undefined;
+    service.all().subscribe(response => result = response);
+
+    httpMock.expectOne(request => request.url === 'api/session' && !request.params.has('cursor'))
+      .flush([session], { headers: { 'X-Next-Cursor': 'abc' } });
+    expect(result).toBeUndefined();
+
+    const req = httpMock.expectOne(request => request.url === 'api/session' && request.params.get('cursor') === 'abc');
+    expect(req.request.params.get('limit')).toBe('100');
+    req.flush([next]);
+
+    expect(result).toEqual([session, next]);
+  });
+
   it('should request a session detail', () => {
     service.detail('1').subscribe(response => expect(response).toEqual(session));
 
@@ -1,6 +1,7 @@
-import { HttpClient } from '@angular/common/http';
+import { HttpClient, HttpParams, HttpResponse } from '@angular/common/http';
 import { Injectable } from '@angular/core';
-import { Observable } from 'rxjs';
+import { EMPTY, Observable } from 'rxjs';
+import { expand, map, reduce } from 'rxjs/operators';
 import { Session } from '../interfaces/session.interface';
 
 @Injectable({
@@ -10,11 +11,22 @@ export class SessionApiService {
 
   private pathService = 'api/session';
 
+  private static readonly PAGE_SIZE = 100;
+
+  private static readonly NEXT_CURSOR_HEADER = 'X-Next-Cursor';
+
   constructor(private httpClient: HttpClient) {
   }
 
   public all(): Observable<Session[]> {
-    return this.httpClient.get<Session[]>(this.pathService);
+    return this.page(null).pipe(
+      expand(response => {
+        const cursor = response.headers.get(SessionApiService.NEXT_CURSOR_HEADER);
+        return cursor ? this.page(cursor) : EMPTY;
+      }),
+      map(response => response.body ?? []),
+      reduce((sessions: Session[], page: Session[]) => sessions.concat(page), [])
+    );
   }
 
   public detail(id: string): Observable<Session> {
@@ -41,4 +53,12 @@ export class SessionApiService {
     return this.httpClient.delete<void>(`${this.pathService}/${id}/participate/${userId}`);
   }
 
+  private page(cursor: string | null): Observable<HttpResponse<Session[]>> {
+    let params = new HttpParams().set('limit', SessionApiService.PAGE_SIZE);
+    if (cursor) {
+      params = params.set('cursor', cursor);
+    }
+    return this.httpClient.get<Session[]>(this.pathService, { params, observe: 'response' });
+  }
+
 }